@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.audit;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import ss.platform.api.dao.EntityChangeEvent;
+
+/**
+ * Audit journal appends per second from concurrent committing threads, by fsync policy.
+ * With ALWAYS every append waits for its group commit, so the result shows how well batches amortize the fsync.
+ * @author ss
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Threads(4)
+public class AuditJournalBenchmark {
+    /** Fsync policy. */
+    @Param({ "NONE", "INTERVAL", "ALWAYS" })
+    private AuditJournal.FsyncPolicy fsync;
+    /** Journal directory. */
+    private Path directory;
+    /** Journal. */
+    private AuditJournal journal;
+    /** Single entity update. */
+    private AuditRecord update;
+    /**
+     * Setup.
+     * @throws IOException error.
+     */
+    @Setup
+    public void setup() throws IOException {
+        directory = Files.createTempDirectory("audit-benchmark");
+        journal = new AuditJournal(directory, 64 * 1024 * 1024, fsync, 1000, 65536, 1000);
+        update = new AuditRecord(0, System.currentTimeMillis(), EntityChangeEvent.ChangeType.UPDATE, "tool",
+                "10.0.0.1", new long[] { 42 });
+    }
+    /**
+     * Tear down.
+     * @throws IOException error.
+     */
+    @TearDown
+    public void tearDown() throws IOException {
+        journal.close();
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach((path) -> path.toFile().delete());
+        }
+    }
+    /**
+     * Append a single entity update.
+     */
+    @Benchmark
+    public void append() {
+        journal.append(update);
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import ss.platform.api.BenchmarkContext;
+import ss.tools.rental.model.Tool;
+
+/**
+ * DAO operations against an embedded in-memory database.
+ * Reads by ID are measured with the entity cache (mostly hits) and without it (database round trip).
+ * Creation is measured per entity: one transaction per entity versus one JDBC batched transaction for many.
+ * @author ss
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class CoreDAOBenchmark {
+    /** Seeded rows. */
+    private static final int ROWS = 10000;
+    /** Entities per batch. */
+    private static final int BATCH = 50;
+    /** Application context. */
+    private ConfigurableApplicationContext context;
+    /** DAO. */
+    private CoreDAO coreDAO;
+    /** Page request. */
+    private EntitySearchRequest pageRequest;
+    /** Filtered request. */
+    private EntitySearchRequest filterRequest;
+    /** ID of the first seeded row. */
+    private long firstId;
+    /**
+     * Setup.
+     */
+    @Setup
+    public void setup() {
+        context = BenchmarkContext.start("dao");
+        coreDAO = context.getBean(CoreDAO.class);
+        firstId = seed(coreDAO);
+        pageRequest = new EntitySearchRequest();
+        pageRequest.setPage(10);
+        pageRequest.setPageSize(20);
+        pageRequest.setOrderBy("name");
+        filterRequest = new EntitySearchRequest();
+        filterRequest.setPage(1);
+        filterRequest.setPageSize(20);
+        filterRequest.getFilters().add(SearchFilter.parse("name~drill 12"));
+        filterRequest.getFilters().add(SearchFilter.parse("id>" + firstId));
+    }
+    /**
+     * Tear down.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    /**
+     * @return entity.
+     * @throws Exception error.
+     */
+    @Benchmark
+    public Tool findByIdCached() throws Exception {
+        return coreDAO.findById(firstId + ThreadLocalRandom.current().nextInt(ROWS), Tool.class);
+    }
+    /**
+     * @param uncached DAO without entity cache.
+     * @return entity.
+     * @throws Exception error.
+     */
+    @Benchmark
+    public Tool findByIdUncached(Uncached uncached) throws Exception {
+        return uncached.coreDAO.findById(uncached.firstId + ThreadLocalRandom.current().nextInt(ROWS), Tool.class);
+    }
+    /**
+     * @return search response.
+     * @throws Exception error.
+     */
+    @Benchmark
+    public EntitySearchResponse<?> searchPage() throws Exception {
+        return coreDAO.searchEntities(Tool.class, pageRequest);
+    }
+    /**
+     * @return search response.
+     * @throws Exception error.
+     */
+    @Benchmark
+    public EntitySearchResponse<?> searchFiltered() throws Exception {
+        return coreDAO.searchEntities(Tool.class, filterRequest);
+    }
+    /**
+     * @return last created entity.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public Tool createSingle() {
+        Tool last = null;
+        for (Tool tool : tools(BATCH)) {
+            last = coreDAO.create(tool);
+        }
+        return last;
+    }
+    /**
+     * @return created entities.
+     */
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public List<Tool> createBatch() {
+        return coreDAO.createAll(tools(BATCH));
+    }
+    // =========================================== PRIVATE ============================================================
+    /**
+     * Create the seeded rows.
+     * @return ID of the first row.
+     */
+    private static long seed(CoreDAO coreDAO) {
+        long firstId = 0;
+        for (int i = 0; i < ROWS; i += BATCH) {
+            List<Tool> created = coreDAO.createAll(tools(BATCH));
+            if (i == 0) {
+                firstId = created.get(0).getId();
+            }
+        }
+        return firstId;
+    }
+    private static List<Tool> tools(int count) {
+        List<Tool> tools = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            Tool tool = new Tool();
+            tool.setName("Hammer drill " + ThreadLocalRandom.current().nextInt(ROWS));
+            tool.setDescription("Rotary hammer drill, SDS-plus chuck");
+            tools.add(tool);
+        }
+        return tools;
+    }
+    /**
+     * Context with the tool cache disabled, every read by ID goes to the database.
+     */
+    @State(Scope.Benchmark)
+    public static class Uncached {
+        /** Application context. */
+        private ConfigurableApplicationContext context;
+        /** DAO. */
+        private CoreDAO coreDAO;
+        /** ID of the first seeded row. */
+        private long firstId;
+        /**
+         * Setup.
+         */
+        @Setup
+        public void setup() {
+            context = BenchmarkContext.start("dao-uncached", "platform.entity-cache.tool.max-size=0");
+            coreDAO = context.getBean(CoreDAO.class);
+            firstId = seed(coreDAO);
+        }
+        /**
+         * Tear down.
+         */
+        @TearDown
+        public void tearDown() {
+            context.close();
+        }
+    }
+}
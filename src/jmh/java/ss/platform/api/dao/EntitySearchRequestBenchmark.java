@@ -0,0 +1,79 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+/**
+ * Search request parameter parsing.
+ * @author ss
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EntitySearchRequestBenchmark {
+    /** Paging only. */
+    private MockHttpServletRequest simple;
+    /** Paging, order, filters and fields. */
+    private MockHttpServletRequest full;
+    /**
+     * Setup.
+     */
+    @Setup
+    public void setup() {
+        simple = new MockHttpServletRequest("GET", "/api/entity/tool");
+        simple.addParameter("page", "1");
+        simple.addParameter("page_size", "20");
+        full = new MockHttpServletRequest("GET", "/api/entity/tool");
+        full.addParameter("page", "3");
+        full.addParameter("page_size", "50");
+        full.addParameter("order", "desc");
+        full.addParameter("order_by", "name");
+        full.addParameter("total", "estimate");
+        full.addParameter("filter", "name~drill", "id>100", "id!=(1,2,3,4,5)");
+        full.addParameter("fields", "name,description");
+    }
+    /**
+     * @return search request.
+     */
+    @Benchmark
+    public EntitySearchRequest parseSimple() {
+        return EntitySearchRequest.createRequest(simple);
+    }
+    /**
+     * @return search request.
+     */
+    @Benchmark
+    public EntitySearchRequest parseFull() {
+        return EntitySearchRequest.createRequest(full);
+    }
+}
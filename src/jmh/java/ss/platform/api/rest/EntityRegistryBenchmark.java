@@ -0,0 +1,83 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.springframework.context.ConfigurableApplicationContext;
+import ss.platform.api.BenchmarkContext;
+import ss.tools.rental.model.Tool;
+
+/**
+ * Entity class resolution of the REST controller (URL name to entity handler).
+ * @author ss
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class EntityRegistryBenchmark {
+    /** Application context. */
+    private ConfigurableApplicationContext context;
+    /** Entity registry. */
+    private EntityRegistry registry;
+    /** Fully qualified entity name. */
+    private String className;
+    /**
+     * Setup.
+     */
+    @Setup
+    public void setup() {
+        context = BenchmarkContext.start("registry");
+        registry = context.getBean(EntityRegistry.class);
+        className = Tool.class.getName();
+    }
+    /**
+     * Tear down.
+     */
+    @TearDown
+    public void tearDown() {
+        context.close();
+    }
+    /**
+     * @return entity handler.
+     */
+    @Benchmark
+    public EntityHandler<?> byAlias() {
+        return registry.getHandler("tool");
+    }
+    /**
+     * @return entity handler.
+     */
+    @Benchmark
+    public EntityHandler<?> byClassName() {
+        return registry.getHandler(className);
+    }
+}
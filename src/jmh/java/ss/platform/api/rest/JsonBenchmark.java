@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import ss.platform.api.dao.EntitySearchResponse;
+import ss.tools.rental.model.Tool;
+
+/**
+ * JSON (de)serialization of entities and search responses, with the readers and writers of the entity handler.
+ * Every benchmark has a <code>Baseline</code> twin with the previous path (body bound to a map tree, then converted
+ * with <code>convertValue</code>); run with the GC profiler to compare allocation per operation.
+ * @author ss
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JsonBenchmark {
+    /** Page size of the search response. */
+    private static final int PAGE_SIZE = 50;
+    /** Object mapper (Spring defaults). */
+    private ObjectMapper mapper;
+    /** Entity handler. */
+    private EntityHandler<Tool> handler;
+    /** Entity. */
+    private Tool tool;
+    /** Search response. */
+    private EntitySearchResponse<Tool> response;
+    /** Serialized entity. */
+    private byte[] toolJson;
+    /** Serialized entity array. */
+    private byte[] toolsJson;
+    /**
+     * Setup.
+     * @throws IOException error.
+     */
+    @Setup
+    public void setup() throws IOException {
+        mapper = Jackson2ObjectMapperBuilder.json().build();
+        handler = new EntityHandler<>("tool", Tool.class, Long.class, mapper);
+        List<Tool> tools = new ArrayList<>();
+        for (int i = 0; i < PAGE_SIZE; i++) {
+            Tool t = new Tool();
+            t.setId((long) i + 1);
+            t.setVersion(0L);
+            t.setName("Hammer drill " + i);
+            t.setDescription("Rotary hammer drill, 800 W, SDS-plus chuck, case and three bits included. #" + i);
+            tools.add(t);
+        }
+        tool = tools.get(0);
+        response = new EntitySearchResponse<>();
+        response.setData(tools);
+        response.setTotal(1000);
+        response.setNext("eyJpZCI6NTB9");
+        toolJson = mapper.writeValueAsBytes(tool);
+        toolsJson = mapper.writeValueAsBytes(tools);
+    }
+    /**
+     * @return JSON.
+     * @throws IOException error.
+     */
+    @Benchmark
+    public byte[] writeTool() throws IOException {
+        return handler.getWriter().writeValueAsBytes(tool);
+    }
+    /**
+     * @return JSON.
+     * @throws IOException error.
+     */
+    @Benchmark
+    public byte[] writeToolBaseline() throws IOException {
+        return mapper.writeValueAsBytes(mapper.valueToTree(tool));
+    }
+    /**
+     * @return JSON.
+     * @throws IOException error.
+     */
+    @Benchmark
+    public byte[] writeSearchResponse() throws IOException {
+        return mapper.writeValueAsBytes(response);
+    }
+    /**
+     * @return JSON.
+     * @throws IOException error.
+     */
+    @Benchmark
+    public byte[] writeSearchResponseBaseline() throws IOException {
+        return mapper.writeValueAsBytes(mapper.valueToTree(response));
+    }
+    /**
+     * @return entity.
+     * @throws IOException error.
+     */
+    @Benchmark
+    public Tool readTool() throws IOException {
+        return handler.read(new ByteArrayInputStream(toolJson));
+    }
+    /**
+     * @return entity.
+     * @throws IOException error.
+     */
+    @Benchmark
+    public Tool readToolBaseline() throws IOException {
+        return mapper.convertValue(mapper.readValue(toolJson, Object.class), Tool.class);
+    }
+    /**
+     * @return entities.
+     * @throws IOException error.
+     */
+    @Benchmark
+    public List<Tool> readToolList() throws IOException {
+        return handler.readList(new ByteArrayInputStream(toolsJson));
+    }
+    /**
+     * @return entities.
+     * @throws IOException error.
+     */
+    @Benchmark
+    public List<Tool> readToolListBaseline() throws IOException {
+        List<Object> rawData = mapper.readValue(toolsJson, new TypeReference<List<Object>>() { });
+        List<Tool> tools = new ArrayList<>(rawData.size());
+        for (Object item : rawData) {
+            tools.add(mapper.convertValue(item, Tool.class));
+        }
+        return tools;
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.loadtest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.springframework.boot.WebApplicationType;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import ss.platform.api.dao.CoreDAO;
+import ss.tools.rental.Main;
+import ss.tools.rental.booking.BookingConflictException;
+import ss.tools.rental.booking.BookingService;
+import ss.tools.rental.model.Rental;
+import ss.tools.rental.model.Tool;
+
+/**
+ * Booking stress test: threads book random tools for random periods through {@link BookingService} as fast as
+ * they can, with a growing thread count. Every step books a fresh calendar window, so conflict rates are
+ * comparable. At the end the database is checked for overlapping rentals of the same tool; the test exits with
+ * status 1 if it finds any.
+ * <p>
+ * Options (<code>--name=value</code>): <code>stress.threads</code> (1,2,4,8,16,32), <code>stress.seconds</code> per
+ * step (5), <code>stress.tools</code> (50, fewer tools means more contention), <code>stress.days</code> of the
+ * calendar window (30), <code>stress.max-days</code> per rental (3).
+ * @author alex
+ */
+public final class BookingStress {
+    /** Calendar start. */
+    private static final LocalDateTime EPOCH = LocalDateTime.of(2030, 1, 1, 0, 0);
+    /**
+     * Constructor.
+     */
+    private BookingStress() {
+    }
+    /**
+     * Run stress test, exits with status 1 on double bookings.
+     * @param args command line arguments.
+     * @throws Exception error.
+     */
+    public static void main(String[] args) throws Exception {
+        boolean passed;
+        try (ConfigurableApplicationContext context = new SpringApplicationBuilder(Main.class)
+                .web(WebApplicationType.NONE)
+                .properties(
+                        "spring.datasource.url=jdbc:h2:mem:stress;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=create",
+                        "spring.jpa.open-in-view=false",
+                        // more connections than writer threads: ID allocation of the pooled table generator
+                        // takes a second connection while the booking transaction holds its own
+                        "spring.datasource.hikari.maximum-pool-size=64",
+                        "platform.export.fetch-size=500",
+                        "platform.slow-query.threshold-ms=-1",
+                        "logging.level.root=WARN")
+                .run(args)) {
+            passed = run(context);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+    // =========================================== PRIVATE ============================================================
+    private static boolean run(ConfigurableApplicationContext context) throws InterruptedException {
+        Environment env = context.getEnvironment();
+        int seconds = env.getProperty("stress.seconds", Integer.class, 5);
+        int toolCount = env.getProperty("stress.tools", Integer.class, 50);
+        int days = env.getProperty("stress.days", Integer.class, 30);
+        int maxDays = env.getProperty("stress.max-days", Integer.class, 3);
+        List<Tool> tools = new ArrayList<>();
+        for (int i = 0; i < toolCount; i++) {
+            Tool tool = new Tool();
+            tool.setName("Drill " + i);
+            tools.add(tool);
+        }
+        long[] toolIds = context.getBean(CoreDAO.class).createAll(tools).stream().mapToLong(Tool::getId).toArray();
+        BookingService bookingService = context.getBean(BookingService.class);
+        System.out.println("Booking stress: " + toolCount + " tools, " + days + " days window, " + seconds
+                + " s per step");
+        System.out.println(String.format("%8s %10s %12s %12s %8s", "threads", "attempts", "attempts/s",
+                "bookings/s", "errors"));
+        boolean passed = true;
+        int step = 0;
+        for (String value : env.getProperty("stress.threads", "1,2,4,8,16,32").split(",")) {
+            int threads = Integer.parseInt(value.trim());
+            LocalDateTime window = EPOCH.plusDays((long) step++ * (days + maxDays));
+            AtomicLong attempts = new AtomicLong();
+            AtomicLong booked = new AtomicLong();
+            AtomicLong errors = new AtomicLong();
+            CountDownLatch done = new CountDownLatch(threads);
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(seconds);
+            for (int t = 0; t < threads; t++) {
+                Thread thread = new Thread(() -> {
+                    ThreadLocalRandom random = ThreadLocalRandom.current();
+                    while (System.nanoTime() < deadline) {
+                        Rental rental = new Rental();
+                        rental.setToolId(toolIds[random.nextInt(toolIds.length)]);
+                        rental.setStart(window.plusHours(random.nextInt(days * 24)));
+                        rental.setEnd(rental.getStart().plusHours(1 + random.nextInt(maxDays * 24)));
+                        rental.setCustomer("customer " + random.nextInt(1000));
+                        attempts.incrementAndGet();
+                        try {
+                            bookingService.book(rental);
+                            booked.incrementAndGet();
+                        } catch (BookingConflictException e) {
+                            // expected: tool is taken
+                        } catch (RuntimeException e) {
+                            errors.incrementAndGet();
+                        }
+                    }
+                    done.countDown();
+                }, "booking-stress-" + t);
+                thread.start();
+            }
+            done.await();
+            System.out.println(String.format("%8d %10d %12.1f %12.1f %8d", threads, attempts.get(),
+                    attempts.get() / (double) seconds, booked.get() / (double) seconds, errors.get()));
+            passed &= errors.get() == 0;
+        }
+        long doubleBookings = countDoubleBookings(context.getBean(EntityManagerFactory.class));
+        System.out.println("Double bookings: " + doubleBookings);
+        return passed && doubleBookings == 0;
+    }
+    private static long countDoubleBookings(EntityManagerFactory emf) {
+        EntityManager em = emf.createEntityManager();
+        try {
+            return em.createQuery("SELECT COUNT(a.id) FROM Rental a, Rental b WHERE a.toolId = b.toolId"
+                    + " AND a.id < b.id AND a.start < b.end AND b.start < a.end", Long.class).getSingleResult();
+        } finally {
+            em.close();
+        }
+    }
+}
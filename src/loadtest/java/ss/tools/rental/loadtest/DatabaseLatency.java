@@ -0,0 +1,91 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.loadtest;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+
+/**
+ * Simulated database slowdown: every statement execution sleeps while it holds its connection,
+ * like a slow query on a loaded database server.
+ * @author ss
+ */
+class DatabaseLatency implements BeanPostProcessor {
+    /** Latency per statement, milliseconds. */
+    private final long latencyMs;
+    /**
+     * Constructor.
+     * @param latencyMs latency per statement, milliseconds.
+     */
+    DatabaseLatency(long latencyMs) {
+        this.latencyMs = latencyMs;
+    }
+    @Override
+    public Object postProcessAfterInitialization(Object bean, String beanName) {
+        if (bean instanceof DataSource) {
+            return proxy(bean, DataSource.class, (proxy, method, args) -> {
+                Object result = invoke(bean, method, args);
+                return result instanceof Connection ? connection((Connection) result) : result;
+            });
+        }
+        return bean;
+    }
+    // =========================================== PRIVATE ============================================================
+    private Connection connection(Connection connection) {
+        return proxy(connection, Connection.class, (proxy, method, args) -> {
+            Object result = invoke(connection, method, args);
+            if (result instanceof Statement) {
+                Class<?> type = method.getReturnType().isInterface() ? method.getReturnType() : Statement.class;
+                return statement((Statement) result, type);
+            }
+            return result;
+        });
+    }
+    private Object statement(Statement statement, Class<?> type) {
+        return proxy(statement, type, (proxy, method, args) -> {
+            if (method.getName().startsWith("execute")) {
+                TimeUnit.MILLISECONDS.sleep(latencyMs);
+            }
+            return invoke(statement, method, args);
+        });
+    }
+    @SuppressWarnings("unchecked")
+    private static <T> T proxy(Object target, Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(DatabaseLatency.class.getClassLoader(), new Class<?>[] { type }, handler);
+    }
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+}
@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.Environment;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import ss.platform.api.dao.CoreDAO;
+import ss.tools.rental.Main;
+import ss.tools.rental.model.Tool;
+
+/**
+ * End-to-end load test: starts the application on an embedded H2 database, seeds tools and drives a request mix
+ * at a fixed arrival rate. Latency is measured from the intended start of each request, so a stalled server
+ * can not slow the load down and hide its own latency (coordinated omission).
+ * <p>
+ * Options (command line, <code>--name=value</code>; other arguments configure the application, for example
+ * <code>--platform.db-executor.async=true</code>):
+ * <ul>
+ * <li><code>loadtest.rows</code> - seeded tools (10000)</li>
+ * <li><code>loadtest.rate</code> - requests per second (200)</li>
+ * <li><code>loadtest.duration-s</code> - measured seconds (60), after <code>loadtest.warmup-s</code> (10)</li>
+ * <li><code>loadtest.mix</code> - operation weights (search=50,get=30,create=10,update=5,delete=5)</li>
+ * <li><code>loadtest.connections</code> - concurrent client connections (64)</li>
+ * <li><code>loadtest.db-latency-ms</code> - simulated latency of every SQL statement (0)</li>
+ * <li><code>loadtest.results</code> - results file (build/reports/loadtest/results.json)</li>
+ * <li><code>loadtest.baseline</code> - results file of a baseline run, the test fails if a percentile or
+ * throughput regresses by more than <code>loadtest.margin</code> (0.2)</li>
+ * <li><code>loadtest.max-error-rate</code> - the test fails above this error rate (0.01)</li>
+ * </ul>
+ * Tail latency under a slow database, blocking vs async request handling: run with
+ * <code>--loadtest.db-latency-ms=50</code>, then again with <code>--platform.db-executor.async=true</code>.
+ * @author ss
+ */
+public final class LoadTest {
+    /** Default operation mix. */
+    private static final String DEFAULT_MIX = "search=50,get=30,create=10,update=5,delete=5";
+    /** Rows per seeding transaction. */
+    private static final int SEED_CHUNK = 500;
+    /**
+     * Constructor.
+     */
+    private LoadTest() {
+    }
+    /**
+     * Run load test, exits with status 1 on regression.
+     * @param args command line arguments.
+     * @throws Exception error.
+     */
+    public static void main(String[] args) throws Exception {
+        long dbLatencyMs = Long.parseLong(option(new SimpleCommandLinePropertySource(args),
+                "loadtest.db-latency-ms", "0"));
+        SpringApplicationBuilder builder = new SpringApplicationBuilder(Main.class).properties(
+                "server.port=0",
+                "spring.datasource.url=jdbc:h2:mem:loadtest;DB_CLOSE_DELAY=-1",
+                "spring.jpa.hibernate.ddl-auto=create",
+                "spring.jpa.open-in-view=false",
+                "spring.jpa.properties.hibernate.jdbc.batch_size=50",
+                "spring.jpa.properties.hibernate.order_inserts=true",
+                "spring.jpa.properties.hibernate.order_updates=true",
+                "platform.export.fetch-size=500",
+                "platform.slow-query.threshold-ms=-1",
+                "logging.level.root=WARN");
+        if (dbLatencyMs > 0) {
+            builder.initializers((context) -> context.getBeanFactory()
+                    .addBeanPostProcessor(new DatabaseLatency(dbLatencyMs)));
+        }
+        boolean passed;
+        try (ConfigurableApplicationContext context = builder.run(args)) {
+            passed = run(context);
+        }
+        System.exit(passed ? 0 : 1);
+    }
+    // =========================================== PRIVATE ============================================================
+    private static boolean run(ConfigurableApplicationContext context) throws IOException, InterruptedException {
+        Environment env = context.getEnvironment();
+        int rows = env.getProperty("loadtest.rows", Integer.class, 10000);
+        int rate = env.getProperty("loadtest.rate", Integer.class, 200);
+        int durationS = env.getProperty("loadtest.duration-s", Integer.class, 60);
+        int warmupS = env.getProperty("loadtest.warmup-s", Integer.class, 10);
+        int connections = env.getProperty("loadtest.connections", Integer.class, 64);
+        String mix = env.getProperty("loadtest.mix", DEFAULT_MIX);
+        System.setProperty("http.maxConnections", String.valueOf(connections));
+        long[] ids = seed(context.getBean(CoreDAO.class), rows);
+        Map<Operation, Integer> weights = Workload.parseMix(mix);
+        Workload workload = new Workload("http://localhost:" + env.getProperty("local.server.port"), weights,
+                ids[0], ids[1]);
+        LoadTestReport report = new LoadTestReport(weights.keySet());
+        System.out.println("Load test: " + rate + " req/s, " + warmupS + " s warmup, " + durationS + " s, mix "
+                + mix + ", " + rows + " rows");
+        drive(workload, report, rate, warmupS, durationS, connections);
+        Map<String, Map<String, Object>> results = report.results(durationS);
+        System.out.print(LoadTestReport.table(results));
+        Map<String, Object> document = new LinkedHashMap<>();
+        document.put("rate", rate);
+        document.put("durationS", durationS);
+        document.put("mix", mix);
+        document.put("rows", rows);
+        document.put("dbLatencyMs", env.getProperty("loadtest.db-latency-ms", Long.class, 0L));
+        document.put("operations", results);
+        ObjectMapper mapper = new ObjectMapper();
+        File file = new File(env.getProperty("loadtest.results", "build/reports/loadtest/results.json"));
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        mapper.writerWithDefaultPrettyPrinter().writeValue(file, document);
+        System.out.println("Results: " + file.getAbsolutePath());
+        List<String> failures = new ArrayList<>();
+        double maxErrorRate = env.getProperty("loadtest.max-error-rate", Double.class, 0.01);
+        for (Map.Entry<String, Map<String, Object>> entry : results.entrySet()) {
+            long count = (Long) entry.getValue().get("count");
+            long errors = (Long) entry.getValue().get("errors");
+            if (count > 0 && (double) errors / count > maxErrorRate) {
+                failures.add(entry.getKey() + " errors: " + errors + " of " + count);
+            }
+        }
+        String baseline = env.getProperty("loadtest.baseline");
+        if (baseline != null) {
+            JsonNode base = mapper.readTree(new File(baseline));
+            failures.addAll(LoadTestReport.compare(results, base,
+                    env.getProperty("loadtest.margin", Double.class, 0.2)));
+        }
+        for (String failure : failures) {
+            System.out.println("FAILED " + failure);
+        }
+        return failures.isEmpty();
+    }
+    private static void drive(Workload workload, LoadTestReport report, int rate, int warmupS, int durationS,
+            int connections) throws InterruptedException {
+        ExecutorService pool = Executors.newFixedThreadPool(connections);
+        long interval = TimeUnit.SECONDS.toNanos(1) / rate;
+        long start = System.nanoTime();
+        long measureFrom = start + TimeUnit.SECONDS.toNanos(warmupS);
+        long end = measureFrom + TimeUnit.SECONDS.toNanos(durationS);
+        for (long i = 0; ; i++) {
+            long intended = start + i * interval;
+            if (intended >= end) {
+                break;
+            }
+            long wait = intended - System.nanoTime();
+            if (wait > 0) {
+                LockSupport.parkNanos(wait);
+            }
+            Operation operation = workload.next();
+            pool.execute(() -> {
+                boolean error;
+                try {
+                    error = workload.execute(operation) >= 400;
+                } catch (IOException e) {
+                    error = true;
+                }
+                if (intended >= measureFrom) {
+                    report.record(operation, System.nanoTime() - intended, error);
+                }
+            });
+        }
+        pool.shutdown();
+        pool.awaitTermination(1, TimeUnit.MINUTES);
+    }
+    private static long[] seed(CoreDAO coreDAO, int rows) {
+        long first = 0;
+        long last = 0;
+        for (int i = 0; i < rows; i += SEED_CHUNK) {
+            List<Tool> chunk = new ArrayList<>();
+            for (int j = i; j < Math.min(rows, i + SEED_CHUNK); j++) {
+                Tool tool = new Tool();
+                tool.setName("Drill " + j);
+                tool.setDescription("Seeded by load test");
+                chunk.add(tool);
+            }
+            List<Tool> created = coreDAO.createAll(chunk);
+            if (i == 0) {
+                first = created.get(0).getId();
+            }
+            last = created.get(created.size() - 1).getId();
+        }
+        return new long[] { first, last };
+    }
+    private static String option(SimpleCommandLinePropertySource args, String name, String defaultValue) {
+        String value = args.getProperty(name);
+        return value != null ? value : defaultValue;
+    }
+}
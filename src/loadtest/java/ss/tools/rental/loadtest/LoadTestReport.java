@@ -0,0 +1,150 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+/**
+ * Load test results: latency histogram (from the intended start, so queueing behind slow requests is included)
+ * and error count per operation.
+ * @author ss
+ */
+class LoadTestReport {
+    /** Highest trackable latency, microseconds. */
+    private static final long MAX_LATENCY_US = TimeUnit.MINUTES.toMicros(10);
+    /** Reported percentiles. */
+    private static final double[] PERCENTILES = { 50, 99, 99.9 };
+    /** Percentile keys. */
+    private static final String[] PERCENTILE_KEYS = { "p50", "p99", "p999" };
+    /** Latency by operation. */
+    private final Map<Operation, Histogram> latency = new EnumMap<>(Operation.class);
+    /** Errors by operation. */
+    private final Map<Operation, AtomicLong> errors = new EnumMap<>(Operation.class);
+    /**
+     * Constructor.
+     * @param operations operations of the mix.
+     */
+    LoadTestReport(Iterable<Operation> operations) {
+        for (Operation operation : operations) {
+            latency.put(operation, new ConcurrentHistogram(MAX_LATENCY_US, 3));
+            errors.put(operation, new AtomicLong());
+        }
+    }
+    /**
+     * Record request.
+     * @param operation operation.
+     * @param latencyNanos latency from the intended start, nanoseconds.
+     * @param error true if request failed.
+     */
+    void record(Operation operation, long latencyNanos, boolean error) {
+        latency.get(operation).recordValue(Math.min(MAX_LATENCY_US, TimeUnit.NANOSECONDS.toMicros(latencyNanos)));
+        if (error) {
+            errors.get(operation).incrementAndGet();
+        }
+    }
+    /**
+     * Results, latencies in milliseconds.
+     * @param seconds measured seconds.
+     * @return results by operation name.
+     */
+    Map<String, Map<String, Object>> results(double seconds) {
+        Map<String, Map<String, Object>> results = new LinkedHashMap<>();
+        for (Map.Entry<Operation, Histogram> entry : latency.entrySet()) {
+            Histogram histogram = entry.getValue();
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("count", histogram.getTotalCount());
+            result.put("errors", errors.get(entry.getKey()).get());
+            result.put("throughput", round(histogram.getTotalCount() / seconds));
+            for (int i = 0; i < PERCENTILES.length; i++) {
+                result.put(PERCENTILE_KEYS[i], millis(histogram.getValueAtPercentile(PERCENTILES[i])));
+            }
+            result.put("max", millis(histogram.getMaxValue()));
+            results.put(entry.getKey().getName(), result);
+        }
+        return results;
+    }
+    /**
+     * Format results as a table.
+     * @param results results.
+     * @return table.
+     */
+    static String table(Map<String, Map<String, Object>> results) {
+        StringBuilder sb = new StringBuilder(String.format("%-8s %8s %7s %10s %9s %9s %9s %9s%n",
+                "op", "count", "errors", "req/s", "p50 ms", "p99 ms", "p99.9 ms", "max ms"));
+        for (Map.Entry<String, Map<String, Object>> entry : results.entrySet()) {
+            Map<String, Object> r = entry.getValue();
+            sb.append(String.format("%-8s %8d %7d %10.1f %9.2f %9.2f %9.2f %9.2f%n", entry.getKey(), r.get("count"),
+                    r.get("errors"), r.get("throughput"), r.get("p50"), r.get("p99"), r.get("p999"), r.get("max")));
+        }
+        return sb.toString();
+    }
+    /**
+     * Compare results with a baseline (results of an earlier run).
+     * A percentile regresses if it exceeds the baseline by more than the margin, throughput if it falls
+     * below the baseline by more than the margin.
+     * @param results results.
+     * @param baseline baseline results.
+     * @param margin allowed relative regression, for example 0.2.
+     * @return regressions, empty if none.
+     */
+    static List<String> compare(Map<String, Map<String, Object>> results, JsonNode baseline, double margin) {
+        List<String> regressions = new ArrayList<>();
+        for (Map.Entry<String, Map<String, Object>> entry : results.entrySet()) {
+            JsonNode base = baseline.path("operations").path(entry.getKey());
+            if (base.isMissingNode()) {
+                continue;
+            }
+            for (String key : PERCENTILE_KEYS) {
+                double value = ((Number) entry.getValue().get(key)).doubleValue();
+                double limit = base.path(key).asDouble() * (1 + margin);
+                if (base.has(key) && value > limit) {
+                    regressions.add(entry.getKey() + " " + key + ": " + value + " ms > " + round(limit) + " ms");
+                }
+            }
+            double throughput = ((Number) entry.getValue().get("throughput")).doubleValue();
+            double limit = base.path("throughput").asDouble() * (1 - margin);
+            if (base.has("throughput") && throughput < limit) {
+                regressions.add(entry.getKey() + " throughput: " + throughput + " req/s < " + round(limit)
+                        + " req/s");
+            }
+        }
+        return regressions;
+    }
+    // =========================================== PRIVATE ============================================================
+    private static double millis(long micros) {
+        return round(micros / 1000d);
+    }
+    private static double round(double value) {
+        return Math.round(value * 100) / 100d;
+    }
+}
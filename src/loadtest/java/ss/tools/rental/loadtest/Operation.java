@@ -0,0 +1,146 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.loadtest;
+
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Load test operation: one REST call on the tool entity.
+ * @author ss
+ */
+enum Operation {
+    /** Search page with a name filter. */
+    SEARCH("search", "GET") {
+        @Override
+        String path(Workload workload) {
+            ThreadLocalRandom random = ThreadLocalRandom.current();
+            return "/api/entity/tool?page=" + (1 + random.nextInt(10)) + "&page_size=20&filter=name~drill%20"
+                    + random.nextInt(100);
+        }
+    },
+    /** Get by ID. */
+    GET("get", "GET") {
+        @Override
+        String path(Workload workload) {
+            return "/api/entity/tool/" + workload.stableId();
+        }
+    },
+    /** Create. */
+    CREATE("create", "POST") {
+        @Override
+        String path(Workload workload) {
+            return "/api/entity/tool";
+        }
+        @Override
+        String body(Workload workload, long id) {
+            return "{\"name\":\"Drill " + ThreadLocalRandom.current().nextInt(100000)
+                    + "\",\"description\":\"Created by load test\"}";
+        }
+    },
+    /** Update by ID. */
+    UPDATE("update", "PUT") {
+        @Override
+        String path(Workload workload) {
+            return "/api/entity/tool";
+        }
+        @Override
+        long id(Workload workload) {
+            return workload.stableId();
+        }
+        @Override
+        String body(Workload workload, long id) {
+            return "{\"id\":" + id + ",\"name\":\"Drill " + id + "\",\"description\":\"Updated by load test "
+                    + ThreadLocalRandom.current().nextInt(100000) + "\"}";
+        }
+    },
+    /** Delete by ID (entities created by the run first, then seeded ones outside of the get/update range). */
+    DELETE("delete", "DELETE") {
+        @Override
+        String path(Workload workload) {
+            return "/api/entity/tool/" + workload.disposableId();
+        }
+    };
+    /** Operation name. */
+    private final String name;
+    /** HTTP method. */
+    private final String method;
+    /**
+     * Constructor.
+     * @param name operation name.
+     * @param method HTTP method.
+     */
+    Operation(String name, String method) {
+        this.name = name;
+        this.method = method;
+    }
+    /**
+     * Find operation by name.
+     * @param name operation name.
+     * @return operation.
+     * @throws IllegalArgumentException if operation is unknown.
+     */
+    static Operation of(String name) {
+        for (Operation operation : values()) {
+            if (operation.name.equals(name)) {
+                return operation;
+            }
+        }
+        throw new IllegalArgumentException("Unknown operation: " + name);
+    }
+    /**
+     * Request path.
+     * @param workload workload.
+     * @return path with query.
+     */
+    abstract String path(Workload workload);
+    /**
+     * Entity ID of the request body.
+     * @param workload workload.
+     * @return ID or 0.
+     */
+    long id(Workload workload) {
+        return 0;
+    }
+    /**
+     * Request body.
+     * @param workload workload.
+     * @param id entity ID.
+     * @return JSON body or null.
+     */
+    String body(Workload workload, long id) {
+        return null;
+    }
+    /**
+     * @return the name
+     */
+    String getName() {
+        return name;
+    }
+    /**
+     * @return the method
+     */
+    String getMethod() {
+        return method;
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.loadtest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Request mix and entity IDs of a load test run.
+ * The lower half of the seeded rows is read and updated, the upper half is deleted (after the rows created by
+ * the run), so gets and updates never hit a deleted row.
+ * @author ss
+ */
+class Workload {
+    /** JSON mapper. */
+    private static final ObjectMapper MAPPER = new ObjectMapper();
+    /** Base URL. */
+    private final String baseUrl;
+    /** Operations. */
+    private final Operation[] operations;
+    /** Cumulative weights of operations. */
+    private final int[] weights;
+    /** First seeded ID. */
+    private final long firstId;
+    /** Seeded rows that are read and updated. */
+    private final int stableRows;
+    /** Next seeded row to delete (counts down). */
+    private final AtomicLong nextDisposable;
+    /** IDs of rows created by the run. */
+    private final Queue<Long> created = new ConcurrentLinkedQueue<>();
+    /**
+     * Constructor.
+     * @param baseUrl base URL.
+     * @param mix operation weights.
+     * @param firstId first seeded ID.
+     * @param lastId last seeded ID.
+     */
+    Workload(String baseUrl, Map<Operation, Integer> mix, long firstId, long lastId) {
+        this.baseUrl = baseUrl;
+        this.operations = mix.keySet().toArray(new Operation[0]);
+        this.weights = new int[operations.length];
+        int total = 0;
+        for (int i = 0; i < operations.length; i++) {
+            total += mix.get(operations[i]);
+            weights[i] = total;
+        }
+        this.firstId = firstId;
+        this.stableRows = (int) Math.max(1, (lastId - firstId + 1) / 2);
+        this.nextDisposable = new AtomicLong(lastId);
+    }
+    /**
+     * Parse operation mix.
+     * @param mix mix, for example <code>search=50,get=30,create=10,update=5,delete=5</code>.
+     * @return operation weights.
+     * @throws IllegalArgumentException if mix is malformed.
+     */
+    static Map<Operation, Integer> parseMix(String mix) {
+        Map<Operation, Integer> weights = new EnumMap<>(Operation.class);
+        for (String part : mix.split(",")) {
+            String[] pair = part.trim().split("=");
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Malformed mix, name=weight expected: " + part);
+            }
+            int weight = Integer.parseInt(pair[1].trim());
+            if (weight > 0) {
+                weights.put(Operation.of(pair[0].trim()), weight);
+            }
+        }
+        if (weights.isEmpty()) {
+            throw new IllegalArgumentException("Empty mix: " + mix);
+        }
+        return weights;
+    }
+    /**
+     * Pick next operation according to the mix.
+     * @return operation.
+     */
+    Operation next() {
+        int point = ThreadLocalRandom.current().nextInt(weights[weights.length - 1]);
+        for (int i = 0; i < weights.length; i++) {
+            if (point < weights[i]) {
+                return operations[i];
+            }
+        }
+        return operations[operations.length - 1];
+    }
+    /**
+     * Execute operation.
+     * @param operation operation.
+     * @return HTTP status.
+     * @throws IOException connection error.
+     */
+    int execute(Operation operation) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(baseUrl + operation.path(this)).openConnection();
+        connection.setRequestMethod(operation.getMethod());
+        connection.setRequestProperty("Accept", "application/json");
+        String body = operation.body(this, operation.id(this));
+        if (body != null) {
+            connection.setDoOutput(true);
+            connection.setRequestProperty("Content-Type", "application/json");
+            try (OutputStream out = connection.getOutputStream()) {
+                out.write(body.getBytes(StandardCharsets.UTF_8));
+            }
+        }
+        int status = connection.getResponseCode();
+        InputStream in = status < 400 ? connection.getInputStream() : connection.getErrorStream();
+        byte[] response = in == null ? new byte[0] : drain(in);
+        if (operation == Operation.CREATE && status < 400) {
+            JsonNode id = MAPPER.readTree(response).get("id");
+            if (id != null) {
+                created.add(id.asLong());
+            }
+        }
+        return status;
+    }
+    /**
+     * @return ID of a row that is never deleted.
+     */
+    long stableId() {
+        return firstId + ThreadLocalRandom.current().nextInt(stableRows);
+    }
+    /**
+     * @return ID of a row that may be deleted.
+     */
+    long disposableId() {
+        Long id = created.poll();
+        return id != null ? id : nextDisposable.getAndDecrement();
+    }
+    // =========================================== PRIVATE ============================================================
+    private static byte[] drain(InputStream in) throws IOException {
+        try (InputStream stream = in) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[8192];
+            int read;
+            while ((read = stream.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+            }
+            return out.toByteArray();
+        }
+    }
+}
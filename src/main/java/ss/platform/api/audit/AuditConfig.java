@@ -0,0 +1,86 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.audit;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.Ordered;
+import ss.platform.api.datasource.ClientContextFilter;
+
+/**
+ * Audit journal of committed entity changes.
+ * Enabled by <code>platform.audit.enabled</code>, see {@link AuditJournal} for the fsync policies. The actor of a
+ * change is the client ID header (<code>platform.datasource.routing.read-your-writes.header</code>) or the remote
+ * address.
+ * @author ss
+ */
+@Configuration
+@ConditionalOnProperty(name = "platform.audit.enabled", havingValue = "true")
+public class AuditConfig {
+    /** Settings prefix. */
+    private static final String PREFIX = "platform.audit";
+    /**
+     * Audit journal.
+     * @param directory journal directory.
+     * @param segmentSize segment size, bytes.
+     * @param fsyncPolicy fsync policy.
+     * @param fsyncInterval fsync interval, ms.
+     * @param queueCapacity max queued records.
+     * @param syncTimeout max wait for an fsync, ms.
+     * @return journal.
+     * @throws IOException journal can not be opened.
+     */
+    @Bean(destroyMethod = "close")
+    public AuditJournal auditJournal(
+            @Value("${" + PREFIX + ".directory:audit}") String directory,
+            @Value("${" + PREFIX + ".segment-size:67108864}") long segmentSize,
+            @Value("${" + PREFIX + ".fsync:INTERVAL}") AuditJournal.FsyncPolicy fsyncPolicy,
+            @Value("${" + PREFIX + ".fsync-interval-ms:1000}") long fsyncInterval,
+            @Value("${" + PREFIX + ".queue-capacity:65536}") int queueCapacity,
+            @Value("${" + PREFIX + ".sync-timeout-ms:1000}") long syncTimeout) throws IOException {
+        return new AuditJournal(Paths.get(directory), segmentSize, fsyncPolicy, fsyncInterval, queueCapacity,
+                syncTimeout);
+    }
+    /**
+     * Client context filter, so the actor is known on database executor threads too.
+     * Registered by the routing configuration when read/write routing is enabled.
+     * @param header client ID header.
+     * @return filter registration.
+     */
+    @Bean
+    @ConditionalOnProperty(name = "platform.datasource.routing.enabled", havingValue = "false",
+            matchIfMissing = true)
+    public FilterRegistrationBean<ClientContextFilter> auditClientContextFilter(
+            @Value("${platform.datasource.routing.read-your-writes.header:X-Client-Id}") String header) {
+        FilterRegistrationBean<ClientContextFilter> registration = new FilterRegistrationBean<>(
+                new ClientContextFilter(header));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+}
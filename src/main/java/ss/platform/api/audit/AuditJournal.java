@@ -0,0 +1,404 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.audit;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import java.beans.Introspector;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Serializable;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.zip.CRC32;
+import javax.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import ss.platform.api.dao.EntityChangeEvent;
+import ss.platform.api.datasource.ClientContext;
+
+/**
+ * Append-only audit journal of committed entity changes, outside the database.
+ * <p>
+ * Committing threads encode their record and hand it to a lock-free queue; a single writer thread drains the
+ * queue in batches and copies records into a memory-mapped segment file. Segments roll at the configured size
+ * and are named after their first sequence number (<code>audit-&lt;sequence&gt;.log</code>). Every batch is one
+ * group commit, the fsync policy decides when mapped pages are forced to disk:
+ * <ul>
+ * <li><code>NONE</code> - left to the operating system, a machine crash may lose recent records;</li>
+ * <li><code>INTERVAL</code> - forced at most every fsync interval, bounds the loss window;</li>
+ * <li><code>ALWAYS</code> - forced after every batch, appenders wait until their record is durable.</li>
+ * </ul>
+ * On start the last segment is scanned up to the first incomplete record (CRC mismatch), appends continue there.
+ * Records are read back with {@link AuditJournalReader}.
+ * Meters (tag <code>fsync</code>): <code>platform.audit.sequence</code>, <code>platform.audit.queued</code>,
+ * <code>platform.audit.records</code>, <code>platform.audit.syncs</code> and <code>platform.audit.failures</code>.
+ * @author ss
+ */
+public class AuditJournal implements Closeable, MeterBinder {
+    /**
+     * Fsync policy.
+     */
+    public enum FsyncPolicy {
+        /** Never force, left to the operating system. */
+        NONE,
+        /** Force at most every fsync interval. */
+        INTERVAL,
+        /** Force after every batch, appenders wait for it. */
+        ALWAYS
+    }
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(AuditJournal.class);
+    /** Max records per batch. */
+    private static final int MAX_BATCH = 4096;
+    /** Max writer park time, ns. */
+    private static final long MAX_PARK = TimeUnit.MILLISECONDS.toNanos(100);
+    /** Producer back-off while the queue is full, ns. */
+    private static final long BACKOFF = TimeUnit.MICROSECONDS.toNanos(50);
+    /** Journal directory. */
+    private final Path directory;
+    /** Segment size, bytes. */
+    private final long segmentSize;
+    /** Fsync policy. */
+    private final FsyncPolicy fsyncPolicy;
+    /** Fsync interval, ns. */
+    private final long fsyncInterval;
+    /** Max queued records (soft bound, producers back off above it). */
+    private final int queueCapacity;
+    /** Max wait for an fsync in ALWAYS mode, ns. */
+    private final long syncTimeout;
+    /** Records waiting for the writer. */
+    private final ConcurrentLinkedQueue<Entry> queue = new ConcurrentLinkedQueue<>();
+    /** Queued record count. */
+    private final AtomicInteger queued = new AtomicInteger();
+    /** Fsync waiters monitor. */
+    private final Object syncMonitor = new Object();
+    /** Writer thread. */
+    private final Thread writer;
+    /** Writer is parked or about to park. */
+    private volatile boolean idle;
+    /** Journal is open. */
+    private volatile boolean running = true;
+    /** Last written sequence number. */
+    private volatile long sequence;
+    /** Written records. */
+    private final AtomicLong written = new AtomicLong();
+    /** Forces (fsync). */
+    private final AtomicLong syncs = new AtomicLong();
+    /** Write failures. */
+    private final AtomicLong failures = new AtomicLong();
+    // writer thread state
+    /** Current segment channel. */
+    private FileChannel channel;
+    /** Current segment mapping. */
+    private MappedByteBuffer segment;
+    /** Unforced writes in the current segment. */
+    private boolean dirty;
+    /** Last force time, ns. */
+    private long lastForce = System.nanoTime();
+    /** Record checksum. */
+    private final CRC32 crc = new CRC32();
+    /** Sequence number bytes. */
+    private final ByteBuffer sequenceBytes = ByteBuffer.allocate(8);
+    /**
+     * Constructor, opens the journal and starts the writer.
+     * @param directory journal directory.
+     * @param segmentSize segment size, bytes.
+     * @param fsyncPolicy fsync policy.
+     * @param fsyncInterval fsync interval, ms (INTERVAL policy).
+     * @param queueCapacity max queued records.
+     * @param syncTimeout max wait for an fsync, ms (ALWAYS policy).
+     * @throws IOException journal can not be opened.
+     */
+    public AuditJournal(Path directory, long segmentSize, FsyncPolicy fsyncPolicy, long fsyncInterval,
+            int queueCapacity, long syncTimeout) throws IOException {
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.fsyncPolicy = fsyncPolicy;
+        this.fsyncInterval = TimeUnit.MILLISECONDS.toNanos(fsyncInterval);
+        this.queueCapacity = queueCapacity;
+        this.syncTimeout = TimeUnit.MILLISECONDS.toNanos(syncTimeout);
+        Files.createDirectories(directory);
+        recover();
+        writer = new Thread(this::run, "audit-journal");
+        writer.setDaemon(true);
+        writer.start();
+        LOG.info("Audit journal " + directory.toAbsolutePath() + ": sequence " + sequence + ", fsync " + fsyncPolicy);
+    }
+    /**
+     * Record committed entity change.
+     * @param event entity change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        long[] ids = new long[event.getIds().size()];
+        int i = 0;
+        for (Serializable id : event.getIds()) {
+            ids[i++] = ((Number) id).longValue();
+        }
+        append(new AuditRecord(0, System.currentTimeMillis(), event.getType(),
+                Introspector.decapitalize(event.getEntityClass().getSimpleName()), actor(), ids));
+    }
+    /**
+     * Append record. Blocks while the queue is full, and in ALWAYS mode until the record is forced to disk
+     * (at most the sync timeout).
+     * @param record record (the sequence number is assigned by the journal).
+     */
+    public void append(AuditRecord record) {
+        Entry entry = new Entry(record.encodePayload());
+        while (queued.get() >= queueCapacity) {
+            if (!running) {
+                throw new IllegalStateException("Audit journal is closed");
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(BACKOFF);
+        }
+        if (!running) {
+            throw new IllegalStateException("Audit journal is closed");
+        }
+        queued.incrementAndGet();
+        queue.offer(entry);
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            awaitSync(entry);
+        }
+    }
+    /**
+     * Close journal: write queued records, force and close the segment.
+     */
+    @Override
+    public void close() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(10));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        String policy = fsyncPolicy.name();
+        Gauge.builder("platform.audit.sequence", this, AuditJournal::getSequence).tag("fsync", policy)
+                .description("Last written sequence number").register(registry);
+        Gauge.builder("platform.audit.queued", queued, AtomicInteger::get).tag("fsync", policy)
+                .description("Records waiting for the writer").register(registry);
+        FunctionCounter.builder("platform.audit.records", written, AtomicLong::get).tag("fsync", policy)
+                .description("Written records").register(registry);
+        FunctionCounter.builder("platform.audit.syncs", syncs, AtomicLong::get).tag("fsync", policy)
+                .description("Segment forces (fsync)").register(registry);
+        FunctionCounter.builder("platform.audit.failures", failures, AtomicLong::get).tag("fsync", policy)
+                .description("Lost records").register(registry);
+    }
+    /**
+     * @return last written sequence number.
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    // =========================================== PRIVATE ============================================================
+    private static String actor() {
+        String client = ClientContext.get();
+        if (client != null) {
+            return client;
+        }
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (attributes instanceof ServletRequestAttributes) {
+            HttpServletRequest request = ((ServletRequestAttributes) attributes).getRequest();
+            return request.getRemoteUser() != null ? request.getRemoteUser() : request.getRemoteAddr();
+        }
+        return null;
+    }
+    private void awaitSync(Entry entry) {
+        long deadline = System.nanoTime() + syncTimeout;
+        synchronized (syncMonitor) {
+            while (!entry.done) {
+                long left = deadline - System.nanoTime();
+                if (left <= 0) {
+                    LOG.warn("Audit record is not synced within " + TimeUnit.NANOSECONDS.toMillis(syncTimeout)
+                            + " ms");
+                    return;
+                }
+                try {
+                    TimeUnit.NANOSECONDS.timedWait(syncMonitor, left);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return;
+                }
+            }
+        }
+    }
+    /**
+     * Find the end of the last segment.
+     */
+    private void recover() throws IOException {
+        List<Path> segments = AuditJournalReader.segments(directory);
+        if (segments.isEmpty()) {
+            return;
+        }
+        Path last = segments.get(segments.size() - 1);
+        channel = FileChannel.open(last, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        sequence = Math.max(AuditJournalReader.firstSequence(last) - 1, AuditJournalReader.scan(segment, null));
+    }
+    private void run() {
+        List<Entry> batch = new ArrayList<>();
+        while (running || !queue.isEmpty()) {
+            Entry entry;
+            while (batch.size() < MAX_BATCH && (entry = queue.poll()) != null) {
+                batch.add(entry);
+            }
+            if (!batch.isEmpty()) {
+                queued.addAndGet(-batch.size());
+                write(batch);
+                batch.clear();
+                continue;
+            }
+            if (fsyncPolicy == FsyncPolicy.INTERVAL && dirty && System.nanoTime() - lastForce >= fsyncInterval) {
+                force();
+            }
+            idle = true;
+            if (running && queue.isEmpty()) {
+                LockSupport.parkNanos(fsyncPolicy == FsyncPolicy.INTERVAL ? Math.min(fsyncInterval, MAX_PARK)
+                        : MAX_PARK);
+            }
+            idle = false;
+        }
+        if (dirty) {
+            force();
+        }
+        closeSegment();
+    }
+    /**
+     * Write batch (group commit). Records before a failed one stay written, the failed one and the rest of the
+     * batch are lost.
+     */
+    private void write(List<Entry> batch) {
+        int done = 0;
+        try {
+            for (Entry entry : batch) {
+                int length = 8 + entry.payload.length;
+                if (segment == null || segment.remaining() < AuditRecord.HEADER + length) {
+                    roll(AuditRecord.HEADER + length);
+                }
+                sequenceBytes.clear();
+                sequenceBytes.putLong(sequence + 1);
+                crc.reset();
+                crc.update(sequenceBytes.array());
+                crc.update(entry.payload);
+                segment.putInt(length).putInt((int) crc.getValue()).putLong(sequence + 1).put(entry.payload);
+                sequence++;
+                dirty = true;
+                done++;
+            }
+            if (fsyncPolicy == FsyncPolicy.ALWAYS
+                    || (fsyncPolicy == FsyncPolicy.INTERVAL && System.nanoTime() - lastForce >= fsyncInterval)) {
+                force();
+            }
+        } catch (IOException | RuntimeException e) {
+            int lost = batch.size() - done;
+            failures.addAndGet(lost);
+            if (lost > 0) {
+                LOG.error("Audit journal write failed after sequence " + sequence + ", " + lost + " records lost",
+                        e);
+            } else {
+                LOG.error("Audit journal force failed after sequence " + sequence, e);
+            }
+        }
+        written.addAndGet(done);
+        if (fsyncPolicy == FsyncPolicy.ALWAYS) {
+            batch.forEach((entry) -> entry.done = true);
+            synchronized (syncMonitor) {
+                syncMonitor.notifyAll();
+            }
+        }
+    }
+    private void force() {
+        segment.force();
+        dirty = false;
+        lastForce = System.nanoTime();
+        syncs.incrementAndGet();
+    }
+    /**
+     * Start a new segment, large enough for the next record.
+     */
+    private void roll(int minSize) throws IOException {
+        if (segment != null && dirty && fsyncPolicy != FsyncPolicy.NONE) {
+            force();
+        }
+        closeSegment();
+        Path path = directory.resolve(AuditJournalReader.segmentName(sequence + 1));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(segmentSize, minSize));
+        dirty = false;
+        LOG.info("Audit journal segment " + path.getFileName());
+    }
+    private void closeSegment() {
+        segment = null;
+        if (channel != null) {
+            try {
+                channel.close();
+            } catch (IOException e) {
+                LOG.warn("Audit journal segment close failed", e);
+            }
+            channel = null;
+        }
+    }
+    /**
+     * Queued record.
+     */
+    private static final class Entry {
+        /** Encoded payload. */
+        private final byte[] payload;
+        /** Written and forced (ALWAYS policy). */
+        private volatile boolean done;
+        /**
+         * Constructor.
+         * @param payload encoded payload.
+         */
+        Entry(byte[] payload) {
+            this.payload = payload;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+/**
+ * Reads audit journal segments written by {@link AuditJournal}.
+ * Each segment is read up to its first incomplete record, so a journal that is being written (or was cut by a
+ * crash) is read up to the last complete record.
+ * @author ss
+ */
+public class AuditJournalReader {
+    /** Segment file prefix. */
+    private static final String PREFIX = "audit-";
+    /** Segment file suffix. */
+    private static final String SUFFIX = ".log";
+    /** Journal directory. */
+    private final Path directory;
+    /**
+     * Constructor.
+     * @param directory journal directory.
+     */
+    public AuditJournalReader(Path directory) {
+        this.directory = directory;
+    }
+    /**
+     * Read records in sequence order.
+     * @param afterSequence read records after this sequence number (0 for all).
+     * @param consumer record consumer.
+     * @return last read sequence number.
+     * @throws IOException read error.
+     */
+    public long read(long afterSequence, Consumer<AuditRecord> consumer) throws IOException {
+        List<Path> segments = segments(directory);
+        long last = afterSequence;
+        for (int i = 0; i < segments.size(); i++) {
+            // skip segments that end before the start
+            if (i + 1 < segments.size() && firstSequence(segments.get(i + 1)) <= afterSequence + 1) {
+                continue;
+            }
+            try (FileChannel channel = FileChannel.open(segments.get(i), StandardOpenOption.READ)) {
+                ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                long end = scan(segment, (record) -> {
+                    if (record.getSequence() > afterSequence) {
+                        consumer.accept(record);
+                    }
+                });
+                last = Math.max(last, end);
+            }
+        }
+        return last;
+    }
+    /**
+     * List segments in sequence order.
+     * @param directory journal directory.
+     * @return segment files.
+     * @throws IOException read error.
+     */
+    static List<Path> segments(Path directory) throws IOException {
+        List<Path> segments = new ArrayList<>();
+        if (!Files.isDirectory(directory)) {
+            return segments;
+        }
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, PREFIX + "*" + SUFFIX)) {
+            stream.forEach(segments::add);
+        }
+        // fixed-width names sort by sequence
+        Collections.sort(segments);
+        return segments;
+    }
+    /**
+     * @param sequence first sequence number of the segment.
+     * @return segment file name.
+     */
+    static String segmentName(long sequence) {
+        return String.format("%s%020d%s", PREFIX, sequence, SUFFIX);
+    }
+    /**
+     * @param segment segment file.
+     * @return first sequence number of the segment.
+     */
+    static long firstSequence(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+    /**
+     * Scan complete records of a segment, leaves the buffer positioned after the last one.
+     * @param segment segment buffer.
+     * @param consumer record consumer, null to skip decoding.
+     * @return sequence number of the last complete record, 0 if none.
+     */
+    static long scan(ByteBuffer segment, Consumer<AuditRecord> consumer) {
+        CRC32 crc = new CRC32();
+        long last = 0;
+        while (segment.remaining() >= AuditRecord.HEADER + 8) {
+            int start = segment.position();
+            int length = segment.getInt(start);
+            if (length < 8 || length > segment.remaining() - AuditRecord.HEADER) {
+                break;
+            }
+            int checksum = segment.getInt(start + 4);
+            ByteBuffer record = segment.duplicate();
+            record.position(start + AuditRecord.HEADER).limit(start + AuditRecord.HEADER + length);
+            crc.reset();
+            crc.update(record.duplicate());
+            if ((int) crc.getValue() != checksum) {
+                break;
+            }
+            long sequence = record.getLong();
+            if (consumer != null) {
+                consumer.accept(AuditRecord.decode(sequence, record));
+            }
+            last = sequence;
+            segment.position(start + AuditRecord.HEADER + length);
+        }
+        return last;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.audit;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.function.Predicate;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import ss.platform.api.dao.EntityChangeEvent;
+
+/**
+ * Audit journal command line reader: prints (replays) records, optionally filtered.
+ * <pre>
+ * AuditJournalTool [directory] [--after=sequence] [--entity=alias] [--type=CREATE|UPDATE|DELETE] [--actor=actor]
+ *                  [--id=id] [--from=ISO instant] [--to=ISO instant] [--format=text|json] [--follow]
+ * </pre>
+ * The directory defaults to <code>audit</code>. With <code>--follow</code> new records are printed as they are
+ * written, until interrupted.
+ * @author ss
+ */
+public final class AuditJournalTool {
+    /** Follow poll interval, ms. */
+    private static final long POLL_INTERVAL = 500;
+    /**
+     * Utility class.
+     */
+    private AuditJournalTool() {
+    }
+    /**
+     * Entry point.
+     * @param args command line arguments.
+     * @throws Exception error.
+     */
+    public static void main(String[] args) throws Exception {
+        SimpleCommandLinePropertySource options = new SimpleCommandLinePropertySource(args);
+        Path directory = Paths.get(option(options, "nonOptionArgs", "audit").split(",")[0]);
+        Predicate<AuditRecord> filter = filter(options);
+        boolean json = "json".equals(options.getProperty("format"));
+        ObjectMapper mapper = new ObjectMapper();
+        AuditJournalReader reader = new AuditJournalReader(directory);
+        long after = Long.parseLong(option(options, "after", "0"));
+        do {
+            after = reader.read(after, (record) -> {
+                if (filter.test(record)) {
+                    try {
+                        System.out.println(json ? mapper.writeValueAsString(record) : record.toString());
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                }
+            });
+            if (options.containsProperty("follow")) {
+                Thread.sleep(POLL_INTERVAL);
+            }
+        } while (options.containsProperty("follow"));
+    }
+    // =========================================== PRIVATE ============================================================
+    private static Predicate<AuditRecord> filter(SimpleCommandLinePropertySource options) {
+        Predicate<AuditRecord> filter = (record) -> true;
+        String entity = options.getProperty("entity");
+        if (entity != null) {
+            filter = filter.and((record) -> entity.equals(record.getEntity()));
+        }
+        String type = options.getProperty("type");
+        if (type != null) {
+            EntityChangeEvent.ChangeType changeType = EntityChangeEvent.ChangeType.valueOf(type.toUpperCase());
+            filter = filter.and((record) -> record.getType() == changeType);
+        }
+        String actor = options.getProperty("actor");
+        if (actor != null) {
+            filter = filter.and((record) -> actor.equals(record.getActor()));
+        }
+        String id = options.getProperty("id");
+        if (id != null) {
+            long value = Long.parseLong(id);
+            filter = filter.and((record) -> Arrays.stream(record.getIds()).anyMatch((v) -> v == value));
+        }
+        String from = options.getProperty("from");
+        if (from != null) {
+            long value = Instant.parse(from).toEpochMilli();
+            filter = filter.and((record) -> record.getTimestamp() >= value);
+        }
+        String to = options.getProperty("to");
+        if (to != null) {
+            long value = Instant.parse(to).toEpochMilli();
+            filter = filter.and((record) -> record.getTimestamp() < value);
+        }
+        return filter;
+    }
+    private static String option(SimpleCommandLinePropertySource options, String name, String defaultValue) {
+        String value = options.getProperty(name);
+        return value != null ? value : defaultValue;
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.audit;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.util.Arrays;
+import ss.platform.api.dao.EntityChangeEvent;
+
+/**
+ * Audit journal record: who changed which entities, and when.
+ * <p>
+ * Binary layout (big-endian), written by {@link AuditJournal}:
+ * <pre>
+ * int    length      bytes after the CRC (sequence + payload)
+ * int    crc         CRC32 of sequence + payload
+ * long   sequence    journal sequence number, starts at 1
+ * -- payload --
+ * long   timestamp   epoch ms
+ * byte   type        change type ordinal (CREATE, UPDATE, DELETE)
+ * short  entity      length + UTF-8 entity alias
+ * short  actor       length + UTF-8 actor (client ID or remote address), 0 if unknown
+ * int    count       ID count
+ * long[] ids         entity IDs
+ * </pre>
+ * A zero length marks the end of written data in a segment.
+ * @author ss
+ */
+public class AuditRecord {
+    /** Record header bytes (length and CRC). */
+    static final int HEADER = 8;
+    /** Max entity alias and actor bytes. */
+    private static final int MAX_STRING = Short.MAX_VALUE;
+    // =========================================== FIELDS =============================================================
+    /** Sequence number, 0 until written. */
+    private final long sequence;
+    /** Timestamp, epoch ms. */
+    private final long timestamp;
+    /** Change type. */
+    private final EntityChangeEvent.ChangeType type;
+    /** Entity alias. */
+    private final String entity;
+    /** Actor, null if unknown. */
+    private final String actor;
+    /** Entity IDs. */
+    private final long[] ids;
+    // =========================================== ACTIONS ============================================================
+    /**
+     * Constructor.
+     * @param sequence sequence number (0 until written).
+     * @param timestamp timestamp, epoch ms.
+     * @param type change type.
+     * @param entity entity alias.
+     * @param actor actor (may be null).
+     * @param ids entity IDs.
+     */
+    public AuditRecord(long sequence, long timestamp, EntityChangeEvent.ChangeType type, String entity,
+            String actor, long[] ids) {
+        this.sequence = sequence;
+        this.timestamp = timestamp;
+        this.type = type;
+        this.entity = entity;
+        this.actor = actor;
+        this.ids = ids;
+    }
+    /**
+     * Encode payload (everything after the sequence number).
+     * @return payload bytes.
+     */
+    byte[] encodePayload() {
+        byte[] entityBytes = truncate(entity.getBytes(StandardCharsets.UTF_8));
+        byte[] actorBytes = actor == null ? new byte[0] : truncate(actor.getBytes(StandardCharsets.UTF_8));
+        ByteBuffer buffer = ByteBuffer.allocate(8 + 1 + 2 + entityBytes.length + 2 + actorBytes.length + 4
+                + ids.length * 8);
+        buffer.putLong(timestamp).put((byte) type.ordinal());
+        buffer.putShort((short) entityBytes.length).put(entityBytes);
+        buffer.putShort((short) actorBytes.length).put(actorBytes);
+        buffer.putInt(ids.length);
+        for (long id : ids) {
+            buffer.putLong(id);
+        }
+        return buffer.array();
+    }
+    /**
+     * Decode payload.
+     * @param sequence sequence number.
+     * @param buffer buffer positioned at the payload.
+     * @return record.
+     */
+    static AuditRecord decode(long sequence, ByteBuffer buffer) {
+        long timestamp = buffer.getLong();
+        EntityChangeEvent.ChangeType type = EntityChangeEvent.ChangeType.values()[buffer.get()];
+        String entity = readString(buffer);
+        String actor = readString(buffer);
+        long[] ids = new long[buffer.getInt()];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = buffer.getLong();
+        }
+        return new AuditRecord(sequence, timestamp, type, entity, actor.isEmpty() ? null : actor, ids);
+    }
+    @Override
+    public String toString() {
+        return sequence + " " + Instant.ofEpochMilli(timestamp) + " " + type + " " + entity + " "
+                + (actor == null ? "-" : actor) + " " + Arrays.toString(ids);
+    }
+    // =========================================== SET & GET ==========================================================
+    /**
+     * @return the sequence
+     */
+    public long getSequence() {
+        return sequence;
+    }
+    /**
+     * @return the timestamp
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+    /**
+     * @return the type
+     */
+    public EntityChangeEvent.ChangeType getType() {
+        return type;
+    }
+    /**
+     * @return the entity
+     */
+    public String getEntity() {
+        return entity;
+    }
+    /**
+     * @return the actor
+     */
+    public String getActor() {
+        return actor;
+    }
+    /**
+     * @return the ids
+     */
+    public long[] getIds() {
+        return ids;
+    }
+    // =========================================== PRIVATE ============================================================
+    private static byte[] truncate(byte[] bytes) {
+        return bytes.length > MAX_STRING ? Arrays.copyOf(bytes, MAX_STRING) : bytes;
+    }
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
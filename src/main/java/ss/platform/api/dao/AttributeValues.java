@@ -0,0 +1,113 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Date;
+
+/**
+ * Conversion between attribute values and their string form (cursors, URL parameters).
+ * Values keep their full precision: timestamps are formatted as ISO instants with nanoseconds, a cursor rounded
+ * to milliseconds would skip or repeat rows with the same millisecond.
+ * @author ss
+ */
+final class AttributeValues {
+    /**
+     * Utility class.
+     */
+    private AttributeValues() {
+    }
+    /**
+     * Format attribute value.
+     * @param value attribute value.
+     * @return string form or null.
+     */
+    static String format(Object value) {
+        if (value == null) {
+            return null;
+        } else if (value instanceof Timestamp) {
+            return ((Timestamp) value).toInstant().toString();
+        } else if (value instanceof Date) {
+            return String.valueOf(((Date) value).getTime());
+        } else if (value instanceof Enum) {
+            return ((Enum<?>) value).name();
+        }
+        return value.toString();
+    }
+    /**
+     * Parse attribute value.
+     * @param value string form.
+     * @param type attribute java type.
+     * @return attribute value or null.
+     * @throws IllegalArgumentException if value can not be converted.
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    static Object parse(String value, Class<?> type) {
+        if (value == null) {
+            return null;
+        }
+        try {
+            if (type == String.class) {
+                return value;
+            } else if (type == Long.class || type == long.class) {
+                return Long.valueOf(value);
+            } else if (type == Integer.class || type == int.class) {
+                return Integer.valueOf(value);
+            } else if (type == Short.class || type == short.class) {
+                return Short.valueOf(value);
+            } else if (type == Byte.class || type == byte.class) {
+                return Byte.valueOf(value);
+            } else if (type == Double.class || type == double.class) {
+                return Double.valueOf(value);
+            } else if (type == Float.class || type == float.class) {
+                return Float.valueOf(value);
+            } else if (type == Boolean.class || type == boolean.class) {
+                return Boolean.valueOf(value);
+            } else if (type == BigDecimal.class) {
+                return new BigDecimal(value);
+            } else if (type == BigInteger.class) {
+                return new BigInteger(value);
+            } else if (type == LocalDate.class) {
+                return LocalDate.parse(value);
+            } else if (type == LocalDateTime.class) {
+                return LocalDateTime.parse(value);
+            } else if (type == Instant.class) {
+                return Instant.parse(value);
+            } else if (Date.class.isAssignableFrom(type)) {
+                // epoch milliseconds or ISO instant
+                return value.indexOf('T') < 0 ? new Date(Long.parseLong(value)) : Timestamp.from(Instant.parse(value));
+            } else if (type.isEnum()) {
+                return Enum.valueOf((Class<? extends Enum>) type, value);
+            }
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("Invalid value [" + value + "] for type " + type.getSimpleName(), e);
+        }
+        throw new IllegalArgumentException("Unsupported attribute type: " + type.getName());
+    }
+}
@@ -6,6 +6,8 @@
 package ss.platform.api.dao;
 
 import java.io.Serializable;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -27,6 +29,20 @@ public interface CoreDAO {
      * @return updated entity.
      */
     <T extends DataModel> T update(T entity);
+    /**
+     * Create entities with JDBC batching, in one transaction.
+     * @param <T> entity class.
+     * @param entities entities.
+     * @return created entities (detached, with IDs).
+     */
+    <T extends DataModel> List<T> createAll(List<T> entities);
+    /**
+     * Update entities with JDBC batching, in one transaction.
+     * @param <T> entity class.
+     * @param entities entities.
+     * @return updated entities (detached).
+     */
+    <T extends DataModel> List<T> updateAll(List<T> entities);
     /**
      * Find entity by ID.
      * @param <T> entity type.
@@ -36,6 +52,18 @@ public interface CoreDAO {
      * @throws Exception error.
      */
     <T extends DataModel> T findById(Serializable id, Class<T> cl) throws Exception;
+    /**
+     * Patch entity: one UPDATE of the given columns, without loading the entity. Increments the version.
+     * @param <T> entity type.
+     * @param cl entity class.
+     * @param id entity ID.
+     * @param values new values by field name (null clears the column).
+     * @param expectedVersion expected version or null.
+     * @return true if entity was patched, false if it does not exist.
+     * @throws IllegalArgumentException if a field is unknown or can not be patched.
+     * @throws org.springframework.dao.OptimisticLockingFailureException if entity version differs from expected.
+     */
+    <T extends DataModel> boolean patch(Class<T> cl, Long id, Map<String, Object> values, Long expectedVersion);
     /**
      * Delete entity.
      * @param <T> entity type.
@@ -45,14 +73,16 @@ public interface CoreDAO {
      */
     <T extends DataModel> void delete(Serializable id, Class<T> cl) throws Exception;
     /**
-     * Mass deletion.
+     * Mass deletion, one DELETE statement in one transaction. Callers split large sets into chunks.
      * @param <T> entity type.
      * @param ids set of IDs.
      * @param cl entity class.
+     * @return deleted rows.
      */
-    <T extends DataModel> void massDelete(Set<Long> ids, Class<T> cl);
+    <T extends DataModel> int massDelete(Set<Long> ids, Class<T> cl);
     /**
      * Search entities.
+     * If the request selects fields, rows are field maps loaded by a projection query instead of entities.
      * @param <T> entity type.
      * @param cl entity class.
      * @param searchRequest search request.
@@ -61,4 +91,16 @@ public interface CoreDAO {
      */
     <T extends DataModel> EntitySearchResponse searchEntities(Class<T> cl, EntitySearchRequest searchRequest)
             throws Exception;
+    /**
+     * Scroll all entities matching the search request (filters and order, paging is ignored) with a forward-only
+     * cursor. The persistence context is cleared periodically, so memory use does not depend on the row count.
+     * @param <T> entity type.
+     * @param cl entity class.
+     * @param searchRequest search request.
+     * @param visitor entity visitor, entities are detached after the visit.
+     * @return number of visited entities.
+     * @throws Exception error.
+     */
+    <T extends DataModel> long scrollEntities(Class<T> cl, EntitySearchRequest searchRequest,
+            EntityVisitor<T> visitor) throws Exception;
 }
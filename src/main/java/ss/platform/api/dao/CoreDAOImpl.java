@@ -5,22 +5,48 @@
  */
 package ss.platform.api.dao;
 
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
 import java.io.Serializable;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+import javax.annotation.PostConstruct;
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import javax.persistence.PersistenceException;
+import javax.persistence.Table;
 import javax.persistence.criteria.CriteriaBuilder;
 import javax.persistence.criteria.CriteriaDelete;
 import javax.persistence.criteria.CriteriaQuery;
-import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.CriteriaUpdate;
 import javax.persistence.criteria.Predicate;
 import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import org.hibernate.ScrollMode;
+import org.hibernate.ScrollableResults;
+import org.hibernate.exception.SQLGrammarException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import ss.platform.api.search.FullTextIndexManager;
+import ss.platform.api.search.SearchHits;
 
 /**
  * Core DAO implementation.
@@ -28,88 +54,381 @@ import org.springframework.transaction.annotation.Transactional;
  */
 @Repository
 class CoreDAOImpl implements CoreDAO {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(CoreDAOImpl.class);
     /** DataModel manager. */
     @PersistenceContext
     private EntityManager em;
+    /** Event publisher. */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    /** Search count cache. */
+    @Autowired
+    private SearchCountCache countCache;
+    /** Entity cache. */
+    @Autowired
+    private EntityCache entityCache;
+    /** JDBC batch size, the persistence context is flushed and cleared after each batch. */
+    @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}")
+    private int jdbcBatchSize;
+    /** Scroll fetch size, Integer.MIN_VALUE makes MySQL Connector/J stream rows one by one. */
+    @Value("${platform.export.fetch-size:" + Integer.MIN_VALUE + "}")
+    private int scrollFetchSize;
+    /** Rows between persistence context clears while scrolling. */
+    @Value("${platform.export.clear-interval:1000}")
+    private int scrollClearInterval;
+    /** Full-text indexes. */
+    @Autowired
+    private FullTextIndexManager fullTextIndex;
+    /** Max full-text hits filtered in memory when full-text search is combined with filters. */
+    @Value("${platform.search.full-text.max-hits:1000}")
+    private int maxFullTextHits;
+    /** Max cached search plans. */
+    @Value("${platform.search.plan-cache.max-size:1000}")
+    private int maxPlans;
+    /** Compiled search plans by key, bounded (rarely used plans are evicted first). */
+    private Cache<String, SearchPlan<?>> plans;
+    /** Table names by entity class. */
+    private final Map<Class<?>, String> tableNames = new ConcurrentHashMap<>();
+    /** Table statistics are available. */
+    private volatile boolean estimateSupported = true;
+    /**
+     * Build plan cache.
+     */
+    @PostConstruct
+    protected void init() {
+        plans = Caffeine.newBuilder().maximumSize(maxPlans).build();
+    }
     @Override
     @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
     public <T extends DataModel> T create(final T entity) {
         em.persist(entity);
+        eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.ChangeType.CREATE, entity.getClass(),
+                Collections.singletonList(entity.getId()), Collections.singletonList(entity)));
         return entity;
     }
     @Override
     @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
     public <T extends DataModel> T update(final T entity) {
+        keepVersion(entity);
         T updated = em.merge(entity);
+        eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.ChangeType.UPDATE, updated.getClass(),
+                Collections.singletonList(updated.getId()), Collections.singletonList(updated)));
         return updated;
     }
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
+    public <T extends DataModel> List<T> createAll(final List<T> entities) {
+        for (int i = 0; i < entities.size(); i++) {
+            em.persist(entities.get(i));
+            if ((i + 1) % jdbcBatchSize == 0) {
+                em.flush();
+                em.clear();
+            }
+        }
+        publishBatchEvent(EntityChangeEvent.ChangeType.CREATE, entities);
+        return entities;
+    }
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
+    public <T extends DataModel> List<T> updateAll(final List<T> entities) {
+        List<T> result = new ArrayList<>(entities.size());
+        for (int from = 0; from < entities.size(); from += jdbcBatchSize) {
+            List<T> batch = entities.subList(from, Math.min(from + jdbcBatchSize, entities.size()));
+            // one SELECT for the whole batch, so merge finds the rows in the persistence context
+            preload(batch);
+            for (T entity : batch) {
+                keepVersion(entity);
+                result.add(em.merge(entity));
+            }
+            em.flush();
+            em.clear();
+        }
+        publishBatchEvent(EntityChangeEvent.ChangeType.UPDATE, result);
+        return result;
+    }
+    @Override
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public <T extends DataModel> T findById(final Serializable id, final Class<T> cl) throws Exception {
+        if (TransactionSynchronizationManager.isActualTransactionActive()) {
+            // inside a transaction the caller expects a managed instance
+            return em.find(cl, id);
+        }
+        return entityCache.get(cl, id, (key) -> em.find(cl, key));
+    }
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
+    public <T extends DataModel> boolean patch(Class<T> cl, Long id, Map<String, Object> values,
+            Long expectedVersion) {
         CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<T> criteria = cb.createQuery(cl);
+        EntityType<T> entityType = em.getMetamodel().entity(cl);
+        CriteriaUpdate<T> criteria = cb.createCriteriaUpdate(cl);
         Root<T> c = criteria.from(cl);
-        List<Predicate> predicates = new ArrayList<>();
-        predicates.add(cb.equal(c.get(DataModel_.id), id));
-        criteria.select(c).where(predicates.toArray(new Predicate[0]));
-        return em.find(cl, id);
+        values.forEach((field, value) -> {
+            SingularAttribute<?, ?> attribute = (SingularAttribute<?, ?>) SearchPlan.basicAttribute(entityType,
+                    field, "patched");
+            if (attribute.isId() || attribute.isVersion()) {
+                throw new IllegalArgumentException("Field can not be patched: " + field);
+            }
+            if (value == null && !attribute.isOptional()) {
+                throw new IllegalArgumentException("Field is required: " + field);
+            }
+            criteria.set(c.get(field), value);
+        });
+        criteria.set(c.get(DataModel_.version), cb.sum(c.get(DataModel_.version), 1L));
+        Predicate byId = cb.equal(c.get(DataModel_.id), id);
+        criteria.where(expectedVersion == null ? byId
+                : cb.and(byId, cb.equal(c.get(DataModel_.version), expectedVersion)));
+        if (em.createQuery(criteria).executeUpdate() == 0) {
+            if (expectedVersion != null && em.find(cl, id) != null) {
+                throw new OptimisticLockingFailureException("Entity was modified: " + cl.getSimpleName() + "#" + id);
+            }
+            return false;
+        }
+        eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.ChangeType.UPDATE, cl,
+                Collections.singletonList(id), Collections.emptyList()));
+        return true;
     }
     @Override
     @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
     public <T extends DataModel> void delete(final Serializable id, final Class<T> cl) throws Exception {
-        T entity = findById(id, cl);
-        if (entity != null) {
-            em.remove(entity);
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaDelete<T> criteria = cb.createCriteriaDelete(cl);
+        Root<T> c = criteria.from(cl);
+        criteria.where(cb.equal(c.get(DataModel_.id), id));
+        if (em.createQuery(criteria).executeUpdate() > 0) {
+            eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.ChangeType.DELETE, cl,
+                    Collections.singletonList(id), Collections.emptyList()));
         }
     }
     @Override
     @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
-    public <T extends DataModel> void massDelete(Set<Long> ids, Class<T> cl) {
-        if (!ids.isEmpty()) {
-            CriteriaBuilder cb = em.getCriteriaBuilder();
-            CriteriaDelete<T> criteria = cb.createCriteriaDelete(cl);
-            Root<T> c = criteria.from(cl);
-            criteria.where(c.get(DataModel_.id).in(ids));
-            em.createQuery(criteria).executeUpdate();
+    public <T extends DataModel> int massDelete(Set<Long> ids, Class<T> cl) {
+        if (ids.isEmpty()) {
+            return 0;
         }
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        CriteriaDelete<T> criteria = cb.createCriteriaDelete(cl);
+        Root<T> c = criteria.from(cl);
+        criteria.where(c.get(DataModel_.id).in(ids));
+        int deleted = em.createQuery(criteria).executeUpdate();
+        eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.ChangeType.DELETE, cl, ids,
+                Collections.emptyList()));
+        return deleted;
     }
     @Override
-    @Transactional(propagation = Propagation.SUPPORTS)
+    @Transactional(propagation = Propagation.SUPPORTS, readOnly = true)
     public <T extends DataModel> EntitySearchResponse searchEntities(Class<T> cl, EntitySearchRequest searchRequest)
             throws Exception {
-        EntitySearchResponse<T> response = new EntitySearchResponse<>();
-        // entities data
-        CriteriaBuilder cb = em.getCriteriaBuilder();
-        CriteriaQuery<T> criteria = cb.createQuery(cl);
-        Root<T> c = criteria.from(cl);
-        List<Predicate> predicates = createSearchCriteria(cb, c, cl, searchRequest);
-        criteria.select(c).where(predicates.toArray(new Predicate[0]));
-        Optional.ofNullable(searchRequest.getOrderBy()).ifPresent((orderBy) -> {
-            if ("asc".equals(searchRequest.getOrder())) {
-                criteria.orderBy(cb.asc(c.get(orderBy)));
-            } else {
-                criteria.orderBy(cb.desc(c.get(orderBy)));
-            }
-        });
-        List<T> entities = em.createQuery(criteria)
-                .setFirstResult((searchRequest.getPage() - 1) * searchRequest.getPageSize())
-                .setMaxResults(searchRequest.getPageSize()).getResultList();
-        response.setData(entities);
-        // entities count
-        CriteriaQuery<Long> criteriaCount = cb.createQuery(Long.class);
-        Root<T> cCount = criteriaCount.from(cl);
-        Expression<Long> sum = cb.count(cCount);
-        predicates = createSearchCriteria(cb, cCount, cl, searchRequest);
-        criteriaCount.select(sum).where(predicates.toArray(new Predicate[0]));
-        List<Long> maxList = em.createQuery(criteriaCount).getResultList();
-        Long count = maxList.iterator().next();
-        response.setTotal(count == null ? 0 : Integer.valueOf(String.valueOf(count)));
+        if (searchRequest.getQuery() != null) {
+            return fullTextSearch(cl, searchRequest);
+        }
+        EntitySearchResponse<Object> response = new EntitySearchResponse<>();
+        // entities data (or field maps if the request selects fields)
+        SearchCursor cursor = cursor(searchRequest);
+        SearchPlan<T> plan = plan(cl, searchRequest, cursor);
+        List<Object> rows = plan.list(em, searchRequest, cursor,
+                cursor == null ? (searchRequest.getPage() - 1) * searchRequest.getPageSize() : null,
+                searchRequest.getPageSize());
+        response.setData(rows);
+        if (!rows.isEmpty() && rows.size() == searchRequest.getPageSize()) {
+            Object last = rows.get(rows.size() - 1);
+            String orderBy = searchRequest.getOrderBy();
+            Object lastValue = orderBy == null ? null : SearchPlan.value(last, orderBy);
+            response.setNext(new SearchCursor(searchRequest.getOrder(), orderBy,
+                    (Long) SearchPlan.value(last, DataModel_.ID), AttributeValues.format(lastValue)).encode());
+        }
+        // entities count (the cursor does not affect the total)
+        response.setTotal(countEntities(cl, searchRequest, plan));
         return response;
     }
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, readOnly = true, rollbackFor = Exception.class)
+    public <T extends DataModel> long scrollEntities(Class<T> cl, EntitySearchRequest searchRequest,
+            EntityVisitor<T> visitor) throws Exception {
+        SearchCursor cursor = cursor(searchRequest);
+        @SuppressWarnings("unchecked")
+        org.hibernate.query.Query<T> query = plan(cl, searchRequest, cursor)
+                .createDataQuery(em, searchRequest, cursor).unwrap(org.hibernate.query.Query.class);
+        query.setFetchSize(scrollFetchSize).setReadOnly(true);
+        long count = 0;
+        try (ScrollableResults results = query.scroll(ScrollMode.FORWARD_ONLY)) {
+            while (results.next()) {
+                visitor.visit(cl.cast(results.get(0)));
+                if (++count % scrollClearInterval == 0) {
+                    em.clear();
+                }
+            }
+        }
+        return count;
+    }
     // =========================================== PRIVATE ============================================================
-    private <T extends DataModel> List<Predicate> createSearchCriteria(CriteriaBuilder cb, Root<T> c, Class<T> clazz,
-            EntitySearchRequest searchRequest) throws Exception {
-        List<Predicate> predicates = new ArrayList<>();
-        return predicates;
+    /**
+     * Full-text search: hits come ranked from the in-process index, entities are loaded by ID with the request
+     * filters applied. With filters, up to maxFullTextHits best hits are filtered and paged in memory: pages past
+     * the cap are rejected, and the total is a lower bound if there were more hits.
+     */
+    private <T extends DataModel> EntitySearchResponse<Object> fullTextSearch(Class<T> cl,
+            EntitySearchRequest searchRequest) {
+        if (searchRequest.getAfter() != null) {
+            throw new IllegalArgumentException("Keyset paging is not supported for full-text search");
+        }
+        if (searchRequest.getOrderBy() != null || searchRequest.getOrder() != null) {
+            throw new IllegalArgumentException("Order is not supported for full-text search, hits are ranked");
+        }
+        int from = (searchRequest.getPage() - 1) * searchRequest.getPageSize();
+        boolean filtered = !searchRequest.getFilters().isEmpty();
+        if (filtered && from + searchRequest.getPageSize() > maxFullTextHits) {
+            throw new IllegalArgumentException("Full-text search with filters is limited to the first "
+                    + maxFullTextHits + " hits");
+        }
+        SearchHits hits = fullTextIndex.search(cl, searchRequest.getQuery(),
+                filtered ? maxFullTextHits : from + searchRequest.getPageSize());
+        long[] hitIds = hits.getIds();
+        List<String> candidates = new ArrayList<>();
+        for (int i = filtered ? 0 : from; i < hitIds.length; i++) {
+            candidates.add(String.valueOf(hitIds[i]));
+        }
+        List<Object> ranked = new ArrayList<>();
+        if (!candidates.isEmpty()) {
+            EntitySearchRequest idsRequest = new EntitySearchRequest();
+            idsRequest.setFields(searchRequest.getFields());
+            idsRequest.getFilters().addAll(searchRequest.getFilters());
+            idsRequest.getFilters().add(new SearchFilter(DataModel_.ID, SearchFilter.Operator.IN, candidates));
+            Map<Long, Object> byId = new HashMap<>();
+            plan(cl, idsRequest, null).list(em, idsRequest, null, null, null)
+                    .forEach((row) -> byId.put((Long) SearchPlan.value(row, DataModel_.ID), row));
+            candidates.stream().map((id) -> byId.get(Long.valueOf(id))).filter(Objects::nonNull)
+                    .forEach(ranked::add);
+        }
+        EntitySearchResponse<Object> response = new EntitySearchResponse<>();
+        if (filtered) {
+            response.setData(ranked.subList(Math.min(from, ranked.size()),
+                    Math.min(from + searchRequest.getPageSize(), ranked.size())));
+        } else {
+            response.setData(ranked);
+        }
+        if (searchRequest.getTotal() != EntitySearchRequest.TotalMode.NONE) {
+            response.setTotal(filtered ? ranked.size() : hits.getTotal());
+            if (filtered && hitIds.length < hits.getTotal()) {
+                // hits past the cap were not filtered
+                response.setTotalLowerBound(true);
+            }
+        }
+        return response;
+    }
+    private SearchCursor cursor(EntitySearchRequest searchRequest) {
+        SearchCursor cursor = Optional.ofNullable(searchRequest.getAfter()).map(SearchCursor::decode).orElse(null);
+        if (cursor != null) {
+            cursor.verify(searchRequest);
+        }
+        return cursor;
+    }
+    @SuppressWarnings("unchecked")
+    private <T extends DataModel> SearchPlan<T> plan(Class<T> cl, EntitySearchRequest searchRequest,
+            SearchCursor cursor) {
+        return (SearchPlan<T>) plans.get(SearchPlan.key(cl, searchRequest, cursor),
+                (key) -> new SearchPlan<>(em, cl, searchRequest, cursor));
+    }
+    /**
+     * Entity without version overwrites the current row: take the current version, otherwise Hibernate would
+     * treat the detached entity as transient.
+     */
+    private <T extends DataModel> void keepVersion(T entity) {
+        if (entity.getVersion() == null && entity.getId() != null) {
+            DataModel current = em.find(entity.getClass(), entity.getId());
+            if (current != null) {
+                entity.setVersion(current.getVersion());
+            }
+        }
+    }
+    @SuppressWarnings("unchecked")
+    private <T extends DataModel> void preload(List<T> batch) {
+        Map<Class<T>, List<Long>> idsByClass = new HashMap<>();
+        batch.stream().filter((entity) -> entity.getId() != null).forEach((entity) -> idsByClass
+                .computeIfAbsent((Class<T>) entity.getClass(), (k) -> new ArrayList<>()).add(entity.getId()));
+        idsByClass.forEach((cl, ids) -> {
+            CriteriaBuilder cb = em.getCriteriaBuilder();
+            CriteriaQuery<T> criteria = cb.createQuery(cl);
+            Root<T> c = criteria.from(cl);
+            criteria.select(c).where(c.get(DataModel_.id).in(ids));
+            em.createQuery(criteria).getResultList();
+        });
+    }
+    private <T extends DataModel> void publishBatchEvent(EntityChangeEvent.ChangeType type, List<T> entities) {
+        Map<Class<? extends DataModel>, List<T>> byClass = new LinkedHashMap<>();
+        entities.forEach((entity) -> byClass.computeIfAbsent(entity.getClass(), (k) -> new ArrayList<>())
+                .add(entity));
+        byClass.forEach((cl, list) -> eventPublisher.publishEvent(new EntityChangeEvent(type, cl,
+                list.stream().map(DataModel::getId).collect(Collectors.toList()), list)));
+    }
+    private <T extends DataModel> Integer countEntities(Class<T> cl, EntitySearchRequest searchRequest,
+            SearchPlan<T> plan) {
+        EntitySearchRequest.TotalMode mode = searchRequest.getTotal();
+        if (mode == EntitySearchRequest.TotalMode.NONE) {
+            return null;
+        }
+        String key = countKey(searchRequest);
+        if (mode == EntitySearchRequest.TotalMode.ESTIMATE) {
+            if (key.isEmpty() && estimateSupported) {
+                Long estimate = estimateCount(cl);
+                if (estimate != null) {
+                    return estimate.intValue();
+                }
+            }
+            mode = EntitySearchRequest.TotalMode.CACHED;
+        }
+        if (mode == EntitySearchRequest.TotalMode.CACHED) {
+            Long cached = countCache.get(cl, key);
+            if (cached != null) {
+                return cached.intValue();
+            }
+            long generation = countCache.generation(cl);
+            long count = exactCount(plan, searchRequest);
+            countCache.put(cl, key, generation, count);
+            return (int) count;
+        }
+        return (int) exactCount(plan, searchRequest);
+    }
+    private <T extends DataModel> long exactCount(SearchPlan<T> plan, EntitySearchRequest searchRequest) {
+        Long count = plan.createCountQuery(em, searchRequest).getSingleResult();
+        return count == null ? 0 : count;
+    }
+    /**
+     * Row count estimate from InnoDB table statistics.
+     * Estimates are disabled only if the database has no such statistics (SQL grammar error), other errors fall
+     * back to the count query for this request only.
+     * @return estimate or null if statistics are not available.
+     */
+    private Long estimateCount(Class<?> cl) {
+        try {
+            List<?> rows = em.createNativeQuery("SELECT TABLE_ROWS FROM information_schema.TABLES"
+                    + " WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = ?1")
+                    .setParameter(1, tableName(cl)).getResultList();
+            if (rows.isEmpty() || rows.get(0) == null) {
+                return null;
+            }
+            return ((Number) rows.get(0)).longValue();
+        } catch (PersistenceException e) {
+            if (e.getCause() instanceof SQLGrammarException) {
+                LOG.warn("Table statistics are not available, estimated totals are disabled: " + e.getMessage());
+                estimateSupported = false;
+            } else {
+                LOG.warn("Table statistics query failed, counting rows: " + e.getMessage());
+            }
+            return null;
+        }
+    }
+    private String tableName(Class<?> cl) {
+        return tableNames.computeIfAbsent(cl, (k) -> Optional.ofNullable(k.getAnnotation(Table.class))
+                .map(Table::name).filter((name) -> !name.isEmpty())
+                .orElseGet(() -> em.getMetamodel().entity(k).getName()));
+    }
+    /**
+     * Key of the cached total: normalized filters (sorted, the order of filters does not change the total).
+     */
+    private String countKey(EntitySearchRequest searchRequest) {
+        return searchRequest.getFilters().stream().map(SearchFilter::toString).sorted()
+                .collect(Collectors.joining("&"));
     }
 }
@@ -24,10 +24,14 @@
 package ss.platform.api.dao;
 
 import java.io.Serializable;
+import javax.persistence.Column;
 import javax.persistence.GeneratedValue;
 import javax.persistence.GenerationType;
 import javax.persistence.Id;
 import javax.persistence.MappedSuperclass;
+import javax.persistence.Version;
+import org.hibernate.annotations.GenericGenerator;
+import org.hibernate.annotations.Parameter;
 
 /**
  * DataModel.
@@ -35,10 +39,28 @@ import javax.persistence.MappedSuperclass;
  */
 @MappedSuperclass
 public abstract class DataModel implements Serializable {
-    /** Primary key. */
+    /**
+     * Primary key.
+     * IDs come from a pooled table generator (one segment per entity table) instead of IDENTITY, so Hibernate can
+     * batch inserts. Segments of tables that already have rows are raised to their max ID at startup.
+     */
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "pooled_table")
+    @GenericGenerator(name = "pooled_table", strategy = "org.hibernate.id.enhanced.TableGenerator", parameters = {
+        @Parameter(name = "table_name", value = "id_generator"),
+        @Parameter(name = "prefer_entity_table_as_segment_value", value = "true"),
+        @Parameter(name = "increment_size", value = "50"),
+        @Parameter(name = "optimizer", value = "pooled-lo")
+    })
     private Long id;
+    /**
+     * Optimistic lock version, exposed as the entity ETag.
+     * An update carrying a stale version fails instead of overwriting a concurrent change; an update without
+     * version overwrites the current row (last write wins).
+     */
+    @Version
+    @Column(name = "version", nullable = false)
+    private Long version;
     /**
      * @return the id
      */
@@ -51,4 +73,16 @@ public abstract class DataModel implements Serializable {
     public void setId(Long id) {
         this.id = id;
     }
+    /**
+     * @return the version
+     */
+    public Long getVersion() {
+        return version;
+    }
+    /**
+     * @param version the version to set
+     */
+    public void setVersion(Long version) {
+        this.version = version;
+    }
 }
@@ -0,0 +1,172 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.beans.Introspector;
+import java.io.Serializable;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.annotation.Order;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Read-through entity cache in front of {@link CoreDAO#findById(java.io.Serializable, java.lang.Class)}.
+ * One bounded cache (W-TinyLFU eviction) per entity type, configured with
+ * <code>platform.entity-cache.{default|entity alias}.max-size</code> and <code>.ttl-ms</code>;
+ * max size 0 disables caching for the entity.
+ * Cached entities are detached and shared between callers, they must be treated as read-only.
+ * When reads are served by replicas, a miss right after a commit may load the old row from a lagging replica;
+ * <code>platform.entity-cache.replica-lag-ms</code> evicts changed entities once more after the replica lag.
+ * Caches are monitored as <code>entities</code> with an <code>entity</code> tag (<code>cache.*</code> meters).
+ * @author ss
+ */
+@Component
+public class EntityCache {
+    /** Configuration prefix. */
+    private static final String PREFIX = "platform.entity-cache.";
+    /** Environment. */
+    @Autowired
+    private Environment env;
+    /** Meter registry. */
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+    /** Max replica lag, ms (0 if reads are not served by replicas). */
+    @Value("${" + PREFIX + "replica-lag-ms:0}")
+    private long replicaLag;
+    /** Delayed eviction scheduler, null if replica lag is 0. */
+    private ScheduledExecutorService scheduler;
+    /** Caches by entity class, empty if caching is disabled for the entity. */
+    private final Map<Class<?>, Optional<Cache<Serializable, DataModel>>> caches = new ConcurrentHashMap<>();
+    /**
+     * Get entity from cache or load it.
+     * @param <T> entity type.
+     * @param cl entity class.
+     * @param id entity ID.
+     * @param loader entity loader.
+     * @return entity or null.
+     */
+    <T extends DataModel> T get(Class<T> cl, Serializable id, Function<Serializable, T> loader) {
+        Optional<Cache<Serializable, DataModel>> cache = cache(cl);
+        if (!cache.isPresent()) {
+            return loader.apply(id);
+        }
+        return cl.cast(cache.get().get(id, loader));
+    }
+    /**
+     * Get cached entity without loading it.
+     * @param <T> entity type.
+     * @param cl entity class.
+     * @param id entity ID.
+     * @return cached entity or null.
+     */
+    public <T extends DataModel> T getIfPresent(Class<T> cl, Serializable id) {
+        return cache(cl).map((cache) -> cl.cast(cache.getIfPresent(id))).orElse(null);
+    }
+    /**
+     * Evict changed entities as soon as they are written (inside the transaction).
+     * @param event entity change event.
+     */
+    @EventListener
+    public void onEntityChange(EntityChangeEvent event) {
+        invalidate(event);
+    }
+    /**
+     * Evict changed entities again after commit, so values loaded by concurrent readers before the commit are
+     * dropped too.
+     * @param event entity change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(EntityChangeEvent.ORDER_INDEX)
+    public void onEntityCommit(EntityChangeEvent event) {
+        invalidate(event);
+        if (scheduler != null) {
+            scheduler.schedule(() -> invalidate(event), replicaLag, TimeUnit.MILLISECONDS);
+        }
+    }
+    /**
+     * Start delayed eviction scheduler.
+     */
+    @PostConstruct
+    protected void init() {
+        if (replicaLag > 0) {
+            scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+                Thread thread = new Thread(runnable, "entity-cache-eviction");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+    /**
+     * Stop delayed eviction scheduler.
+     */
+    @PreDestroy
+    protected void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private void invalidate(EntityChangeEvent event) {
+        cache(event.getEntityClass()).ifPresent((cache) -> cache.invalidateAll(event.getIds()));
+    }
+    private Optional<Cache<Serializable, DataModel>> cache(Class<?> cl) {
+        return caches.computeIfAbsent(cl, this::createCache);
+    }
+    private Optional<Cache<Serializable, DataModel>> createCache(Class<?> cl) {
+        String alias = alias(cl);
+        long maxSize = env.getProperty(PREFIX + alias + ".max-size", Long.class,
+                env.getProperty(PREFIX + "default.max-size", Long.class, 10000L));
+        long ttl = env.getProperty(PREFIX + alias + ".ttl-ms", Long.class,
+                env.getProperty(PREFIX + "default.ttl-ms", Long.class, 300000L));
+        if (maxSize <= 0) {
+            return Optional.empty();
+        }
+        Cache<Serializable, DataModel> cache = Caffeine.newBuilder().maximumSize(maxSize)
+                .expireAfterWrite(Duration.ofMillis(ttl)).recordStats().build();
+        meterRegistry.ifAvailable((registry) -> CaffeineCacheMetrics.monitor(registry, cache, "entities", "entity",
+                alias));
+        return Optional.of(cache);
+    }
+    private static String alias(Class<?> cl) {
+        return Introspector.decapitalize(cl.getSimpleName());
+    }
+}
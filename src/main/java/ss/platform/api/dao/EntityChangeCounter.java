@@ -0,0 +1,92 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Per-entity change counter, incremented after commit of every write made through {@link CoreDAO}.
+ * A tag built from the counter identifies a state of the entity table on this node: it changes whenever the
+ * table changes, so search results can be revalidated without a query. The boot epoch keeps tags unique across
+ * restarts, the time bucket bounds staleness caused by writes from other nodes.
+ * @author ss
+ */
+@Component
+public class EntityChangeCounter {
+    /** Boot epoch. */
+    private final long epoch = System.currentTimeMillis();
+    /** Max age of a tag, ms. */
+    @Value("${platform.etag.max-age-ms:60000}")
+    private long maxAge;
+    /** Counters by entity. */
+    private final Map<Class<?>, AtomicLong> counters = new ConcurrentHashMap<>();
+    /** Last change time by entity, epoch ms. */
+    private final Map<Class<?>, Long> changed = new ConcurrentHashMap<>();
+    /**
+     * Get entity change count.
+     * @param cl entity class.
+     * @return change count since boot.
+     */
+    public long get(Class<?> cl) {
+        return counter(cl).get();
+    }
+    /**
+     * Get time of the last entity change.
+     * @param cl entity class.
+     * @return epoch ms, 0 if the entity was not changed since boot.
+     */
+    public long lastChange(Class<?> cl) {
+        return changed.getOrDefault(cl, 0L);
+    }
+    /**
+     * Get entity state tag.
+     * @param cl entity class.
+     * @return tag, changes on every entity change and at least every max age.
+     */
+    public String tag(Class<?> cl) {
+        return Long.toString(epoch, Character.MAX_RADIX) + '-' + Long.toString(get(cl), Character.MAX_RADIX)
+                + '-' + Long.toString(System.currentTimeMillis() / maxAge, Character.MAX_RADIX);
+    }
+    /**
+     * Count entity change.
+     * @param event entity change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(EntityChangeEvent.ORDER_GENERATION)
+    public void onEntityChange(EntityChangeEvent event) {
+        // time first: whoever sees the new count sees the time of the change
+        changed.put(event.getEntityClass(), System.currentTimeMillis());
+        counter(event.getEntityClass()).incrementAndGet();
+    }
+    // =========================================== PRIVATE ============================================================
+    private AtomicLong counter(Class<?> cl) {
+        return counters.computeIfAbsent(cl, (k) -> new AtomicLong());
+    }
+}
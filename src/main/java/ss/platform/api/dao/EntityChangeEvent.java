@@ -0,0 +1,105 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import java.io.Serializable;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Entity change event.
+ * Published by {@link CoreDAO} for every write. Listeners that must only see committed data should use
+ * <code>@TransactionalEventListener(fallbackExecution = true)</code>.
+ * Caches and indexes are updated first ({@link #ORDER_INDEX}), then the change generations are incremented
+ * ({@link #ORDER_GENERATION}): a read that sees the new generation also sees the updated indexes, so it can not
+ * cache a stale result under the new generation. Unordered listeners (change feed, audit) run last.
+ * @author ss
+ */
+public class EntityChangeEvent {
+    /** Listener order of caches and indexes. */
+    public static final int ORDER_INDEX = 0;
+    /** Listener order of change generations (entity change counter, search totals). */
+    public static final int ORDER_GENERATION = 100;
+    /**
+     * Change type.
+     */
+    public enum ChangeType {
+        /** Entities created. */
+        CREATE,
+        /** Entities updated. */
+        UPDATE,
+        /** Entities deleted. */
+        DELETE
+    }
+    // =========================================== FIELDS =============================================================
+    /** Change type. */
+    private final ChangeType type;
+    /** Entity class. */
+    private final Class<? extends DataModel> entityClass;
+    /** Changed entity IDs. */
+    private final Collection<? extends Serializable> ids;
+    /** Changed entities, empty if the write did not load them. */
+    private final List<? extends DataModel> entities;
+    // =========================================== ACTIONS ============================================================
+    /**
+     * Constructor.
+     * @param type change type.
+     * @param entityClass entity class.
+     * @param ids changed entity IDs.
+     * @param entities changed entities (may be empty).
+     */
+    public EntityChangeEvent(ChangeType type, Class<? extends DataModel> entityClass,
+            Collection<? extends Serializable> ids, List<? extends DataModel> entities) {
+        this.type = type;
+        this.entityClass = entityClass;
+        this.ids = Collections.unmodifiableCollection(ids);
+        this.entities = Collections.unmodifiableList(entities);
+    }
+    // =========================================== SET & GET ==========================================================
+    /**
+     * @return the type
+     */
+    public ChangeType getType() {
+        return type;
+    }
+    /**
+     * @return the entityClass
+     */
+    public Class<? extends DataModel> getEntityClass() {
+        return entityClass;
+    }
+    /**
+     * @return the ids
+     */
+    public Collection<? extends Serializable> getIds() {
+        return ids;
+    }
+    /**
+     * @return the entities
+     */
+    public List<? extends DataModel> getEntities() {
+        return entities;
+    }
+}
@@ -23,7 +23,11 @@
  */
 package ss.platform.api.dao;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.stream.Collectors;
 import javax.servlet.http.HttpServletRequest;
 
 /**
@@ -33,6 +37,19 @@ import javax.servlet.http.HttpServletRequest;
 public class EntitySearchRequest {
     /** Default limit for SQL requests. */
     private static final int DEFAULT_LIMIT = 10000;
+    /**
+     * How the total of a search response is computed.
+     */
+    public enum TotalMode {
+        /** COUNT query with the same predicates (default). */
+        EXACT,
+        /** No total, the response total is null. */
+        NONE,
+        /** Table statistics estimate; falls back to CACHED when the request has filters. */
+        ESTIMATE,
+        /** Exact total cached per entity and filter shape, invalidated by writes. */
+        CACHED
+    }
     // =========================================== FIELDS =============================================================
     /** Page number. Required. */
     private Integer page;
@@ -42,6 +59,16 @@ public class EntitySearchRequest {
     private String order;
     /** Order by field. */
     private String orderBy;
+    /** Keyset cursor (next cursor of the previous page). Switches paging from offset to keyset mode. */
+    private String after;
+    /** Total mode. */
+    private TotalMode total = TotalMode.EXACT;
+    /** Full-text query, results are ranked by relevance instead of order. */
+    private String query;
+    /** Selected fields, null for whole entities. ID and order field are always selected. */
+    private List<String> fields;
+    /** Filters (AND). */
+    private List<SearchFilter> filters = new ArrayList<>();
     // =========================================== ACTIONS ============================================================
     /**
      * Create new request.
@@ -67,12 +94,40 @@ public class EntitySearchRequest {
                 case "order_by":
                     searchRequest.setOrderBy(value);
                     break;
+                case "after":
+                    searchRequest.setAfter(value);
+                    break;
+                case "total":
+                    searchRequest.setTotal(TotalMode.valueOf(value.toUpperCase()));
+                    break;
+                case "q":
+                    searchRequest.setQuery(value);
+                    break;
+                case "fields":
+                    searchRequest.setFields(Arrays.stream(value.split(",")).map(String::trim)
+                            .filter((field) -> !field.isEmpty()).distinct().collect(Collectors.toList()));
+                    break;
+                case "filter":
+                    for (String filter : request.getParameterValues(parameterName)) {
+                        searchRequest.getFilters().add(SearchFilter.parse(filter));
+                    }
+                    break;
                 default:
                     break;
             }
         }
         return searchRequest;
     }
+    /**
+     * Normalized request: equal for requests with equal results (filters are ANDed, so their order is ignored).
+     * @return request key.
+     */
+    public List<Object> normalize() {
+        List<String> sortedFilters = filters.stream().map(SearchFilter::toString).sorted()
+                .collect(Collectors.toList());
+        return Arrays.asList(page, pageSize, order, orderBy, after, total, query == null ? null : query.trim(),
+                fields, sortedFilters);
+    }
     // =========================================== SET & GET ==========================================================
     /**
      * @return the page
@@ -122,4 +177,64 @@ public class EntitySearchRequest {
     public void setOrderBy(String orderBy) {
         this.orderBy = orderBy;
     }
+    /**
+     * @return the after
+     */
+    public String getAfter() {
+        return after;
+    }
+    /**
+     * @param after the after to set
+     */
+    public void setAfter(String after) {
+        this.after = after;
+    }
+    /**
+     * @return the total
+     */
+    public TotalMode getTotal() {
+        return total;
+    }
+    /**
+     * @param total the total to set
+     */
+    public void setTotal(TotalMode total) {
+        this.total = total;
+    }
+    /**
+     * @return the filters
+     */
+    public List<SearchFilter> getFilters() {
+        return filters;
+    }
+    /**
+     * @param filters the filters to set
+     */
+    public void setFilters(List<SearchFilter> filters) {
+        this.filters = filters;
+    }
+    /**
+     * @return the query
+     */
+    public String getQuery() {
+        return query;
+    }
+    /**
+     * @param query the query to set
+     */
+    public void setQuery(String query) {
+        this.query = query;
+    }
+    /**
+     * @return the fields
+     */
+    public List<String> getFields() {
+        return fields;
+    }
+    /**
+     * @param fields the fields to set
+     */
+    public void setFields(List<String> fields) {
+        this.fields = fields;
+    }
 }
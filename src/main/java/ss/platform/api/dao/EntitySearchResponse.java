@@ -23,32 +23,50 @@
  */
 package ss.platform.api.dao;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import java.util.List;
 
 /**
  * Entity search response.
  * @author ss
- * @param <T>  entity type.
+ * @param <T>  row type: entity, or field map if the request selects fields.
  */
-public class EntitySearchResponse <T extends DataModel> {
+public class EntitySearchResponse <T> {
     // ================================================== FIELDS ======================================================
-    /** Total records. */
-    private int total;
+    /** Total records, null if total was not requested. */
+    private Integer total;
+    /** Total is a lower bound (full-text search with filters over more hits than are filtered), else absent. */
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Boolean totalLowerBound;
     /** Page data. */
     private List<T> data;
+    /** Keyset cursor for the next page, null if this is the last page. */
+    private String next;
     // ================================================== SET & GET ===================================================
     /**
      * @return the total
      */
-    public int getTotal() {
+    public Integer getTotal() {
         return total;
     }
     /**
      * @param total the total to set
      */
-    public void setTotal(int total) {
+    public void setTotal(Integer total) {
         this.total = total;
     }
+    /**
+     * @return the totalLowerBound
+     */
+    public Boolean getTotalLowerBound() {
+        return totalLowerBound;
+    }
+    /**
+     * @param totalLowerBound the totalLowerBound to set
+     */
+    public void setTotalLowerBound(Boolean totalLowerBound) {
+        this.totalLowerBound = totalLowerBound;
+    }
     /**
      * @return the data
      */
@@ -61,4 +79,16 @@ public class EntitySearchResponse <T extends DataModel> {
     public void setData(List<T> data) {
         this.data = data;
     }
+    /**
+     * @return the next
+     */
+    public String getNext() {
+        return next;
+    }
+    /**
+     * @param next the next to set
+     */
+    public void setNext(String next) {
+        this.next = next;
+    }
 }
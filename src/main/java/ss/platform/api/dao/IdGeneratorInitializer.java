@@ -0,0 +1,116 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.PersistenceContext;
+import javax.persistence.metamodel.EntityType;
+import org.hibernate.cfg.AvailableSettings;
+import org.hibernate.engine.spi.SessionFactoryImplementor;
+import org.hibernate.internal.util.config.ConfigurationHelper;
+import org.hibernate.persister.entity.AbstractEntityPersister;
+import org.hibernate.persister.entity.EntityPersister;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Seeds the ID generator at startup (before the web server accepts requests).
+ * {@link DataModel} IDs come from a pooled table generator, one <code>id_generator</code> row per entity table.
+ * A table that already has rows without a generator row (created with IDENTITY IDs, or loaded by a script), or
+ * with a row behind its max ID, would get IDs from 1 and fail with primary key collisions; its row is raised to
+ * the max ID (Hibernate stores the last used value by default, <code>MAX(id) + 1</code> otherwise). Rows are only
+ * raised, so a node that starts later does not hand out a block again.
+ * @author ss
+ */
+@Component
+class IdGeneratorInitializer implements SmartInitializingSingleton {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(IdGeneratorInitializer.class);
+    /** Generator table (see {@link DataModel#getId()}). */
+    private static final String TABLE = "id_generator";
+    /** Entity manager factory. */
+    @Autowired
+    private EntityManagerFactory emf;
+    /** Entity manager. */
+    @PersistenceContext
+    private EntityManager em;
+    /** Transaction manager. */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    /** Seeding enabled. */
+    @Value("${platform.id-generator.seed:true}")
+    private boolean enabled;
+    @Override
+    public void afterSingletonsInstantiated() {
+        if (!enabled) {
+            return;
+        }
+        SessionFactoryImplementor sessionFactory = emf.unwrap(SessionFactoryImplementor.class);
+        long offset = ConfigurationHelper.getBoolean(AvailableSettings.TABLE_GENERATOR_STORE_LAST_USED,
+                sessionFactory.getProperties(), true) ? 0 : 1;
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        for (EntityType<?> type : emf.getMetamodel().getEntities()) {
+            Class<?> cl = type.getJavaType();
+            if (cl == null || !DataModel.class.isAssignableFrom(cl)) {
+                continue;
+            }
+            EntityPersister persister = sessionFactory.getMetamodel().entityPersister(cl);
+            if (!(persister instanceof AbstractEntityPersister)) {
+                continue;
+            }
+            String table = ((AbstractEntityPersister) persister).getTableName();
+            // prefer_entity_table_as_segment_value: the segment is the unqualified table name
+            String segment = table.substring(table.lastIndexOf('.') + 1);
+            try {
+                transaction.executeWithoutResult((status) -> seed(table, segment, offset));
+            } catch (RuntimeException e) {
+                LOG.warn("ID generator segment " + segment + " is not seeded: " + e.getMessage());
+            }
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private void seed(String table, String segment, long offset) {
+        long next = ((Number) em.createNativeQuery("SELECT COALESCE(MAX(id), 0) FROM " + table)
+                .getSingleResult()).longValue() + offset;
+        Number current = (Number) em.createNativeQuery("SELECT MAX(next_val) FROM " + TABLE
+                + " WHERE sequence_name = ?1").setParameter(1, segment).getSingleResult();
+        if (current == null) {
+            em.createNativeQuery("INSERT INTO " + TABLE + " (sequence_name, next_val) VALUES (?1, ?2)")
+                    .setParameter(1, segment).setParameter(2, next).executeUpdate();
+        } else if (current.longValue() < next) {
+            em.createNativeQuery("UPDATE " + TABLE + " SET next_val = ?1 WHERE sequence_name = ?2 AND next_val < ?1")
+                    .setParameter(1, next).setParameter(2, segment).executeUpdate();
+        } else {
+            return;
+        }
+        LOG.info("ID generator segment " + segment + " starts after " + (next - offset));
+    }
+}
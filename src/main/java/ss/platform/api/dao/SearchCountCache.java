@@ -0,0 +1,133 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+
+/**
+ * Cache of search totals per entity and filter shape.
+ * Invalidated after commit of every write made through {@link CoreDAO}; the TTL bounds staleness caused by
+ * writes from other nodes.
+ * @author ss
+ */
+@Component
+class SearchCountCache {
+    /** Time to live, ms. */
+    @Value("${platform.search.count-cache.ttl-ms:60000}")
+    private long ttl;
+    /** Max cached totals per entity. */
+    @Value("${platform.search.count-cache.max-keys:1000}")
+    private int maxKeys;
+    /** Cached totals by entity. */
+    private final Map<Class<?>, EntityCounts> counts = new ConcurrentHashMap<>();
+    /**
+     * Get generation of entity counts. Must be taken before the count query is executed.
+     * @param cl entity class.
+     * @return generation.
+     */
+    long generation(Class<?> cl) {
+        return entityCounts(cl).generation.get();
+    }
+    /**
+     * Get cached total.
+     * @param cl entity class.
+     * @param key filter key.
+     * @return total or null.
+     */
+    Long get(Class<?> cl, String key) {
+        CachedCount cached = entityCounts(cl).values.get(key);
+        if (cached == null || cached.expiresAt < System.currentTimeMillis()) {
+            return null;
+        }
+        return cached.count;
+    }
+    /**
+     * Put total. Ignored if entity was changed since the generation was taken.
+     * @param cl entity class.
+     * @param key filter key.
+     * @param generation generation taken before count query.
+     * @param count total.
+     */
+    void put(Class<?> cl, String key, long generation, long count) {
+        EntityCounts entity = entityCounts(cl);
+        if (entity.generation.get() != generation) {
+            return;
+        }
+        if (entity.values.size() >= maxKeys) {
+            entity.values.clear();
+        }
+        entity.values.put(key, new CachedCount(count, System.currentTimeMillis() + ttl));
+        if (entity.generation.get() != generation) {
+            entity.values.remove(key);
+        }
+    }
+    /**
+     * Invalidate entity totals.
+     * @param event entity change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(EntityChangeEvent.ORDER_GENERATION)
+    public void onEntityChange(EntityChangeEvent event) {
+        EntityCounts entity = entityCounts(event.getEntityClass());
+        entity.generation.incrementAndGet();
+        entity.values.clear();
+    }
+    // =========================================== PRIVATE ============================================================
+    private EntityCounts entityCounts(Class<?> cl) {
+        return counts.computeIfAbsent(cl, (k) -> new EntityCounts());
+    }
+    /**
+     * Entity totals.
+     */
+    private static class EntityCounts {
+        /** Generation, incremented on each change. */
+        private final AtomicLong generation = new AtomicLong();
+        /** Totals by filter key. */
+        private final Map<String, CachedCount> values = new ConcurrentHashMap<>();
+    }
+    /**
+     * Cached total.
+     */
+    private static class CachedCount {
+        /** Total. */
+        private final long count;
+        /** Expiration time. */
+        private final long expiresAt;
+        /**
+         * Constructor.
+         * @param count total.
+         * @param expiresAt expiration time.
+         */
+        CachedCount(long count, long expiresAt) {
+            this.count = count;
+            this.expiresAt = expiresAt;
+        }
+    }
+}
@@ -0,0 +1,123 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Objects;
+
+/**
+ * Keyset pagination cursor.
+ * Opaque for clients: it is a base64url string holding the order, the order field, the last order value
+ * and the last ID of the previous page.
+ * @author ss
+ */
+class SearchCursor {
+    /** Format version. */
+    private static final String VERSION = "1";
+    /** Field separator. */
+    private static final String SEPARATOR = "|";
+    // =========================================== FIELDS =============================================================
+    /** Order. */
+    private final String order;
+    /** Order by field, may be null. */
+    private final String orderBy;
+    /** Last ID. */
+    private final Long lastId;
+    /** Last order value (raw string), may be null. */
+    private final String lastValue;
+    // =========================================== ACTIONS ============================================================
+    /**
+     * Constructor.
+     * @param order order.
+     * @param orderBy order by field.
+     * @param lastId last ID.
+     * @param lastValue last order value.
+     */
+    SearchCursor(String order, String orderBy, Long lastId, String lastValue) {
+        this.order = order == null ? "" : order;
+        this.orderBy = orderBy == null ? "" : orderBy;
+        this.lastId = lastId;
+        this.lastValue = lastValue;
+    }
+    /**
+     * Encode cursor.
+     * @return opaque cursor.
+     */
+    String encode() {
+        StringBuilder sb = new StringBuilder(VERSION).append(SEPARATOR).append(order).append(SEPARATOR)
+                .append(orderBy).append(SEPARATOR).append(lastId);
+        if (lastValue != null) {
+            sb.append(SEPARATOR).append(lastValue);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(sb.toString().getBytes(StandardCharsets.UTF_8));
+    }
+    /**
+     * Decode cursor.
+     * @param cursor opaque cursor.
+     * @return cursor.
+     * @throws IllegalArgumentException if cursor is malformed.
+     */
+    static SearchCursor decode(String cursor) {
+        String raw;
+        try {
+            raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+        String[] parts = raw.split("\\" + SEPARATOR, 5);
+        if (parts.length < 4 || !VERSION.equals(parts[0])) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor);
+        }
+        try {
+            return new SearchCursor(parts[1], parts[2], Long.valueOf(parts[3]), parts.length == 5 ? parts[4] : null);
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Malformed cursor: " + cursor, e);
+        }
+    }
+    /**
+     * Check that cursor was issued for the same ordering.
+     * @param searchRequest search request.
+     * @throws IllegalArgumentException if ordering differs.
+     */
+    void verify(EntitySearchRequest searchRequest) {
+        if (!order.equals(Objects.toString(searchRequest.getOrder(), ""))
+                || !orderBy.equals(Objects.toString(searchRequest.getOrderBy(), ""))) {
+            throw new IllegalArgumentException("Cursor was issued for another order");
+        }
+    }
+    // =========================================== SET & GET ==========================================================
+    /**
+     * @return the lastId
+     */
+    Long getLastId() {
+        return lastId;
+    }
+    /**
+     * @return the lastValue
+     */
+    String getLastValue() {
+        return lastValue;
+    }
+}
@@ -0,0 +1,161 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Search filter.
+ * Grammar: <code>field operator value</code>, for example <code>name~drill</code>, <code>id&gt;100</code>,
+ * <code>id=(1,2,3)</code>. Operators: <code>= != &gt; &gt;= &lt; &lt;= ~</code> (contains);
+ * a parenthesized comma separated value turns <code>=</code> / <code>!=</code> into IN / NOT IN.
+ * @author ss
+ */
+public class SearchFilter {
+    /**
+     * Filter operator.
+     */
+    public enum Operator {
+        /** Not equal. */
+        NE("!="),
+        /** Greater or equal. */
+        GE(">="),
+        /** Less or equal. */
+        LE("<="),
+        /** Equal. */
+        EQ("="),
+        /** Greater. */
+        GT(">"),
+        /** Less. */
+        LT("<"),
+        /** Contains. */
+        LIKE("~"),
+        /** In list. */
+        IN("=()"),
+        /** Not in list. */
+        NOT_IN("!=()");
+        /** Symbol. */
+        private final String symbol;
+        /**
+         * Constructor.
+         * @param symbol symbol.
+         */
+        Operator(String symbol) {
+            this.symbol = symbol;
+        }
+        /**
+         * @return the symbol
+         */
+        public String getSymbol() {
+            return symbol;
+        }
+    }
+    // =========================================== FIELDS =============================================================
+    /** Field name. */
+    private final String field;
+    /** Operator. */
+    private final Operator operator;
+    /** Raw values (one, or many for IN / NOT IN). */
+    private final List<String> values;
+    // =========================================== ACTIONS ============================================================
+    /**
+     * Constructor.
+     * @param field field name.
+     * @param operator operator.
+     * @param values raw values.
+     */
+    public SearchFilter(String field, Operator operator, List<String> values) {
+        this.field = field;
+        this.operator = operator;
+        this.values = Collections.unmodifiableList(values);
+    }
+    /**
+     * Parse filter expression.
+     * @param expression filter expression.
+     * @return filter.
+     * @throws IllegalArgumentException if expression is malformed.
+     */
+    public static SearchFilter parse(String expression) {
+        int i = 0;
+        while (i < expression.length() && (Character.isLetterOrDigit(expression.charAt(i))
+                || expression.charAt(i) == '_')) {
+            i++;
+        }
+        if (i == 0) {
+            throw new IllegalArgumentException("Malformed filter, field expected: " + expression);
+        }
+        String field = expression.substring(0, i);
+        for (Operator operator : Operator.values()) {
+            if (operator == Operator.IN || operator == Operator.NOT_IN
+                    || !expression.startsWith(operator.getSymbol(), i)) {
+                continue;
+            }
+            String value = expression.substring(i + operator.getSymbol().length());
+            if ((operator == Operator.EQ || operator == Operator.NE) && value.length() > 1
+                    && value.startsWith("(") && value.endsWith(")")) {
+                List<String> list = Arrays.stream(value.substring(1, value.length() - 1).split(","))
+                        .map(String::trim).collect(Collectors.toList());
+                return new SearchFilter(field, operator == Operator.EQ ? Operator.IN : Operator.NOT_IN, list);
+            }
+            return new SearchFilter(field, operator, Collections.singletonList(value));
+        }
+        throw new IllegalArgumentException("Malformed filter, operator expected: " + expression);
+    }
+    /**
+     * Filter shape: field and operator, without values.
+     * @return shape.
+     */
+    public String shape() {
+        return field + operator.getSymbol();
+    }
+    @Override
+    public String toString() {
+        if (operator == Operator.IN || operator == Operator.NOT_IN) {
+            return field + (operator == Operator.IN ? "=(" : "!=(") + String.join(",", values) + ")";
+        }
+        return field + operator.getSymbol() + values.get(0);
+    }
+    // =========================================== SET & GET ==========================================================
+    /**
+     * @return the field
+     */
+    public String getField() {
+        return field;
+    }
+    /**
+     * @return the operator
+     */
+    public Operator getOperator() {
+        return operator;
+    }
+    /**
+     * @return the values
+     */
+    public List<String> getValues() {
+        return values;
+    }
+}
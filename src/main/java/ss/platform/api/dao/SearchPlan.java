@@ -0,0 +1,419 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import javax.persistence.EntityManager;
+import javax.persistence.Tuple;
+import javax.persistence.TypedQuery;
+import javax.persistence.criteria.CriteriaBuilder;
+import javax.persistence.criteria.CriteriaQuery;
+import javax.persistence.criteria.Expression;
+import javax.persistence.criteria.Order;
+import javax.persistence.criteria.ParameterExpression;
+import javax.persistence.criteria.Path;
+import javax.persistence.criteria.Predicate;
+import javax.persistence.criteria.Root;
+import javax.persistence.metamodel.Attribute;
+import javax.persistence.metamodel.EntityType;
+import javax.persistence.metamodel.SingularAttribute;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.util.ClassUtils;
+
+/**
+ * Compiled search plan.
+ * Data and count criteria for one (entity, filter shape, order, keyset mode) built once with parameter
+ * expressions instead of literals, so the rendered HQL is identical for every request of the same shape and
+ * Hibernate's query plan cache skips re-parsing. Requests only bind parameter values.
+ * A request with a field list compiles to a tuple query that selects only those columns (no entity hydration,
+ * no persistence context entries); rows are returned as field maps.
+ * @author ss
+ * @param <T> entity type.
+ */
+class SearchPlan<T extends DataModel> {
+    /** LIKE escape character. */
+    private static final char ESCAPE = '\\';
+    // =========================================== FIELDS =============================================================
+    /** Data query, null if plan selects fields. */
+    private final CriteriaQuery<T> dataQuery;
+    /** Projection query, null if plan selects entities. */
+    private final CriteriaQuery<Tuple> projectionQuery;
+    /** Selected fields, null if plan selects entities. */
+    private final List<String> fields;
+    /** Count query. */
+    private final CriteriaQuery<Long> countQuery;
+    /** Filter parameters of data query (one per filter). */
+    private final List<ParameterExpression<?>> dataParameters = new ArrayList<>();
+    /** Filter parameters of count query (one per filter). */
+    private final List<ParameterExpression<?>> countParameters = new ArrayList<>();
+    /** Filter value types (one per filter). */
+    private final List<Class<?>> filterTypes = new ArrayList<>();
+    /** Keyset last ID parameter, null if plan has no keyset predicate. */
+    private ParameterExpression<Long> lastIdParameter;
+    /** Keyset last order value parameter, null if last order value is null or plan has no keyset predicate. */
+    private ParameterExpression<?> lastValueParameter;
+    /** Order by type. */
+    private Class<?> orderType;
+    // =========================================== ACTIONS ============================================================
+    /**
+     * Compile plan.
+     * @param em entity manager.
+     * @param cl entity class.
+     * @param searchRequest search request (shape source).
+     * @param cursor keyset cursor or null.
+     * @throws IllegalArgumentException if filters or order do not match the entity metamodel.
+     */
+    SearchPlan(EntityManager em, Class<T> cl, EntitySearchRequest searchRequest, SearchCursor cursor) {
+        CriteriaBuilder cb = em.getCriteriaBuilder();
+        EntityType<T> entityType = em.getMetamodel().entity(cl);
+        for (SearchFilter filter : searchRequest.getFilters()) {
+            filterTypes.add(filterType(entityType, filter));
+        }
+        // data
+        fields = selectedFields(entityType, searchRequest);
+        CriteriaQuery<?> query;
+        Root<T> c;
+        if (fields == null) {
+            dataQuery = cb.createQuery(cl);
+            projectionQuery = null;
+            c = dataQuery.from(cl);
+            dataQuery.select(c);
+            query = dataQuery;
+        } else {
+            dataQuery = null;
+            projectionQuery = cb.createTupleQuery();
+            Root<T> root = projectionQuery.from(cl);
+            projectionQuery.multiselect(fields.stream().map((field) -> root.get(field).alias(field))
+                    .collect(Collectors.toList()));
+            c = root;
+            query = projectionQuery;
+        }
+        List<Predicate> predicates = createSearchCriteria(cb, c, searchRequest.getFilters(), dataParameters);
+        String orderBy = searchRequest.getOrderBy();
+        boolean asc = isAscending(searchRequest);
+        if (orderBy != null) {
+            orderType = ClassUtils.resolvePrimitiveIfNecessary(entityType.getAttribute(orderBy).getJavaType());
+        }
+        if (cursor != null) {
+            predicates.add(createKeysetCriteria(cb, c, orderBy, asc, cursor.getLastValue() == null));
+        }
+        query.where(predicates.toArray(new Predicate[0]));
+        // ID is a tie-breaker, so the order is total and keyset cursors are stable
+        List<Order> orders = new ArrayList<>();
+        if (orderBy != null) {
+            orders.add(asc ? cb.asc(c.get(orderBy)) : cb.desc(c.get(orderBy)));
+        }
+        orders.add(asc ? cb.asc(c.get(DataModel_.id)) : cb.desc(c.get(DataModel_.id)));
+        query.orderBy(orders);
+        // count
+        countQuery = cb.createQuery(Long.class);
+        Root<T> cCount = countQuery.from(cl);
+        countQuery.select(cb.count(cCount)).where(createSearchCriteria(cb, cCount, searchRequest.getFilters(),
+                countParameters).toArray(new Predicate[0]));
+    }
+    /**
+     * Plan cache key.
+     * @param cl entity class.
+     * @param searchRequest search request.
+     * @param cursor keyset cursor or null.
+     * @return key.
+     */
+    static String key(Class<?> cl, EntitySearchRequest searchRequest, SearchCursor cursor) {
+        StringBuilder sb = new StringBuilder(cl.getName()).append('|');
+        searchRequest.getFilters().forEach((filter) -> sb.append(filter.shape()).append(';'));
+        sb.append('|').append(searchRequest.getFields()).append('|').append(searchRequest.getOrderBy())
+                .append('|').append(isAscending(searchRequest))
+                .append('|').append(cursor == null ? "-" : cursor.getLastValue() == null ? "null" : "value");
+        return sb.toString();
+    }
+    /**
+     * Ascending order.
+     * Without order field rows are sorted by ID ascending unless <code>order=desc</code>.
+     * @param searchRequest search request.
+     * @return true for ascending order.
+     */
+    static boolean isAscending(EntitySearchRequest searchRequest) {
+        return searchRequest.getOrderBy() == null ? !"desc".equals(searchRequest.getOrder())
+                : "asc".equals(searchRequest.getOrder());
+    }
+    /**
+     * Create data query with bound parameters.
+     * @param em entity manager.
+     * @param searchRequest search request.
+     * @param cursor keyset cursor or null.
+     * @return query.
+     * @throws IllegalArgumentException if plan selects fields.
+     */
+    TypedQuery<T> createDataQuery(EntityManager em, EntitySearchRequest searchRequest, SearchCursor cursor) {
+        if (dataQuery == null) {
+            throw new IllegalArgumentException("Field selection is not supported for entity queries");
+        }
+        return bind(em.createQuery(dataQuery), searchRequest, cursor);
+    }
+    /**
+     * Load rows: entities, or field maps (in field order) if plan selects fields.
+     * @param em entity manager.
+     * @param searchRequest search request.
+     * @param cursor keyset cursor or null.
+     * @param first first row or null.
+     * @param max max rows or null.
+     * @return rows.
+     */
+    List<Object> list(EntityManager em, EntitySearchRequest searchRequest, SearchCursor cursor, Integer first,
+            Integer max) {
+        TypedQuery<?> query = projectionQuery == null ? em.createQuery(dataQuery)
+                : em.createQuery(projectionQuery);
+        bind(query, searchRequest, cursor);
+        if (first != null) {
+            query.setFirstResult(first);
+        }
+        if (max != null) {
+            query.setMaxResults(max);
+        }
+        List<?> result = query.getResultList();
+        if (projectionQuery == null) {
+            return new ArrayList<>(result);
+        }
+        List<Object> rows = new ArrayList<>(result.size());
+        for (Object tuple : result) {
+            Map<String, Object> row = new LinkedHashMap<>();
+            for (String field : fields) {
+                row.put(field, ((Tuple) tuple).get(field));
+            }
+            rows.add(row);
+        }
+        return rows;
+    }
+    /**
+     * Row attribute value.
+     * @param row entity or field map.
+     * @param field field name.
+     * @return value.
+     */
+    static Object value(Object row, String field) {
+        if (row instanceof Map) {
+            return ((Map<?, ?>) row).get(field);
+        }
+        return new BeanWrapperImpl(row).getPropertyValue(field);
+    }
+    /**
+     * Create count query with bound parameters.
+     * @param em entity manager.
+     * @param searchRequest search request.
+     * @return query.
+     */
+    TypedQuery<Long> createCountQuery(EntityManager em, EntitySearchRequest searchRequest) {
+        TypedQuery<Long> query = em.createQuery(countQuery);
+        bindFilters(query, countParameters, searchRequest);
+        return query;
+    }
+    /**
+     * Resolve basic (column) attribute.
+     * @param entityType entity type.
+     * @param field field name.
+     * @param usage usage for the error message.
+     * @return attribute.
+     * @throws IllegalArgumentException if field is unknown or is not a basic attribute.
+     */
+    static Attribute<?, ?> basicAttribute(EntityType<?> entityType, String field, String usage) {
+        Attribute<?, ?> attribute = entityType.getAttribute(field);
+        if (!(attribute instanceof SingularAttribute)
+                || attribute.getPersistentAttributeType() != Attribute.PersistentAttributeType.BASIC) {
+            throw new IllegalArgumentException("Field can not be " + usage + ": " + field);
+        }
+        return attribute;
+    }
+    // =========================================== PRIVATE ============================================================
+    private <Q extends TypedQuery<?>> Q bind(Q query, EntitySearchRequest searchRequest, SearchCursor cursor) {
+        bindFilters(query, dataParameters, searchRequest);
+        if (cursor != null) {
+            query.setParameter(lastIdParameter, cursor.getLastId());
+            if (lastValueParameter != null) {
+                setParameter(query, lastValueParameter, AttributeValues.parse(cursor.getLastValue(), orderType));
+            }
+        }
+        return query;
+    }
+    /**
+     * Selected fields: requested fields plus ID and order field (the keyset cursor needs them).
+     */
+    private static List<String> selectedFields(EntityType<?> entityType, EntitySearchRequest searchRequest) {
+        if (searchRequest.getFields() == null) {
+            return null;
+        }
+        List<String> selected = new ArrayList<>();
+        selected.add(DataModel_.ID);
+        if (searchRequest.getOrderBy() != null) {
+            selected.add(searchRequest.getOrderBy());
+        }
+        for (String field : searchRequest.getFields()) {
+            if (!selected.contains(field)) {
+                selected.add(field);
+            }
+        }
+        selected.forEach((field) -> basicAttribute(entityType, field, "selected"));
+        return selected;
+    }
+    private static Class<?> filterType(EntityType<?> entityType, SearchFilter filter) {
+        Attribute<?, ?> attribute = basicAttribute(entityType, filter.getField(), "filtered");
+        Class<?> type = ClassUtils.resolvePrimitiveIfNecessary(attribute.getJavaType());
+        switch (filter.getOperator()) {
+            case LIKE:
+                if (type != String.class) {
+                    throw new IllegalArgumentException("Operator ~ requires a text field: " + filter.getField());
+                }
+                break;
+            case GT:
+            case GE:
+            case LT:
+            case LE:
+                if (!Comparable.class.isAssignableFrom(type)) {
+                    throw new IllegalArgumentException("Field is not comparable: " + filter.getField());
+                }
+                break;
+            default:
+                break;
+        }
+        return type;
+    }
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private List<Predicate> createSearchCriteria(CriteriaBuilder cb, Root<T> c, List<SearchFilter> filters,
+            List<ParameterExpression<?>> parameters) {
+        List<Predicate> predicates = new ArrayList<>();
+        for (int i = 0; i < filters.size(); i++) {
+            SearchFilter filter = filters.get(i);
+            Path path = c.get(filter.getField());
+            ParameterExpression parameter;
+            if (filter.getOperator() == SearchFilter.Operator.IN
+                    || filter.getOperator() == SearchFilter.Operator.NOT_IN) {
+                parameter = cb.parameter(Collection.class);
+            } else {
+                parameter = cb.parameter(filterTypes.get(i));
+            }
+            parameters.add(parameter);
+            switch (filter.getOperator()) {
+                case EQ:
+                    predicates.add(cb.equal(path, parameter));
+                    break;
+                case NE:
+                    predicates.add(cb.notEqual(path, parameter));
+                    break;
+                case GT:
+                    predicates.add(cb.greaterThan(path, (Expression<Comparable>) parameter));
+                    break;
+                case GE:
+                    predicates.add(cb.greaterThanOrEqualTo(path, (Expression<Comparable>) parameter));
+                    break;
+                case LT:
+                    predicates.add(cb.lessThan(path, (Expression<Comparable>) parameter));
+                    break;
+                case LE:
+                    predicates.add(cb.lessThanOrEqualTo(path, (Expression<Comparable>) parameter));
+                    break;
+                case LIKE:
+                    predicates.add(cb.like(path, (Expression<String>) parameter, ESCAPE));
+                    break;
+                case IN:
+                    predicates.add(path.in(parameter));
+                    break;
+                case NOT_IN:
+                    predicates.add(cb.not(path.in(parameter)));
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unsupported operator: " + filter.getOperator());
+            }
+        }
+        return predicates;
+    }
+    /**
+     * Create keyset predicate: rows strictly after the cursor position in (orderBy, id) order.
+     * The order value is bounded with <code>&gt;=</code> (<code>&lt;=</code> descending), so the database scans the
+     * order index from the cursor value; the ID breaks ties between rows with the same value.
+     * NULL order values are sorted first for ascending and last for descending order (MySQL semantic).
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private Predicate createKeysetCriteria(CriteriaBuilder cb, Root<T> c, String orderBy, boolean asc,
+            boolean nullValue) {
+        lastIdParameter = cb.parameter(Long.class);
+        Path<Long> id = c.get(DataModel_.id);
+        Predicate afterId = asc ? cb.greaterThan(id, lastIdParameter) : cb.lessThan(id, lastIdParameter);
+        if (orderBy == null) {
+            return afterId;
+        }
+        Path path = c.get(orderBy);
+        if (nullValue) {
+            Predicate sameNull = cb.and(cb.isNull(path), afterId);
+            return asc ? cb.or(sameNull, cb.isNotNull(path)) : sameNull;
+        }
+        ParameterExpression value = cb.parameter(orderType);
+        lastValueParameter = value;
+        if (asc) {
+            return cb.and(cb.greaterThanOrEqualTo(path, value), cb.or(cb.greaterThan(path, value), afterId));
+        }
+        return cb.or(cb.and(cb.lessThanOrEqualTo(path, value), cb.or(cb.lessThan(path, value), afterId)),
+                cb.isNull(path));
+    }
+    private void bindFilters(TypedQuery<?> query, List<ParameterExpression<?>> parameters,
+            EntitySearchRequest searchRequest) {
+        List<SearchFilter> filters = searchRequest.getFilters();
+        for (int i = 0; i < filters.size(); i++) {
+            SearchFilter filter = filters.get(i);
+            Class<?> type = filterTypes.get(i);
+            Object value;
+            switch (filter.getOperator()) {
+                case IN:
+                case NOT_IN:
+                    value = filter.getValues().stream().map((v) -> AttributeValues.parse(v, type))
+                            .collect(Collectors.toList());
+                    break;
+                case LIKE:
+                    value = "%" + escape(filter.getValues().get(0)) + "%";
+                    break;
+                default:
+                    value = AttributeValues.parse(filter.getValues().get(0), type);
+                    break;
+            }
+            setParameter(query, parameters.get(i), value);
+        }
+    }
+    @SuppressWarnings("unchecked")
+    private static void setParameter(TypedQuery<?> query, ParameterExpression<?> parameter, Object value) {
+        query.setParameter((ParameterExpression<Object>) parameter, value);
+    }
+    private static String escape(String value) {
+        StringBuilder sb = new StringBuilder(value.length() + 8);
+        for (char ch : value.toCharArray()) {
+            if (ch == ESCAPE || ch == '%' || ch == '_') {
+                sb.append(ESCAPE);
+            }
+            sb.append(ch);
+        }
+        return sb.toString();
+    }
+}
@@ -0,0 +1,168 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import java.time.Duration;
+import java.util.List;
+import java.util.Objects;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * Serialized search response pages, keyed by entity, entity generation and normalized search request.
+ * The generation is the {@link EntityChangeCounter} count: a write bumps it, so pages cached before the write are
+ * never hit again and age out of the cache without an explicit invalidation. Writes made by other nodes are
+ * not counted here; they are bounded by the time to live.
+ * When reads are served by replicas, a page read right after a write may come from a replica that has not applied
+ * the write yet; pages of queries started within <code>platform.search.result-cache.replica-lag-ms</code> (default
+ * <code>platform.entity-cache.replica-lag-ms</code>) after the last change of the entity are not cached.
+ * The cache is bounded by response bytes (W-TinyLFU eviction). Only the first
+ * <code>platform.search.result-cache.max-page</code> offset pages are cached.
+ * @author ss
+ */
+@Component
+public class SearchResultCache {
+    /** Estimated key bytes (entity, generation, request values). */
+    private static final int KEY_WEIGHT = 256;
+    /** Entity change counter. */
+    @Autowired
+    private EntityChangeCounter entityChangeCounter;
+    /** Meter registry. */
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+    /** Cache enabled. */
+    @Value("${platform.search.result-cache.enabled:true}")
+    private boolean enabled;
+    /** Max cached response bytes. */
+    @Value("${platform.search.result-cache.max-bytes:67108864}")
+    private long maxBytes;
+    /** Time to live, ms. */
+    @Value("${platform.search.result-cache.ttl-ms:${platform.etag.max-age-ms:60000}}")
+    private long ttl;
+    /** Max cached page number. */
+    @Value("${platform.search.result-cache.max-page:5}")
+    private int maxPage;
+    /** Max replica lag, ms (0 if reads are not served by replicas). */
+    @Value("${platform.search.result-cache.replica-lag-ms:${platform.entity-cache.replica-lag-ms:0}}")
+    private long replicaLag;
+    /** Cached responses, null if disabled. */
+    private Cache<Key, byte[]> cache;
+    /**
+     * Build cache.
+     */
+    @PostConstruct
+    protected void init() {
+        if (!enabled) {
+            return;
+        }
+        cache = Caffeine.newBuilder()
+                .maximumWeight(maxBytes)
+                .weigher((Key key, byte[] value) -> value.length + KEY_WEIGHT)
+                .expireAfterWrite(Duration.ofMillis(ttl))
+                .recordStats()
+                .build();
+        meterRegistry.ifAvailable((registry) -> CaffeineCacheMetrics.monitor(registry, cache, "searchResults"));
+    }
+    /**
+     * Cache key of a search request.
+     * Take the key before the query: a write committed meanwhile makes the stored page unreachable.
+     * @param cl entity class.
+     * @param searchRequest search request.
+     * @return key, null if the request is not cached.
+     */
+    public Key key(Class<?> cl, EntitySearchRequest searchRequest) {
+        if (cache == null || searchRequest.getAfter() != null || searchRequest.getPage() == null
+                || searchRequest.getPage() > maxPage) {
+            return null;
+        }
+        return new Key(cl, entityChangeCounter.get(cl), searchRequest.normalize(), System.currentTimeMillis());
+    }
+    /**
+     * Get cached response.
+     * @param key key (may be null).
+     * @return serialized response or null.
+     */
+    public byte[] get(Key key) {
+        return key == null ? null : cache.getIfPresent(key);
+    }
+    /**
+     * Cache response, unless the query may have read a replica lagging behind the last change.
+     * @param key key (may be null).
+     * @param body serialized response.
+     */
+    public void put(Key key, byte[] body) {
+        if (key != null && entityChangeCounter.lastChange(key.entityClass) <= key.time - replicaLag) {
+            cache.put(key, body);
+        }
+    }
+    /**
+     * Cache key.
+     */
+    public static final class Key {
+        /** Entity class. */
+        private final Class<?> entityClass;
+        /** Entity generation. */
+        private final long generation;
+        /** Normalized request. */
+        private final List<Object> request;
+        /** Hash. */
+        private final int hash;
+        /** Time the key was taken (before the query), epoch ms; not part of the key. */
+        private final long time;
+        /**
+         * Constructor.
+         * @param entityClass entity class.
+         * @param generation entity generation.
+         * @param request normalized request.
+         * @param time time the key was taken.
+         */
+        Key(Class<?> entityClass, long generation, List<Object> request, long time) {
+            this.entityClass = entityClass;
+            this.generation = generation;
+            this.request = request;
+            this.time = time;
+            this.hash = Objects.hash(entityClass, generation, request);
+        }
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+        @Override
+        public boolean equals(Object object) {
+            if (!(object instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) object;
+            return entityClass == other.entityClass && generation == other.generation
+                    && request.equals(other.request);
+        }
+    }
+}
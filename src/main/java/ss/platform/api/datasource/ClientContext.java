@@ -0,0 +1,80 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.datasource;
+
+import java.util.concurrent.Callable;
+
+/**
+ * Client of the current request (thread).
+ * Identifies whose writes the current thread performs and whose reads it serves, for read-your-writes routing.
+ * @author ss
+ */
+public final class ClientContext {
+    /** Current client key. */
+    private static final ThreadLocal<String> CLIENT = new ThreadLocal<>();
+    /**
+     * Utility class.
+     */
+    private ClientContext() {
+    }
+    /**
+     * @return current client key or null.
+     */
+    public static String get() {
+        return CLIENT.get();
+    }
+    /**
+     * @param client current client key.
+     */
+    public static void set(String client) {
+        CLIENT.set(client);
+    }
+    /**
+     * Clear current client.
+     */
+    public static void clear() {
+        CLIENT.remove();
+    }
+    /**
+     * Bind the current client to a task that runs on another thread.
+     * @param <T> result type.
+     * @param task task.
+     * @return task running with the client of the calling thread.
+     */
+    public static <T> Callable<T> wrap(Callable<T> task) {
+        String client = get();
+        if (client == null) {
+            return task;
+        }
+        return () -> {
+            String previous = get();
+            set(client);
+            try {
+                return task.call();
+            } finally {
+                set(previous);
+            }
+        };
+    }
+}
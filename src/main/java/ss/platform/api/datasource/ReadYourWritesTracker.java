@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.datasource;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.time.Duration;
+import org.springframework.transaction.event.TransactionalEventListener;
+import ss.platform.api.dao.EntityChangeEvent;
+
+/**
+ * Remembers clients that wrote recently.
+ * After a commit the client's reads go to the primary for the window duration, so replication lag can not hide
+ * the client's own writes.
+ * @author ss
+ */
+public class ReadYourWritesTracker {
+    /** Last write time by client. */
+    private final Cache<String, Long> writers;
+    /**
+     * Constructor.
+     * @param window read-your-writes window, ms.
+     * @param maxClients max tracked clients.
+     */
+    public ReadYourWritesTracker(long window, long maxClients) {
+        writers = Caffeine.newBuilder().expireAfterWrite(Duration.ofMillis(window)).maximumSize(maxClients)
+                .build();
+    }
+    /**
+     * Check whether the current client wrote within the window.
+     * @return true if reads of the current client must go to the primary.
+     */
+    public boolean isRecentWriter() {
+        String client = ClientContext.get();
+        return client != null && writers.getIfPresent(client) != null;
+    }
+    /**
+     * Record a write of the current client.
+     * @param event entity change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        String client = ClientContext.get();
+        if (client != null) {
+            writers.put(client, System.currentTimeMillis());
+        }
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import com.zaxxer.hikari.HikariPoolMXBean;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.sql.DataSource;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+/**
+ * Routes read-only transactions (and read-only SUPPORTS calls) to read replicas, everything else to the primary.
+ * Must be wrapped into a lazy connection proxy, so the connection is taken after the transaction read-only flag
+ * is set. Clients that wrote recently read from the primary. If a replica refuses a connection, the read falls
+ * back to the primary.
+ * @author ss
+ */
+public class ReplicaRoutingDataSource extends AbstractRoutingDataSource {
+    /**
+     * Replica balancing.
+     */
+    public enum Balancing {
+        /** Replicas in turn. */
+        ROUND_ROBIN,
+        /** Replica with the fewest active connections (ties in turn). */
+        LEAST_CONNECTIONS
+    }
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(ReplicaRoutingDataSource.class);
+    /** Primary lookup key. */
+    private static final String PRIMARY = "primary";
+    /** Replica lookup key prefix. */
+    private static final String REPLICA = "replica-";
+    // =========================================== FIELDS =============================================================
+    /** Primary. */
+    private final DataSource primary;
+    /** Replicas. */
+    private final List<HikariDataSource> replicas;
+    /** Balancing. */
+    private final Balancing balancing;
+    /** Read-your-writes tracker. */
+    private final ReadYourWritesTracker tracker;
+    /** Round robin counter. */
+    private final AtomicInteger next = new AtomicInteger();
+    // =========================================== ACTIONS ============================================================
+    /**
+     * Constructor.
+     * @param primary primary.
+     * @param replicas replicas.
+     * @param balancing replica balancing.
+     * @param tracker read-your-writes tracker.
+     */
+    public ReplicaRoutingDataSource(DataSource primary, List<HikariDataSource> replicas, Balancing balancing,
+            ReadYourWritesTracker tracker) {
+        this.primary = primary;
+        this.replicas = replicas;
+        this.balancing = balancing;
+        this.tracker = tracker;
+        Map<Object, Object> targets = new HashMap<>();
+        targets.put(PRIMARY, primary);
+        for (int i = 0; i < replicas.size(); i++) {
+            targets.put(REPLICA + i, replicas.get(i));
+        }
+        setTargetDataSources(targets);
+        setDefaultTargetDataSource(primary);
+    }
+    @Override
+    public Connection getConnection() throws SQLException {
+        DataSource target = determineTargetDataSource();
+        try {
+            return target.getConnection();
+        } catch (SQLException e) {
+            if (target == primary) {
+                throw e;
+            }
+            LOG.warn("Replica is not available, reading from primary: " + e.getMessage());
+            return primary.getConnection();
+        }
+    }
+    @Override
+    protected Object determineCurrentLookupKey() {
+        if (replicas.isEmpty() || !TransactionSynchronizationManager.isCurrentTransactionReadOnly()
+                || tracker.isRecentWriter()) {
+            return PRIMARY;
+        }
+        return REPLICA + replica();
+    }
+    // =========================================== PRIVATE ============================================================
+    private int replica() {
+        int start = Math.floorMod(next.getAndIncrement(), replicas.size());
+        if (balancing == Balancing.ROUND_ROBIN) {
+            return start;
+        }
+        int best = start;
+        int bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < replicas.size(); i++) {
+            int candidate = (start + i) % replicas.size();
+            HikariPoolMXBean pool = replicas.get(candidate).getHikariPoolMXBean();
+            int active = pool == null ? 0 : pool.getActiveConnections();
+            if (active < bestActive) {
+                best = candidate;
+                bestActive = active;
+            }
+        }
+        return best;
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.datasource;
+
+import com.zaxxer.hikari.HikariDataSource;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import javax.sql.DataSource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.autoconfigure.jdbc.DataSourceProperties;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.core.Ordered;
+import org.springframework.core.env.Environment;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+/**
+ * Read/write routing data source.
+ * Enabled by <code>platform.datasource.routing.enabled</code>; the primary is configured by
+ * <code>spring.datasource</code>, read replicas by <code>platform.datasource.routing.replicas</code>.
+ * @author ss
+ */
+@Configuration
+@ConditionalOnProperty(name = "platform.datasource.routing.enabled", havingValue = "true")
+public class RoutingDataSourceConfig {
+    /** Settings prefix. */
+    private static final String PREFIX = "platform.datasource.routing";
+    /**
+     * Read-your-writes tracker.
+     * @param window read-your-writes window, ms.
+     * @param maxClients max tracked clients.
+     * @return tracker.
+     */
+    @Bean
+    public ReadYourWritesTracker readYourWritesTracker(
+            @Value("${" + PREFIX + ".read-your-writes.window-ms:5000}") long window,
+            @Value("${" + PREFIX + ".read-your-writes.max-clients:100000}") long maxClients) {
+        return new ReadYourWritesTracker(window, maxClients);
+    }
+    /**
+     * Client context filter.
+     * @param header client ID header.
+     * @return filter registration.
+     */
+    @Bean
+    public FilterRegistrationBean<ClientContextFilter> clientContextFilter(
+            @Value("${" + PREFIX + ".read-your-writes.header:X-Client-Id}") String header) {
+        FilterRegistrationBean<ClientContextFilter> registration = new FilterRegistrationBean<>(
+                new ClientContextFilter(header));
+        registration.setOrder(Ordered.HIGHEST_PRECEDENCE);
+        return registration;
+    }
+    /**
+     * Routing data source used by JPA.
+     * Pools are not exposed as beans, so data source initialization only sees the routing data source.
+     * @param properties primary data source properties.
+     * @param tracker read-your-writes tracker.
+     * @param env environment.
+     * @return lazy connection proxy of the routing data source.
+     */
+    @Bean
+    @Primary
+    public DataSource dataSource(DataSourceProperties properties, ReadYourWritesTracker tracker,
+            Environment env) {
+        HikariDataSource primary = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        Binder.get(env).bind("spring.datasource.hikari", Bindable.ofInstance(primary));
+        List<HikariDataSource> replicas = Binder.get(env).bind(PREFIX + ".replicas",
+                Bindable.listOf(ReplicaProperties.class)).orElse(Collections.emptyList()).stream()
+                .map(RoutingDataSourceConfig::createReplica).collect(Collectors.toList());
+        ReplicaRoutingDataSource.Balancing balancing = Binder.get(env).bind(PREFIX + ".balancing",
+                ReplicaRoutingDataSource.Balancing.class).orElse(ReplicaRoutingDataSource.Balancing.ROUND_ROBIN);
+        ReplicaRoutingDataSource routing = new ReplicaRoutingDataSource(primary, replicas, balancing,
+                tracker);
+        routing.afterPropertiesSet();
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+    // =========================================== PRIVATE ============================================================
+    private static HikariDataSource createReplica(ReplicaProperties properties) {
+        HikariDataSource replica = DataSourceBuilder.create().type(HikariDataSource.class).url(properties.getUrl())
+                .username(properties.getUsername()).password(properties.getPassword())
+                .driverClassName(properties.getDriverClassName()).build();
+        replica.setMaximumPoolSize(properties.getMaximumPoolSize());
+        replica.setReadOnly(true);
+        replica.setPoolName("replica-" + properties.getUrl());
+        return replica;
+    }
+}
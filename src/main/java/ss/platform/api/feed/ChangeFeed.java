@@ -0,0 +1,398 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.feed;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.beans.Introspector;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ss.platform.api.dao.DataModel;
+import ss.platform.api.dao.EntityChangeEvent;
+
+/**
+ * Server-Sent Events feed of committed entity changes.
+ * Every committed {@link EntityChangeEvent} gets a sequence number and is kept in a ring buffer of the last
+ * <code>platform.change-feed.buffer-size</code> changes, so a reconnecting client resumes after its
+ * <code>Last-Event-ID</code>. Events carry the change type and IDs only, clients fetch the entities they show.
+ * <p>
+ * Publishing never blocks the committing thread: each subscriber has a bounded queue drained by a small sender
+ * pool. A subscriber that falls a full queue behind loses its queued changes and gets a single <code>reset</code>
+ * event instead, it must reload the entity list and continue with the following events. A resume point that left
+ * the ring buffer (or an ID from an earlier boot) is answered with <code>reset</code> too.
+ * Changes committed by other nodes are not in the feed.
+ * Meters: <code>platform.change.feed.subscribers</code>, <code>platform.change.feed.changes</code> and
+ * <code>platform.change.feed.overflows</code>.
+ * @author ss
+ */
+@Component
+public class ChangeFeed {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(ChangeFeed.class);
+    /** Reset event name. */
+    private static final String RESET = "reset";
+    /** JSON mapper. */
+    @Autowired
+    private ObjectMapper objectMapper;
+    /** Meter registry. */
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+    /** Ring buffer size (changes). */
+    @Value("${platform.change-feed.buffer-size:4096}")
+    private int bufferSize;
+    /** Subscriber queue capacity (changes). */
+    @Value("${platform.change-feed.subscriber-queue:256}")
+    private int queueCapacity;
+    /** Max subscribers. */
+    @Value("${platform.change-feed.max-subscribers:1000}")
+    private int maxSubscribers;
+    /** Stream timeout, ms (client reconnects with Last-Event-ID). */
+    @Value("${platform.change-feed.timeout-ms:1800000}")
+    private long timeout;
+    /** Heartbeat interval, ms. */
+    @Value("${platform.change-feed.heartbeat-ms:15000}")
+    private long heartbeat;
+    /** Sender threads. */
+    @Value("${platform.change-feed.sender-threads:2}")
+    private int senderThreads;
+    /** Boot epoch, part of event IDs. */
+    private final String epoch = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+    /** Ring buffer and sequence lock. */
+    private final Object lock = new Object();
+    /** Last changes. */
+    private Change[] ring;
+    /** Last sequence number. */
+    private long sequence;
+    /** Subscribers by entity class. */
+    private final Map<Class<?>, Set<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    /** Subscriber count. */
+    private final AtomicInteger subscriberCount = new AtomicInteger();
+    /** Subscriber overflows. */
+    private final AtomicLong overflows = new AtomicLong();
+    /** Event sender pool. */
+    private ExecutorService sender;
+    /** Heartbeat scheduler. */
+    private ScheduledExecutorService scheduler;
+    /**
+     * Start sender pool and heartbeat, register meters.
+     */
+    @PostConstruct
+    protected void init() {
+        ring = new Change[bufferSize];
+        AtomicInteger threadNumber = new AtomicInteger();
+        sender = Executors.newFixedThreadPool(senderThreads, (runnable) -> {
+            Thread thread = new Thread(runnable, "change-feed-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler = Executors.newSingleThreadScheduledExecutor((runnable) -> {
+            Thread thread = new Thread(runnable, "change-feed-heartbeat");
+            thread.setDaemon(true);
+            return thread;
+        });
+        scheduler.scheduleWithFixedDelay(this::heartbeat, heartbeat, heartbeat, TimeUnit.MILLISECONDS);
+        meterRegistry.ifAvailable((registry) -> {
+            Gauge.builder("platform.change.feed.subscribers", subscriberCount, AtomicInteger::get)
+                    .description("Open change streams").register(registry);
+            FunctionCounter.builder("platform.change.feed.changes", this, ChangeFeed::lastSequence)
+                    .description("Published changes").register(registry);
+            FunctionCounter.builder("platform.change.feed.overflows", overflows, AtomicLong::get)
+                    .description("Subscriber queue overflows (resets)").register(registry);
+        });
+    }
+    /**
+     * Close streams and stop sender pool.
+     */
+    @PreDestroy
+    protected void destroy() {
+        scheduler.shutdownNow();
+        subscribers.values().forEach((set) -> set.forEach((subscriber) -> subscriber.emitter.complete()));
+        sender.shutdownNow();
+    }
+    /**
+     * Subscribe to changes of an entity.
+     * @param cl entity class.
+     * @param lastEventId ID of the last event received by the client, null for a new stream.
+     * @return event stream.
+     * @throws RejectedExecutionException if there are too many subscribers.
+     */
+    public SseEmitter subscribe(Class<? extends DataModel> cl, String lastEventId) {
+        Long resumeAfter = parseEventId(lastEventId);
+        if (subscriberCount.incrementAndGet() > maxSubscribers) {
+            subscriberCount.decrementAndGet();
+            throw new RejectedExecutionException("Too many change feed subscribers");
+        }
+        Subscriber subscriber = new Subscriber(cl, new SseEmitter(timeout), queueCapacity);
+        subscriber.emitter.onCompletion(() -> unsubscribe(subscriber));
+        subscriber.emitter.onTimeout(() -> unsubscribe(subscriber));
+        subscriber.emitter.onError((e) -> unsubscribe(subscriber));
+        synchronized (lock) {
+            if (resumeAfter != null) {
+                replay(subscriber, resumeAfter);
+            }
+            subscribers.computeIfAbsent(cl, (k) -> ConcurrentHashMap.newKeySet()).add(subscriber);
+        }
+        schedule(subscriber);
+        return subscriber.emitter;
+    }
+    /**
+     * Publish committed change.
+     * @param event entity change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    public void onEntityChange(EntityChangeEvent event) {
+        Map<String, Object> data = new LinkedHashMap<>();
+        data.put("entity", Introspector.decapitalize(event.getEntityClass().getSimpleName()));
+        data.put("ids", event.getIds());
+        String json;
+        try {
+            json = objectMapper.writeValueAsString(data);
+        } catch (JsonProcessingException e) {
+            LOG.error("Change feed event is not serializable", e);
+            return;
+        }
+        Set<Subscriber> set = subscribers.get(event.getEntityClass());
+        List<Subscriber> notified = new ArrayList<>();
+        synchronized (lock) {
+            Change change = new Change(++sequence, event.getEntityClass(), event.getType().name().toLowerCase(),
+                    json);
+            ring[(int) (change.sequence % ring.length)] = change;
+            if (set != null) {
+                for (Subscriber subscriber : set) {
+                    offer(subscriber, change);
+                    notified.add(subscriber);
+                }
+            }
+        }
+        notified.forEach(this::schedule);
+    }
+    // =========================================== PRIVATE ============================================================
+    private long lastSequence() {
+        synchronized (lock) {
+            return sequence;
+        }
+    }
+    /**
+     * Parse event ID.
+     * @return sequence number, -1 if the ID is from another boot, null if absent.
+     */
+    private Long parseEventId(String eventId) {
+        if (eventId == null || eventId.trim().isEmpty()) {
+            return null;
+        }
+        int separator = eventId.indexOf('-');
+        try {
+            long value = Long.parseLong(eventId.substring(separator + 1).trim());
+            return separator > 0 && epoch.equals(eventId.substring(0, separator).trim()) ? value : -1L;
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid Last-Event-ID: " + eventId);
+        }
+    }
+    /**
+     * Queue changes after the resume point, or a reset if they are not in the ring any more.
+     */
+    private void replay(Subscriber subscriber, long resumeAfter) {
+        long oldest = Math.max(1, sequence - ring.length + 1);
+        if (resumeAfter < oldest - 1 || resumeAfter > sequence) {
+            synchronized (subscriber) {
+                subscriber.reset = sequence;
+            }
+            return;
+        }
+        for (long seq = resumeAfter + 1; seq <= sequence; seq++) {
+            Change change = ring[(int) (seq % ring.length)];
+            if (change.entityClass == subscriber.entityClass) {
+                offer(subscriber, change);
+            }
+        }
+    }
+    /**
+     * Queue change, a full queue is replaced by a reset.
+     */
+    private void offer(Subscriber subscriber, Change change) {
+        synchronized (subscriber) {
+            if (subscriber.queue.size() < subscriber.capacity) {
+                subscriber.queue.add(change);
+                return;
+            }
+            subscriber.queue.clear();
+            subscriber.reset = change.sequence;
+        }
+        overflows.incrementAndGet();
+    }
+    private void unsubscribe(Subscriber subscriber) {
+        Set<Subscriber> set = subscribers.get(subscriber.entityClass);
+        if (set != null && set.remove(subscriber)) {
+            subscriberCount.decrementAndGet();
+        }
+    }
+    private void schedule(Subscriber subscriber) {
+        if (subscriber.scheduled.compareAndSet(false, true)) {
+            try {
+                sender.execute(() -> send(subscriber));
+            } catch (RejectedExecutionException e) {
+                subscriber.scheduled.set(false);
+            }
+        }
+    }
+    /**
+     * Send queued events of a subscriber (one sender at a time per subscriber).
+     * The pending reset and the queue are taken together under the subscriber lock, so every change sent after a
+     * reset was queued after it; event IDs never go down.
+     */
+    private void send(Subscriber subscriber) {
+        try {
+            if (subscriber.ping.getAndSet(false)) {
+                subscriber.emitter.send(SseEmitter.event().comment("ping"));
+            }
+            long reset;
+            List<Change> changes;
+            synchronized (subscriber) {
+                reset = subscriber.reset;
+                subscriber.reset = -1;
+                changes = new ArrayList<>(subscriber.queue);
+                subscriber.queue.clear();
+            }
+            if (reset >= 0) {
+                subscriber.lastSent = Math.max(subscriber.lastSent, reset);
+                subscriber.emitter.send(SseEmitter.event().id(epoch + '-' + subscriber.lastSent).name(RESET)
+                        .data("{}"));
+            }
+            for (Change change : changes) {
+                if (change.sequence > subscriber.lastSent) {
+                    subscriber.lastSent = change.sequence;
+                    subscriber.emitter.send(SseEmitter.event().id(epoch + '-' + change.sequence).name(change.type)
+                            .data(change.data));
+                }
+            }
+        } catch (IOException | IllegalStateException e) {
+            // client went away or the stream is already completed
+            unsubscribe(subscriber);
+            subscriber.emitter.completeWithError(e);
+            return;
+        } finally {
+            subscriber.scheduled.set(false);
+        }
+        boolean pending;
+        synchronized (subscriber) {
+            pending = !subscriber.queue.isEmpty() || subscriber.reset >= 0;
+        }
+        if (pending || subscriber.ping.get()) {
+            schedule(subscriber);
+        }
+    }
+    private void heartbeat() {
+        subscribers.values().forEach((set) -> set.forEach((subscriber) -> {
+            subscriber.ping.set(true);
+            schedule(subscriber);
+        }));
+    }
+    /**
+     * Committed change.
+     */
+    private static final class Change {
+        /** Sequence number. */
+        private final long sequence;
+        /** Entity class. */
+        private final Class<?> entityClass;
+        /** Event name (change type). */
+        private final String type;
+        /** Event data (JSON). */
+        private final String data;
+        /**
+         * Constructor.
+         * @param sequence sequence number.
+         * @param entityClass entity class.
+         * @param type event name.
+         * @param data event data.
+         */
+        Change(long sequence, Class<?> entityClass, String type, String data) {
+            this.sequence = sequence;
+            this.entityClass = entityClass;
+            this.type = type;
+            this.data = data;
+        }
+    }
+    /**
+     * Stream subscriber. The queue and the pending reset are guarded by the subscriber monitor.
+     */
+    private static final class Subscriber {
+        /** Entity class. */
+        private final Class<?> entityClass;
+        /** Event stream. */
+        private final SseEmitter emitter;
+        /** Queue capacity. */
+        private final int capacity;
+        /** Queued changes. */
+        private final Queue<Change> queue;
+        /** Sequence number of a pending reset, -1 if none. */
+        private long reset = -1;
+        /** Pending heartbeat. */
+        private final AtomicBoolean ping = new AtomicBoolean();
+        /** Sender scheduled. */
+        private final AtomicBoolean scheduled = new AtomicBoolean();
+        /** Last sent sequence number, accessed by the current sender only. */
+        private long lastSent;
+        /**
+         * Constructor.
+         * @param entityClass entity class.
+         * @param emitter event stream.
+         * @param capacity queue capacity.
+         */
+        Subscriber(Class<?> entityClass, SseEmitter emitter, int capacity) {
+            this.entityClass = entityClass;
+            this.emitter = emitter;
+            this.capacity = capacity;
+            this.queue = new ArrayDeque<>(capacity);
+        }
+    }
+}
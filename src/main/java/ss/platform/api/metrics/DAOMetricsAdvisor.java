@@ -0,0 +1,214 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import java.beans.Introspector;
+import java.lang.reflect.Method;
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+import org.aopalliance.aop.Advice;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.aopalliance.intercept.MethodInvocation;
+import org.springframework.aop.Pointcut;
+import org.springframework.aop.support.AbstractPointcutAdvisor;
+import org.springframework.aop.support.StaticMethodMatcherPointcut;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.config.BeanDefinition;
+import org.springframework.context.annotation.Role;
+import org.springframework.core.Ordered;
+import org.springframework.stereotype.Component;
+import ss.platform.api.dao.CoreDAO;
+import ss.platform.api.dao.DataModel;
+import ss.platform.api.dao.EntitySearchResponse;
+
+/**
+ * Per-entity, per-operation metrics of {@link CoreDAO} calls.
+ * Wraps the transactional proxy, so latency includes the commit. Meters (<code>platform.dao.operation</code>
+ * timer, <code>platform.dao.rows</code> summary, <code>platform.dao.errors</code> counter, tagged with
+ * <code>entity</code> and <code>operation</code>) are registered once at startup for every entity and operation;
+ * recording a call is two map lookups and allocation free.
+ * @author ss
+ */
+@Component
+@Role(BeanDefinition.ROLE_INFRASTRUCTURE)
+public class DAOMetricsAdvisor extends AbstractPointcutAdvisor implements SmartInitializingSingleton {
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+    /** Entity tag value of calls without entity. */
+    private static final String NONE = "none";
+    /** Meter registry (resolved lazily, advisors are created before other beans). */
+    private final ObjectProvider<MeterRegistry> registry;
+    /** Entity manager factory. */
+    private final ObjectProvider<EntityManagerFactory> emf;
+    /** Meters by entity class and operation. */
+    private final Map<Class<?>, Map<String, Meters>> meters = new ConcurrentHashMap<>();
+    /** Pointcut: methods of the DAO interface. */
+    private final Pointcut pointcut = new StaticMethodMatcherPointcut() {
+        @Override
+        public boolean matches(Method method, Class<?> targetClass) {
+            return CoreDAO.class.isAssignableFrom(targetClass) && isDAOMethod(method);
+        }
+    };
+    /** Interceptor. */
+    private final MethodInterceptor interceptor = this::invoke;
+    /**
+     * Constructor.
+     * @param registry meter registry.
+     * @param emf entity manager factory.
+     */
+    public DAOMetricsAdvisor(ObjectProvider<MeterRegistry> registry, ObjectProvider<EntityManagerFactory> emf) {
+        this.registry = registry;
+        this.emf = emf;
+        setOrder(Ordered.HIGHEST_PRECEDENCE);
+    }
+    @Override
+    public Pointcut getPointcut() {
+        return pointcut;
+    }
+    @Override
+    public Advice getAdvice() {
+        return interceptor;
+    }
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (EntityType<?> type : emf.getObject().getMetamodel().getEntities()) {
+            if (type.getJavaType() != null && DataModel.class.isAssignableFrom(type.getJavaType())) {
+                for (Method method : CoreDAO.class.getMethods()) {
+                    meters(type.getJavaType(), method.getName());
+                }
+            }
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private Object invoke(MethodInvocation invocation) throws Throwable {
+        Meters m = meters(entityClass(invocation.getArguments()), invocation.getMethod().getName());
+        long start = System.nanoTime();
+        try {
+            Object result = invocation.proceed();
+            m.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            m.rows.record(rows(result));
+            return result;
+        } catch (Throwable e) {
+            m.timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            m.errors.increment();
+            throw e;
+        }
+    }
+    private Meters meters(Class<?> cl, String operation) {
+        Map<String, Meters> byOperation = meters.get(cl);
+        if (byOperation == null) {
+            byOperation = meters.computeIfAbsent(cl, (k) -> new ConcurrentHashMap<>());
+        }
+        Meters m = byOperation.get(operation);
+        if (m == null) {
+            m = byOperation.computeIfAbsent(operation, (op) -> new Meters(registry.getObject(), alias(cl), op));
+        }
+        return m;
+    }
+    private String alias(Class<?> cl) {
+        try {
+            return Introspector.decapitalize(emf.getObject().getMetamodel().entity(cl).getName());
+        } catch (IllegalArgumentException e) {
+            return NONE;
+        }
+    }
+    private static Class<?> entityClass(Object[] args) {
+        for (Object arg : args) {
+            if (arg instanceof Class) {
+                return (Class<?>) arg;
+            }
+        }
+        for (Object arg : args) {
+            if (arg instanceof DataModel) {
+                return arg.getClass();
+            }
+            if (arg instanceof Collection && !((Collection<?>) arg).isEmpty()) {
+                Object first = ((Collection<?>) arg).iterator().next();
+                if (first instanceof DataModel) {
+                    return first.getClass();
+                }
+            }
+        }
+        return Void.class;
+    }
+    private static long rows(Object result) {
+        if (result instanceof Collection) {
+            return ((Collection<?>) result).size();
+        }
+        if (result instanceof EntitySearchResponse) {
+            Collection<?> data = ((EntitySearchResponse<?>) result).getData();
+            return data == null ? 0 : data.size();
+        }
+        if (result instanceof Number) {
+            return ((Number) result).longValue();
+        }
+        if (result instanceof Boolean) {
+            return (Boolean) result ? 1 : 0;
+        }
+        return result == null ? 0 : 1;
+    }
+    private static boolean isDAOMethod(Method method) {
+        try {
+            CoreDAO.class.getMethod(method.getName(), method.getParameterTypes());
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+    /**
+     * Meters of one entity operation.
+     */
+    private static class Meters {
+        /** Latency. */
+        private final Timer timer;
+        /** Rows returned or affected. */
+        private final DistributionSummary rows;
+        /** Failed calls. */
+        private final Counter errors;
+        /**
+         * Constructor.
+         * @param registry meter registry.
+         * @param entity entity alias.
+         * @param operation operation.
+         */
+        Meters(MeterRegistry registry, String entity, String operation) {
+            timer = Timer.builder("platform.dao.operation").description("CoreDAO call latency")
+                    .tags("entity", entity, "operation", operation).publishPercentileHistogram()
+                    .register(registry);
+            rows = DistributionSummary.builder("platform.dao.rows").description("Rows returned or affected")
+                    .tags("entity", entity, "operation", operation).register(registry);
+            errors = Counter.builder("platform.dao.errors").description("Failed CoreDAO calls")
+                    .tags("entity", entity, "operation", operation).register(registry);
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.metrics;
+
+import io.micrometer.core.instrument.Tag;
+import io.micrometer.core.instrument.Tags;
+import java.util.Map;
+import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.boot.actuate.metrics.web.servlet.WebMvcTagsContributor;
+import org.springframework.stereotype.Component;
+import org.springframework.web.servlet.HandlerMapping;
+import ss.platform.api.rest.EntityHandler;
+import ss.platform.api.rest.EntityRegistry;
+
+/**
+ * Adds the <code>entity</code> tag to <code>http.server.requests</code> metrics of entity endpoints.
+ * Only registered aliases become tag values, so unknown entity names in URLs can not explode the tag cardinality.
+ * @author ss
+ */
+@Component
+public class EntityTagsContributor implements WebMvcTagsContributor {
+    /** Tag of requests without entity. */
+    private static final Tags NONE = Tags.of("entity", "none");
+    /** Entity registry. */
+    private final EntityRegistry entityRegistry;
+    /**
+     * Constructor.
+     * @param entityRegistry entity registry.
+     */
+    public EntityTagsContributor(EntityRegistry entityRegistry) {
+        this.entityRegistry = entityRegistry;
+    }
+    @Override
+    public Iterable<Tag> getTags(HttpServletRequest request, HttpServletResponse response, Object handler,
+            Throwable exception) {
+        Object variables = request.getAttribute(HandlerMapping.URI_TEMPLATE_VARIABLES_ATTRIBUTE);
+        if (variables instanceof Map) {
+            Object entity = ((Map<?, ?>) variables).get("entity");
+            EntityHandler<?> entityHandler = entity == null ? null : entityRegistry.findHandler(entity.toString());
+            if (entityHandler != null) {
+                return Tags.of("entity", entityHandler.getAlias());
+            }
+        }
+        return NONE;
+    }
+    @Override
+    public Iterable<Tag> getLongRequestTags(HttpServletRequest request, Object handler) {
+        return Tags.empty();
+    }
+}
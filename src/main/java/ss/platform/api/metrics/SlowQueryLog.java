@@ -0,0 +1,135 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.metrics;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import org.hibernate.BaseSessionEventListener;
+import org.hibernate.resource.jdbc.spi.StatementInspector;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.orm.jpa.HibernatePropertiesCustomizer;
+import org.springframework.stereotype.Component;
+
+/**
+ * Slow query log: SQL statements executed longer than <code>platform.slow-query.threshold-ms</code> are logged
+ * with the generated SQL, bind parameter count and time. A negative threshold disables the log.
+ * Statements bypassing the session (ID generator work) are logged without SQL.
+ * The last prepared SQL and the execution start are kept in a reusable per-thread holder, so statements
+ * under the threshold do not allocate.
+ * @author ss
+ */
+@Component
+public class SlowQueryLog implements HibernatePropertiesCustomizer {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(SlowQueryLog.class);
+    /** Threshold, nanoseconds (negative - disabled). */
+    private static volatile long thresholdNanos = -1;
+    /** Current statement of the thread. */
+    private static final ThreadLocal<Statement> STATEMENT = ThreadLocal.withInitial(Statement::new);
+    /** Threshold, milliseconds. */
+    private final long thresholdMs;
+    /**
+     * Constructor.
+     * @param thresholdMs threshold, milliseconds.
+     */
+    public SlowQueryLog(@Value("${platform.slow-query.threshold-ms:500}") long thresholdMs) {
+        this.thresholdMs = thresholdMs;
+    }
+    @Override
+    public void customize(Map<String, Object> hibernateProperties) {
+        if (thresholdMs < 0) {
+            return;
+        }
+        thresholdNanos = TimeUnit.MILLISECONDS.toNanos(thresholdMs);
+        hibernateProperties.put("hibernate.session_factory.statement_inspector", (StatementInspector) (sql) -> {
+            STATEMENT.get().sql = sql;
+            return sql;
+        });
+        hibernateProperties.put("hibernate.session.events.auto", Listener.class.getName());
+    }
+    // =========================================== PRIVATE ============================================================
+    private static void executionStart() {
+        STATEMENT.get().start = System.nanoTime();
+    }
+    private static void executionEnd(boolean batch) {
+        Statement statement = STATEMENT.get();
+        long elapsed = System.nanoTime() - statement.start;
+        if (elapsed >= thresholdNanos && LOG.isWarnEnabled()) {
+            LOG.warn("Slow {} [{} ms, {} binds]: {}", batch ? "batch" : "query",
+                    TimeUnit.NANOSECONDS.toMillis(elapsed), binds(statement.sql),
+                    statement.sql == null ? "<not captured>" : statement.sql);
+        }
+        statement.sql = null;
+    }
+    private static int binds(String sql) {
+        if (sql == null) {
+            return 0;
+        }
+        int count = 0;
+        boolean literal = false;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (c == '\'') {
+                literal = !literal;
+            } else if (c == '?' && !literal) {
+                count++;
+            }
+        }
+        return count;
+    }
+    /**
+     * Statement being executed by the thread.
+     */
+    private static class Statement {
+        /** Last prepared SQL. */
+        private String sql;
+        /** Execution start, nanoseconds. */
+        private long start;
+    }
+    /**
+     * Session event listener, Hibernate creates one per session.
+     */
+    public static class Listener extends BaseSessionEventListener {
+        /** Serial version UID. */
+        private static final long serialVersionUID = 1L;
+        @Override
+        public void jdbcExecuteStatementStart() {
+            executionStart();
+        }
+        @Override
+        public void jdbcExecuteStatementEnd() {
+            executionEnd(false);
+        }
+        @Override
+        public void jdbcExecuteBatchStart() {
+            executionStart();
+        }
+        @Override
+        public void jdbcExecuteBatchEnd() {
+            executionEnd(true);
+        }
+    }
+}
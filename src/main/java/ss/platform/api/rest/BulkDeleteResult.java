@@ -0,0 +1,152 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk delete result.
+ * @author ss
+ */
+public class BulkDeleteResult {
+    // =========================================== FIELDS =============================================================
+    /** IDs requested. */
+    private long requested;
+    /** Rows deleted. */
+    private long deleted;
+    /** Elapsed time, ms. */
+    private long elapsed;
+    /** Chunks (one transaction each). */
+    private List<Chunk> chunks = new ArrayList<>();
+    // =========================================== SET & GET ==========================================================
+    /**
+     * @return the requested
+     */
+    public long getRequested() {
+        return requested;
+    }
+    /**
+     * @param requested the requested to set
+     */
+    public void setRequested(long requested) {
+        this.requested = requested;
+    }
+    /**
+     * @return the deleted
+     */
+    public long getDeleted() {
+        return deleted;
+    }
+    /**
+     * @param deleted the deleted to set
+     */
+    public void setDeleted(long deleted) {
+        this.deleted = deleted;
+    }
+    /**
+     * @return the elapsed
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+    /**
+     * @param elapsed the elapsed to set
+     */
+    public void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+    /**
+     * @return the chunks
+     */
+    public List<Chunk> getChunks() {
+        return chunks;
+    }
+    /**
+     * @param chunks the chunks to set
+     */
+    public void setChunks(List<Chunk> chunks) {
+        this.chunks = chunks;
+    }
+    /**
+     * Chunk result.
+     */
+    public static class Chunk {
+        /** First ID of the chunk. */
+        private final long fromId;
+        /** Last ID of the chunk. */
+        private final long toId;
+        /** IDs in the chunk. */
+        private final int size;
+        /** Rows deleted. */
+        private final int deleted;
+        /** Elapsed time, ms. */
+        private final long elapsed;
+        /**
+         * Constructor.
+         * @param fromId first ID.
+         * @param toId last ID.
+         * @param size IDs in the chunk.
+         * @param deleted rows deleted.
+         * @param elapsed elapsed time, ms.
+         */
+        public Chunk(long fromId, long toId, int size, int deleted, long elapsed) {
+            this.fromId = fromId;
+            this.toId = toId;
+            this.size = size;
+            this.deleted = deleted;
+            this.elapsed = elapsed;
+        }
+        /**
+         * @return the fromId
+         */
+        public long getFromId() {
+            return fromId;
+        }
+        /**
+         * @return the toId
+         */
+        public long getToId() {
+            return toId;
+        }
+        /**
+         * @return the size
+         */
+        public int getSize() {
+            return size;
+        }
+        /**
+         * @return the deleted
+         */
+        public int getDeleted() {
+            return deleted;
+        }
+        /**
+         * @return the elapsed
+         */
+        public long getElapsed() {
+            return elapsed;
+        }
+    }
+}
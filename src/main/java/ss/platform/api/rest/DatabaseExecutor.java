@@ -0,0 +1,166 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.binder.jvm.ExecutorServiceMetrics;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ss.platform.api.datasource.ClientContext;
+
+/**
+ * Admission control for database work of REST requests.
+ * In async mode requests hand their database work to a bounded pool sized to the connection pool and release the
+ * servlet thread, so a slow database can not exhaust Tomcat workers. Work that does not fit into the queue, or
+ * waited in the queue longer than the max wait, fails fast with {@link RejectedExecutionException} (503) instead
+ * of piling up. In sync mode (default) the work runs on the calling thread.
+ * In async mode the pool is monitored as <code>dbExecutor</code> (<code>executor.*</code> meters), work that was
+ * not admitted is counted by <code>platform.db.executor.rejected</code> (tag <code>reason</code>:
+ * <code>queue_full</code>, <code>queue_wait</code>).
+ * @author ss
+ */
+@Component
+public class DatabaseExecutor {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(DatabaseExecutor.class);
+    /** Meter registry. */
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+    /** Async mode. */
+    @Value("${platform.db-executor.async:false}")
+    private boolean async;
+    /** Worker threads, 0 for the connection pool size minus the reserved connections. */
+    @Value("${platform.db-executor.pool-size:0}")
+    private int poolSize;
+    /** Connection pool size. */
+    @Value("${spring.datasource.hikari.maximum-pool-size:10}")
+    private int connectionPoolSize;
+    /**
+     * Connections left to work outside the workers: ID block allocation of the pooled table generator runs in its
+     * own transaction while the writing worker holds a connection.
+     */
+    @Value("${platform.db-executor.reserved-connections:2}")
+    private int reservedConnections;
+    /** Max queued tasks. */
+    @Value("${platform.db-executor.queue-capacity:100}")
+    private int queueCapacity;
+    /** Max queue wait, ms. */
+    @Value("${platform.db-executor.max-queue-wait-ms:2000}")
+    private long maxQueueWait;
+    /** Worker pool, null in sync mode. */
+    private ThreadPoolExecutor pool;
+    /** Rejected tasks. */
+    private final AtomicLong rejected = new AtomicLong();
+    /** Tasks expired in the queue. */
+    private final AtomicLong expired = new AtomicLong();
+    /**
+     * Start worker pool, register meters.
+     */
+    @PostConstruct
+    protected void init() {
+        if (!async) {
+            return;
+        }
+        if (poolSize <= 0) {
+            poolSize = Math.max(1, connectionPoolSize - reservedConnections);
+        }
+        AtomicInteger threadNumber = new AtomicInteger();
+        pool = new ThreadPoolExecutor(poolSize, poolSize, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), (runnable) -> {
+                    Thread thread = new Thread(runnable, "db-executor-" + threadNumber.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        meterRegistry.ifAvailable((registry) -> {
+            new ExecutorServiceMetrics(pool, "dbExecutor", Tags.empty()).bindTo(registry);
+            FunctionCounter.builder("platform.db.executor.rejected", rejected, AtomicLong::get)
+                    .description("Database work not admitted").tag("reason", "queue_full").register(registry);
+            FunctionCounter.builder("platform.db.executor.rejected", expired, AtomicLong::get)
+                    .description("Database work not admitted").tag("reason", "queue_wait").register(registry);
+        });
+        LOG.info("Database executor: " + poolSize + " threads, queue capacity " + queueCapacity);
+    }
+    /**
+     * Stop worker pool.
+     */
+    @PreDestroy
+    protected void destroy() {
+        if (pool != null) {
+            pool.shutdown();
+        }
+    }
+    /**
+     * Execute database work.
+     * @param <T> result type.
+     * @param task database work.
+     * @return result future, failed with {@link RejectedExecutionException} if the task was not admitted.
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        if (pool == null) {
+            complete(future, task);
+            return future;
+        }
+        Callable<T> clientTask = ClientContext.wrap(task);
+        long queuedAt = System.nanoTime();
+        try {
+            pool.execute(() -> {
+                if (System.nanoTime() - queuedAt > TimeUnit.MILLISECONDS.toNanos(maxQueueWait)) {
+                    expired.incrementAndGet();
+                    future.completeExceptionally(new RejectedExecutionException("Database is overloaded"));
+                    return;
+                }
+                complete(future, clientTask);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.incrementAndGet();
+            future.completeExceptionally(new RejectedExecutionException("Database is overloaded", e));
+        }
+        return future;
+    }
+    // =========================================== PRIVATE ============================================================
+    private static <T> void complete(CompletableFuture<T> future, Callable<T> task) {
+        try {
+            future.complete(task.call());
+        } catch (Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import org.springframework.beans.BeanWrapper;
+import org.springframework.beans.BeanWrapperImpl;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+import ss.platform.api.dao.DataModel;
+
+/**
+ * Prebuilt per-entity handler.
+ * Everything the REST layer needs for an entity type is resolved once at startup.
+ * @author ss
+ * @param <T> entity type.
+ */
+public class EntityHandler<T extends DataModel> {
+    // =========================================== FIELDS =============================================================
+    /** Entity alias (URL name). */
+    private final String alias;
+    /** Entity class. */
+    private final Class<T> entityClass;
+    /** ID type. */
+    private final Class<?> idType;
+    /** Cached JSON reader. */
+    private final ObjectReader reader;
+    /** Cached JSON reader of entity arrays. */
+    private final ObjectReader listReader;
+    /** Cached JSON writer. */
+    private final ObjectWriter writer;
+    /** Read-only marker or null if the entity API may write the entity. */
+    private final ReadOnlyEntity readOnly;
+    // =========================================== ACTIONS ============================================================
+    /**
+     * Constructor.
+     * @param alias entity alias.
+     * @param entityClass entity class.
+     * @param idType ID type.
+     * @param mapper shared object mapper.
+     */
+    EntityHandler(String alias, Class<T> entityClass, Class<?> idType, ObjectMapper mapper) {
+        this.alias = alias;
+        this.entityClass = entityClass;
+        this.idType = idType;
+        this.reader = mapper.readerFor(entityClass);
+        this.listReader = mapper.readerFor(mapper.getTypeFactory().constructCollectionType(List.class, entityClass));
+        this.writer = mapper.writerFor(entityClass);
+        this.readOnly = entityClass.getAnnotation(ReadOnlyEntity.class);
+    }
+    /**
+     * Check that the entity API may create and update the entity.
+     * @throws ResponseStatusException (405) if the entity is {@link ReadOnlyEntity}.
+     */
+    public void checkWritable() {
+        if (readOnly != null) {
+            String hint = readOnly.value().isEmpty() ? "" : ", " + readOnly.value();
+            throw new ResponseStatusException(HttpStatus.METHOD_NOT_ALLOWED,
+                    "Entity is read-only in the entity API: " + alias + hint);
+        }
+    }
+    /**
+     * Read entity from JSON, in one pass without an intermediate tree.
+     * @param in JSON input.
+     * @return entity.
+     * @throws IOException malformed JSON or I/O error.
+     */
+    public T read(InputStream in) throws IOException {
+        return reader.readValue(in);
+    }
+    /**
+     * Read JSON array of entities.
+     * @param in JSON input.
+     * @return entities.
+     * @throws IOException malformed JSON or I/O error.
+     */
+    public List<T> readList(InputStream in) throws IOException {
+        return listReader.readValue(in);
+    }
+    /**
+     * Read JSON Merge Patch (RFC 7396) of entity fields.
+     * Values are deserialized with the entity mapping, so they have the entity field types.
+     * @param in JSON input.
+     * @return new values by field name, null values clear the field.
+     * @throws IOException malformed JSON or I/O error.
+     * @throws IllegalArgumentException if patch is not an object or a field is unknown.
+     */
+    public Map<String, Object> readPatch(InputStream in) throws IOException {
+        JsonNode tree = reader.readTree(in);
+        if (tree == null || !tree.isObject()) {
+            throw new IllegalArgumentException("Merge patch must be a JSON object");
+        }
+        T entity = reader.readValue(tree);
+        BeanWrapper patched = new BeanWrapperImpl(entity);
+        Map<String, Object> values = new LinkedHashMap<>();
+        tree.fieldNames().forEachRemaining((field) -> {
+            if (!patched.isReadableProperty(field)) {
+                throw new IllegalArgumentException("Unknown field: " + field);
+            }
+            values.put(field, patched.getPropertyValue(field));
+        });
+        return values;
+    }
+    // =========================================== SET & GET ==========================================================
+    /**
+     * @return the alias
+     */
+    public String getAlias() {
+        return alias;
+    }
+    /**
+     * @return the entityClass
+     */
+    public Class<T> getEntityClass() {
+        return entityClass;
+    }
+    /**
+     * @return the idType
+     */
+    public Class<?> getIdType() {
+        return idType;
+    }
+    /**
+     * @return the reader
+     */
+    public ObjectReader getReader() {
+        return reader;
+    }
+    /**
+     * @return the writer
+     */
+    public ObjectWriter getWriter() {
+        return writer;
+    }
+}
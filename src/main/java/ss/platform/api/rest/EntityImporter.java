@@ -0,0 +1,162 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonMappingException;
+import com.fasterxml.jackson.databind.MappingIterator;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.dataformat.csv.CsvMapper;
+import com.fasterxml.jackson.dataformat.csv.CsvSchema;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ss.platform.api.dao.CoreDAO;
+import ss.platform.api.dao.DataModel;
+
+/**
+ * Streaming bulk importer (NDJSON or CSV with header).
+ * Rows are parsed one by one and written in chunks, one transaction per chunk. A chunk that fails is retried
+ * row by row, so a bad row is reported without aborting the whole load. Rows are always created: IDs and versions
+ * of the input (e.g. an export) are dropped.
+ * @author ss
+ */
+@Component
+public class EntityImporter {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(EntityImporter.class);
+    /** Entity service. */
+    @Autowired
+    private CoreDAO coreDAO;
+    /** Max reported row errors. */
+    @Value("${platform.import.max-errors:100}")
+    private int maxErrors;
+    /** CSV mapper. */
+    private final CsvMapper csvMapper = (CsvMapper) new CsvMapper().findAndRegisterModules()
+            .disable(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+    /** CSV readers by entity class. */
+    private final Map<Class<?>, ObjectReader> csvReaders = new ConcurrentHashMap<>();
+    /**
+     * Import entities.
+     * @param <T> entity type.
+     * @param handler entity handler.
+     * @param in input stream.
+     * @param csv CSV format (NDJSON otherwise).
+     * @param chunkSize rows per transaction.
+     * @return import result.
+     * @throws Exception I/O error.
+     * @throws org.springframework.web.server.ResponseStatusException (405) if the entity is {@link ReadOnlyEntity}.
+     */
+    public <T extends DataModel> ImportResult importEntities(EntityHandler<T> handler, InputStream in, boolean csv,
+            int chunkSize) throws Exception {
+        handler.checkWritable();
+        ImportResult result = new ImportResult();
+        long start = System.nanoTime();
+        List<T> chunk = new ArrayList<>(chunkSize);
+        List<Long> chunkRows = new ArrayList<>(chunkSize);
+        long row = 0;
+        try (MappingIterator<T> rows = reader(handler, csv).readValues(in)) {
+            while (rows.hasNextValue()) {
+                row++;
+                try {
+                    T entity = rows.nextValue();
+                    entity.setId(null);
+                    entity.setVersion(null);
+                    chunk.add(entity);
+                    chunkRows.add(row);
+                } catch (JsonMappingException e) {
+                    addError(result, row, e.getOriginalMessage());
+                }
+                if (chunk.size() >= chunkSize) {
+                    save(handler, chunk, chunkRows, result);
+                    progress(handler, result, row, start);
+                }
+            }
+        } catch (JsonProcessingException e) {
+            // malformed input, the parser can not find the next row
+            addError(result, row, e.getOriginalMessage());
+            result.setAborted(true);
+        }
+        save(handler, chunk, chunkRows, result);
+        result.setRows(row);
+        progress(handler, result, row, start);
+        return result;
+    }
+    // =========================================== PRIVATE ============================================================
+    private <T extends DataModel> ObjectReader reader(EntityHandler<T> handler, boolean csv) {
+        if (!csv) {
+            return handler.getReader();
+        }
+        return csvReaders.computeIfAbsent(handler.getEntityClass(), (cl) -> csvMapper.readerFor(cl)
+                .with(CsvSchema.emptySchema().withHeader()));
+    }
+    private <T extends DataModel> void save(EntityHandler<T> handler, List<T> chunk, List<Long> chunkRows,
+            ImportResult result) {
+        if (chunk.isEmpty()) {
+            return;
+        }
+        try {
+            coreDAO.createAll(chunk);
+            result.setImported(result.getImported() + chunk.size());
+        } catch (RuntimeException e) {
+            LOG.debug("Import chunk of " + handler.getAlias() + " failed, retrying row by row", e);
+            for (int i = 0; i < chunk.size(); i++) {
+                T entity = chunk.get(i);
+                // IDs assigned by the failed chunk
+                entity.setId(null);
+                entity.setVersion(null);
+                try {
+                    coreDAO.create(entity);
+                    result.setImported(result.getImported() + 1);
+                } catch (RuntimeException rowError) {
+                    addError(result, chunkRows.get(i), rowError.getMessage());
+                }
+            }
+        }
+        chunk.clear();
+        chunkRows.clear();
+    }
+    private void addError(ImportResult result, long row, String message) {
+        result.setFailed(result.getFailed() + 1);
+        if (result.getErrors().size() < maxErrors) {
+            result.getErrors().add(new ImportResult.RowError(row, message));
+        }
+    }
+    private void progress(EntityHandler<?> handler, ImportResult result, long row, long start) {
+        long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        result.setElapsed(elapsed);
+        result.setRowsPerSecond(elapsed == 0 ? row : row * 1000 / elapsed);
+        LOG.info("Import " + handler.getAlias() + ": " + row + " rows, " + result.getImported() + " imported, "
+                + result.getFailed() + " failed, " + result.getRowsPerSecond() + " rows/s");
+    }
+}
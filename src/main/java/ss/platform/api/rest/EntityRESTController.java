@@ -23,20 +23,50 @@
  */
 package ss.platform.api.rest;
 
+import com.fasterxml.jackson.core.JsonEncoding;
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import java.io.Serializable;
+import com.fasterxml.jackson.databind.ObjectWriter;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestHeader;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.context.request.WebRequest;
+import org.springframework.web.server.ResponseStatusException;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
 import ss.platform.api.dao.CoreDAO;
 import ss.platform.api.dao.DataModel;
+import ss.platform.api.dao.EntityCache;
+import ss.platform.api.dao.EntityChangeCounter;
 import ss.platform.api.dao.EntitySearchRequest;
-import ss.platform.api.dao.EntitySearchResponse;
+import ss.platform.api.dao.SearchResultCache;
+import ss.platform.api.feed.ChangeFeed;
 
 /**
  * Entity REST controller.
@@ -45,79 +75,372 @@ import ss.platform.api.dao.EntitySearchResponse;
 @RestController
 @RequestMapping("/api/entity")
 public class EntityRESTController {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(EntityRESTController.class);
+    /** Newline-delimited JSON media type. */
+    private static final String NDJSON = "application/x-ndjson";
+    /** JSON Merge Patch media type. */
+    private static final String MERGE_PATCH = "application/merge-patch+json";
+    /** CSV media type. */
+    private static final String CSV = "text/csv";
     /** Entity service. */
     @Autowired
     private CoreDAO coreDAO;
+    /** Entity registry. */
+    @Autowired
+    private EntityRegistry entityRegistry;
+    /** Entity change counter. */
+    @Autowired
+    private EntityChangeCounter entityChangeCounter;
+    /** Entity cache. */
+    @Autowired
+    private EntityCache entityCache;
+    /** Database work admission. */
+    @Autowired
+    private DatabaseExecutor databaseExecutor;
+    /** Identical concurrent reads coalescing. */
+    @Autowired
+    private ReadCoalescer readCoalescer;
+    /** Search result cache. */
+    @Autowired
+    private SearchResultCache searchResultCache;
+    /** JSON mapper (same as the message converters). */
+    @Autowired
+    private ObjectMapper objectMapper;
+    /** Entity change feed. */
+    @Autowired
+    private ChangeFeed changeFeed;
+    /** Entity importer. */
+    @Autowired
+    private EntityImporter entityImporter;
+    /** Batch chunk size (entities per transaction). */
+    @Value("${platform.batch.chunk-size:500}")
+    private int batchChunkSize;
     /**
      * Search entities.
-     * @param entityName entity name.
+     * The ETag is derived from the entity change counter, so <code>If-None-Match</code> is answered with 304
+     * without a query while the entity is unchanged. First pages are served from the search result cache as
+     * serialized JSON, without data and count queries. Identical concurrent misses share one query.
+     * @param entityName entity alias.
      * @param request HTTP request.
-     * @return search response.
+     * @param webRequest web request.
+     * @return serialized search response, null if it is not modified.
      * @throws Exception error.
      */
     @RequestMapping(value = "/{entity}", method = RequestMethod.GET,
             produces = MediaType.APPLICATION_JSON_VALUE)
-    public EntitySearchResponse searchEntities(@PathVariable("entity") String entityName,
-            HttpServletRequest request) throws Exception {
-        Class entityClass = (Class<? extends Serializable>) Class.forName(entityName);
-        return coreDAO.searchEntities(entityClass, EntitySearchRequest.createRequest(request));
+    public CompletableFuture<ResponseEntity<byte[]>> searchEntities(@PathVariable("entity") String entityName,
+            HttpServletRequest request, WebRequest webRequest) throws Exception {
+        Class<? extends DataModel> entityClass = entityRegistry.getHandler(entityName).getEntityClass();
+        // the tag is taken before the query, a change made meanwhile only makes the next request miss
+        if (webRequest.checkNotModified(entityChangeCounter.tag(entityClass))) {
+            return null;
+        }
+        EntitySearchRequest searchRequest = EntitySearchRequest.createRequest(request);
+        SearchResultCache.Key key = searchResultCache.key(entityClass, searchRequest);
+        byte[] cached = searchResultCache.get(key);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(jsonBody(cached));
+        }
+        return readCoalescer.submit(readCoalescer.key(entityClass, "search", searchRequest.normalize()), () -> {
+            byte[] body = objectMapper.writeValueAsBytes(coreDAO.searchEntities(entityClass, searchRequest));
+            searchResultCache.put(key, body);
+            return jsonBody(body);
+        });
+    }
+    /**
+     * Export entities as newline-delimited JSON.
+     * Rows are streamed to the response with a forward-only cursor, same filters and order as search.
+     * @param entityName entity alias.
+     * @param request HTTP request.
+     * @param response HTTP response.
+     * @throws Exception error.
+     */
+    @RequestMapping(value = "/{entity}/export", method = RequestMethod.GET, produces = NDJSON)
+    public void exportEntities(@PathVariable("entity") String entityName, HttpServletRequest request,
+            HttpServletResponse response) throws Exception {
+        EntityHandler<?> handler = entityRegistry.getHandler(entityName);
+        EntitySearchRequest searchRequest = EntitySearchRequest.createRequest(request);
+        response.setContentType(NDJSON);
+        response.setCharacterEncoding(StandardCharsets.UTF_8.name());
+        try (JsonGenerator generator = handler.getWriter().getFactory()
+                .createGenerator(response.getOutputStream(), JsonEncoding.UTF8)) {
+            generator.setRootValueSeparator(null);
+            export(handler, searchRequest, generator);
+        }
+    }
+    /**
+     * Stream committed changes of an entity as Server-Sent Events (<code>create</code>, <code>update</code>,
+     * <code>delete</code> with the changed IDs, <code>reset</code> when changes were lost and the list must be
+     * reloaded).
+     * @param entityName entity alias.
+     * @param lastEventId last received event ID (sent by reconnecting EventSource clients).
+     * @param lastEventIdParam last received event ID for the first connection.
+     * @return event stream, 503 without a body if there are too many streams.
+     * @throws Exception error.
+     */
+    @RequestMapping(value = "/{entity}/changes", method = RequestMethod.GET,
+            produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamChanges(@PathVariable("entity") String entityName,
+            @RequestHeader(name = "Last-Event-ID", required = false) String lastEventId,
+            @RequestParam(name = "last_event_id", required = false) String lastEventIdParam) throws Exception {
+        Class<? extends DataModel> entityClass = entityRegistry.getHandler(entityName).getEntityClass();
+        try {
+            return ResponseEntity.ok(changeFeed.subscribe(entityClass,
+                    lastEventId == null ? lastEventIdParam : lastEventId));
+        } catch (RejectedExecutionException e) {
+            // the JSON error body is not acceptable for an event stream request
+            return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE).header(HttpHeaders.RETRY_AFTER, "1").build();
+        }
     }
     /**
      * Get entity by ID.
-     * @param entityName entity name.
+     * Cached entities are returned on the request thread, without database admission. Identical concurrent misses
+     * share one query.
+     * @param entityName entity alias.
      * @param id entity ID.
-     * @return entity.
+     * @return entity with ETag (304 if <code>If-None-Match</code> matches).
      * @throws Exception error.
      */
     @RequestMapping(value = "/{entity}/{id}", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
-    public DataModel getEntityById(@PathVariable("entity") String entityName,
+    public CompletableFuture<ResponseEntity<DataModel>> getEntityById(@PathVariable("entity") String entityName,
             @PathVariable("id") Long id) throws Exception {
-        Class entityClass = (Class<? extends Serializable>) Class.forName(entityName);
-        return coreDAO.findById(id, entityClass);
+        Class<? extends DataModel> entityClass = entityRegistry.getHandler(entityName).getEntityClass();
+        DataModel cached = entityCache.getIfPresent(entityClass, id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(withETag(cached));
+        }
+        return readCoalescer.submit(readCoalescer.key(entityClass, "id", id),
+                () -> withETag(coreDAO.findById(id, entityClass)));
     }
     /**
      * Create entity.
-     * @param entityName entity name.
-     * @param rawData raw data.
+     * The body is parsed once, straight into the entity class.
+     * @param entityName entity alias.
+     * @param body JSON body.
      * @return entity with ID.
      * @throws Exception error.
      */
-    @RequestMapping(value = "/{entity}", method = RequestMethod.POST, produces = MediaType.APPLICATION_JSON_VALUE)
-    public DataModel createEntity(@PathVariable("entity") String entityName, @RequestBody Object rawData)
+    @RequestMapping(value = "/{entity}", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<DataModel> createEntity(@PathVariable("entity") String entityName, InputStream body)
             throws Exception {
-        ObjectMapper mapper = new ObjectMapper();
-        Class entityClass = (Class<? extends Serializable>) Class.forName(entityName);
-        DataModel entity = (DataModel) mapper.convertValue(rawData, entityClass);
-        return coreDAO.create(entity);
+        DataModel entity = writableHandler(entityName).read(body);
+        return databaseExecutor.submit(() -> coreDAO.create(entity));
     }
     /**
      * Update entity.
-     * @param entityName entity name.
-     * @param rawData raw data.
-     * @return empty response.
+     * With <code>If-Match</code> (entity ETag) the update fails with 412 if the entity was modified meanwhile.
+     * @param entityName entity alias.
+     * @param body JSON body.
+     * @param ifMatch expected entity ETag or null.
+     * @return updated entity with ETag.
+     * @throws Exception error.
+     */
+    @RequestMapping(value = "/{entity}", method = RequestMethod.PUT, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<DataModel>> updateEntity(@PathVariable("entity") String entityName,
+            InputStream body, @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch)
+            throws Exception {
+        DataModel entity = writableHandler(entityName).read(body);
+        Long expectedVersion = parseVersion(ifMatch);
+        if (expectedVersion != null) {
+            entity.setVersion(expectedVersion);
+        }
+        return databaseExecutor.submit(() -> {
+            try {
+                return withETag(coreDAO.update(entity));
+            } catch (OptimisticLockingFailureException e) {
+                if (expectedVersion == null) {
+                    throw e;
+                }
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Entity was modified: " + ifMatch);
+            }
+        });
+    }
+    /**
+     * Patch entity with a JSON Merge Patch: one UPDATE of the patched columns, the entity is not loaded.
+     * With <code>If-Match</code> (entity ETag) the patch fails with 412 if the entity was modified meanwhile.
+     * @param entityName entity alias.
+     * @param id entity ID.
+     * @param body JSON merge patch.
+     * @param ifMatch expected entity ETag or null.
+     * @return response, with the new ETag if the expected version was given.
+     * @throws Exception error.
+     */
+    @RequestMapping(value = "/{entity}/{id}", method = RequestMethod.PATCH,
+            consumes = {MERGE_PATCH, MediaType.APPLICATION_JSON_VALUE}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<ResponseEntity<RESTResponse>> patchEntity(@PathVariable("entity") String entityName,
+            @PathVariable("id") Long id, InputStream body,
+            @RequestHeader(name = HttpHeaders.IF_MATCH, required = false) String ifMatch) throws Exception {
+        EntityHandler<?> handler = writableHandler(entityName);
+        Long expectedVersion = parseVersion(ifMatch);
+        Map<String, Object> values = handler.readPatch(body);
+        return databaseExecutor.submit(() -> {
+            boolean patched;
+            try {
+                patched = coreDAO.patch(handler.getEntityClass(), id, values, expectedVersion);
+            } catch (OptimisticLockingFailureException e) {
+                if (expectedVersion == null) {
+                    throw e;
+                }
+                throw new ResponseStatusException(HttpStatus.PRECONDITION_FAILED, "Entity was modified: " + ifMatch);
+            }
+            if (!patched) {
+                throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Entity not found: " + id);
+            }
+            ResponseEntity.BodyBuilder response = ResponseEntity.ok();
+            if (expectedVersion != null) {
+                response.eTag(String.valueOf(expectedVersion + 1));
+            }
+            return response.body(new RESTResponse());
+        });
+    }
+    /**
+     * Create entities in chunks, every chunk is persisted in its own transaction with JDBC batching.
+     * @param entityName entity alias.
+     * @param body JSON array of entities.
+     * @return IDs of created entities.
+     * @throws Exception error.
+     */
+    @RequestMapping(value = "/{entity}/batch", method = RequestMethod.POST,
+            consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<Long> createEntities(@PathVariable("entity") String entityName, InputStream body)
+            throws Exception {
+        return saveInChunks(writableHandler(entityName), body, coreDAO::createAll);
+    }
+    /**
+     * Update entities in chunks, every chunk is merged in its own transaction with JDBC batching.
+     * @param entityName entity alias.
+     * @param body JSON array of entities.
+     * @return IDs of updated entities.
      * @throws Exception error.
      */
-    @RequestMapping(value = "/{entity}", method = RequestMethod.PUT, produces = MediaType.APPLICATION_JSON_VALUE)
-    public DataModel updateEntity(@PathVariable("entity") String entityName, @RequestBody Object rawData)
+    @RequestMapping(value = "/{entity}/batch", method = RequestMethod.PUT,
+            consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<Long> updateEntities(@PathVariable("entity") String entityName, InputStream body)
             throws Exception {
-        ObjectMapper mapper = new ObjectMapper();
-        Class entityClass = (Class<? extends Serializable>) Class.forName(entityName);
-        DataModel entity = (DataModel) mapper.convertValue(rawData, entityClass);
-        return coreDAO.update(entity);
+        return saveInChunks(writableHandler(entityName), body, coreDAO::updateAll);
+    }
+    /**
+     * Delete entities in chunks of ascending IDs, every chunk is deleted in its own transaction, so row locks
+     * are held for one chunk only. Deleted IDs are evicted from caches after every chunk commit.
+     * @param entityName entity alias.
+     * @param chunkSize IDs per transaction.
+     * @param ids entity IDs.
+     * @return delete result with per-chunk progress.
+     * @throws Exception error.
+     */
+    @RequestMapping(value = "/{entity}/batch", method = RequestMethod.DELETE,
+            consumes = MediaType.APPLICATION_JSON_VALUE, produces = MediaType.APPLICATION_JSON_VALUE)
+    public BulkDeleteResult deleteEntities(@PathVariable("entity") String entityName,
+            @RequestParam(name = "chunk_size", required = false) Integer chunkSize,
+            @RequestBody List<Long> ids) throws Exception {
+        EntityHandler<?> handler = entityRegistry.getHandler(entityName);
+        int size = chunkSize == null ? batchChunkSize : chunkSize;
+        if (size <= 0) {
+            throw new IllegalArgumentException("Invalid chunk size: " + chunkSize);
+        }
+        List<Long> sorted = new ArrayList<>(new TreeSet<>(ids));
+        BulkDeleteResult result = new BulkDeleteResult();
+        result.setRequested(sorted.size());
+        long start = System.nanoTime();
+        for (int from = 0; from < sorted.size(); from += size) {
+            List<Long> chunk = sorted.subList(from, Math.min(from + size, sorted.size()));
+            long chunkStart = System.nanoTime();
+            int deleted = coreDAO.massDelete(new LinkedHashSet<>(chunk), handler.getEntityClass());
+            result.setDeleted(result.getDeleted() + deleted);
+            result.getChunks().add(new BulkDeleteResult.Chunk(chunk.get(0), chunk.get(chunk.size() - 1),
+                    chunk.size(), deleted, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - chunkStart)));
+            LOG.info("Delete " + handler.getAlias() + ": " + (from + chunk.size()) + " of " + sorted.size()
+                    + " IDs, " + result.getDeleted() + " deleted");
+        }
+        result.setElapsed(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        return result;
+    }
+    /**
+     * Import entities from a NDJSON or CSV (with header) stream.
+     * @param entityName entity alias.
+     * @param chunkSize rows per transaction.
+     * @param request HTTP request.
+     * @return import result.
+     * @throws Exception error.
+     */
+    @RequestMapping(value = "/{entity}/import", method = RequestMethod.POST,
+            consumes = {NDJSON, CSV}, produces = MediaType.APPLICATION_JSON_VALUE)
+    public ImportResult importEntities(@PathVariable("entity") String entityName,
+            @RequestParam(name = "chunk_size", required = false) Integer chunkSize,
+            HttpServletRequest request) throws Exception {
+        boolean csv = MediaType.parseMediaType(request.getContentType()).isCompatibleWith(MediaType.valueOf(CSV));
+        return entityImporter.importEntities(entityRegistry.getHandler(entityName), request.getInputStream(), csv,
+                chunkSize == null ? batchChunkSize : chunkSize);
     }
     /**
      * Delete entity.
-     * @param entityName entity name.
+     * @param entityName entity alias.
      * @param id entity ID..
      * @return response.
      * @throws Exception error.
      */
     @RequestMapping(value = "/{entity}/{id}", method = RequestMethod.DELETE,
             produces = MediaType.APPLICATION_JSON_VALUE)
-    public RESTResponse deleteEntity(@PathVariable("entity") String entityName, @PathVariable("id") Long id)
-            throws Exception {
-        Class entityClass = (Class<? extends Serializable>) Class.forName(entityName);
-        coreDAO.delete(id, entityClass);
-        return new RESTResponse();
+    public CompletableFuture<RESTResponse> deleteEntity(@PathVariable("entity") String entityName,
+            @PathVariable("id") Long id) throws Exception {
+        Class<? extends DataModel> entityClass = entityRegistry.getHandler(entityName).getEntityClass();
+        return databaseExecutor.submit(() -> {
+            coreDAO.delete(id, entityClass);
+            return new RESTResponse();
+        });
+    }
+    // =========================================== PRIVATE ============================================================
+    private EntityHandler<?> writableHandler(String entityName) {
+        EntityHandler<?> handler = entityRegistry.getHandler(entityName);
+        handler.checkWritable();
+        return handler;
+    }
+    private static ResponseEntity<byte[]> jsonBody(byte[] body) {
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+    private static ResponseEntity<DataModel> withETag(DataModel entity) {
+        if (entity == null || entity.getVersion() == null) {
+            return ResponseEntity.ok(entity);
+        }
+        return ResponseEntity.ok().eTag(String.valueOf(entity.getVersion())).body(entity);
+    }
+    /**
+     * Parse entity version from an If-Match header.
+     * @return version or null if header is absent or matches any version.
+     */
+    private static Long parseVersion(String ifMatch) {
+        if (ifMatch == null || "*".equals(ifMatch.trim())) {
+            return null;
+        }
+        String tag = ifMatch.trim();
+        if (tag.startsWith("W/")) {
+            tag = tag.substring(2);
+        }
+        try {
+            return Long.valueOf(tag.replace("\"", ""));
+        } catch (NumberFormatException e) {
+            throw new IllegalArgumentException("Invalid If-Match: " + ifMatch);
+        }
+    }
+    private <T extends DataModel> void export(EntityHandler<T> handler, EntitySearchRequest searchRequest,
+            JsonGenerator generator) throws Exception {
+        ObjectWriter writer = handler.getWriter().without(SerializationFeature.FLUSH_AFTER_WRITE_VALUE);
+        coreDAO.scrollEntities(handler.getEntityClass(), searchRequest, (entity) -> {
+            writer.writeValue(generator, entity);
+            generator.writeRaw('\n');
+        });
+    }
+    private <T extends DataModel> List<Long> saveInChunks(EntityHandler<T> handler, InputStream body,
+            Function<List<T>, List<T>> save) throws Exception {
+        List<T> entities = handler.readList(body);
+        List<Long> ids = new ArrayList<>(entities.size());
+        for (int from = 0; from < entities.size(); from += batchChunkSize) {
+            List<T> chunk = new ArrayList<>(entities.subList(from, Math.min(from + batchChunkSize, entities.size())));
+            save.apply(chunk).forEach((entity) -> ids.add(entity.getId()));
+        }
+        return ids;
     }
 }
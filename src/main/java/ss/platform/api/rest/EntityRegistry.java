@@ -0,0 +1,122 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import java.beans.Introspector;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import javax.annotation.PostConstruct;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+import org.springframework.web.server.ResponseStatusException;
+import ss.platform.api.dao.DataModel;
+
+/**
+ * Entity registry.
+ * Built once at startup from the JPA metamodel, maps URL aliases to entity handlers.
+ * Every entity is registered under its short alias (<code>tool</code>) and its fully qualified class name
+ * (<code>ss.tools.rental.model.Tool</code>) for old clients.
+ * @author ss
+ */
+@Component
+public class EntityRegistry {
+    /** Entity manager factory. */
+    @Autowired
+    private EntityManagerFactory emf;
+    /** Object mapper. */
+    @Autowired
+    private ObjectMapper mapper;
+    /** Handlers by alias. */
+    private Map<String, EntityHandler<?>> handlers = Collections.emptyMap();
+    /** Handlers by class. */
+    private Map<Class<?>, EntityHandler<?>> handlersByClass = Collections.emptyMap();
+    /**
+     * Build registry.
+     */
+    @PostConstruct
+    protected void init() {
+        Map<String, EntityHandler<?>> byAlias = new HashMap<>();
+        Map<Class<?>, EntityHandler<?>> byClass = new LinkedHashMap<>();
+        for (EntityType<?> type : emf.getMetamodel().getEntities()) {
+            Class<?> javaType = type.getJavaType();
+            if (javaType != null && DataModel.class.isAssignableFrom(javaType)) {
+                EntityHandler<?> handler = createHandler(type, javaType.asSubclass(DataModel.class));
+                byAlias.put(handler.getAlias(), handler);
+                byAlias.put(javaType.getName(), handler);
+                byClass.put(javaType, handler);
+            }
+        }
+        handlers = byAlias;
+        handlersByClass = byClass;
+    }
+    /**
+     * Get entity handler.
+     * @param entityName entity alias or fully qualified class name.
+     * @return entity handler.
+     * @throws ResponseStatusException if entity is unknown.
+     */
+    public EntityHandler<?> getHandler(String entityName) {
+        EntityHandler<?> handler = handlers.get(entityName);
+        if (handler == null) {
+            throw new ResponseStatusException(HttpStatus.NOT_FOUND, "Unknown entity: " + entityName);
+        }
+        return handler;
+    }
+    /**
+     * Find entity handler.
+     * @param entityName entity alias or fully qualified class name.
+     * @return entity handler or null.
+     */
+    public EntityHandler<?> findHandler(String entityName) {
+        return handlers.get(entityName);
+    }
+    /**
+     * Get entity handler.
+     * @param <T> entity type.
+     * @param entityClass entity class.
+     * @return entity handler or null.
+     */
+    @SuppressWarnings("unchecked")
+    public <T extends DataModel> EntityHandler<T> getHandler(Class<T> entityClass) {
+        return (EntityHandler<T>) handlersByClass.get(entityClass);
+    }
+    /**
+     * @return all registered handlers.
+     */
+    public Collection<EntityHandler<?>> getHandlers() {
+        return Collections.unmodifiableCollection(handlersByClass.values());
+    }
+    // =========================================== PRIVATE ============================================================
+    private <T extends DataModel> EntityHandler<T> createHandler(EntityType<?> type, Class<T> entityClass) {
+        Class<?> idType = type.getIdType() != null ? type.getIdType().getJavaType() : Long.class;
+        return new EntityHandler<>(Introspector.decapitalize(type.getName()), entityClass, idType, mapper);
+    }
+}
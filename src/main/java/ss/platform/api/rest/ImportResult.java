@@ -0,0 +1,164 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Bulk import result.
+ * @author ss
+ */
+public class ImportResult {
+    // =========================================== FIELDS =============================================================
+    /** Rows read. */
+    private long rows;
+    /** Rows imported. */
+    private long imported;
+    /** Rows failed. */
+    private long failed;
+    /** Elapsed time, ms. */
+    private long elapsed;
+    /** Throughput, rows per second. */
+    private long rowsPerSecond;
+    /** Import was stopped by an unrecoverable input error. */
+    private boolean aborted;
+    /** Row errors (limited). */
+    private List<RowError> errors = new ArrayList<>();
+    // =========================================== SET & GET ==========================================================
+    /**
+     * @return the rows
+     */
+    public long getRows() {
+        return rows;
+    }
+    /**
+     * @param rows the rows to set
+     */
+    public void setRows(long rows) {
+        this.rows = rows;
+    }
+    /**
+     * @return the imported
+     */
+    public long getImported() {
+        return imported;
+    }
+    /**
+     * @param imported the imported to set
+     */
+    public void setImported(long imported) {
+        this.imported = imported;
+    }
+    /**
+     * @return the failed
+     */
+    public long getFailed() {
+        return failed;
+    }
+    /**
+     * @param failed the failed to set
+     */
+    public void setFailed(long failed) {
+        this.failed = failed;
+    }
+    /**
+     * @return the elapsed
+     */
+    public long getElapsed() {
+        return elapsed;
+    }
+    /**
+     * @param elapsed the elapsed to set
+     */
+    public void setElapsed(long elapsed) {
+        this.elapsed = elapsed;
+    }
+    /**
+     * @return the rowsPerSecond
+     */
+    public long getRowsPerSecond() {
+        return rowsPerSecond;
+    }
+    /**
+     * @param rowsPerSecond the rowsPerSecond to set
+     */
+    public void setRowsPerSecond(long rowsPerSecond) {
+        this.rowsPerSecond = rowsPerSecond;
+    }
+    /**
+     * @return the aborted
+     */
+    public boolean isAborted() {
+        return aborted;
+    }
+    /**
+     * @param aborted the aborted to set
+     */
+    public void setAborted(boolean aborted) {
+        this.aborted = aborted;
+    }
+    /**
+     * @return the errors
+     */
+    public List<RowError> getErrors() {
+        return errors;
+    }
+    /**
+     * @param errors the errors to set
+     */
+    public void setErrors(List<RowError> errors) {
+        this.errors = errors;
+    }
+    /**
+     * Row error.
+     */
+    public static class RowError {
+        /** Row number (1-based). */
+        private final long row;
+        /** Error message. */
+        private final String message;
+        /**
+         * Constructor.
+         * @param row row number.
+         * @param message error message.
+         */
+        public RowError(long row, String message) {
+            this.row = row;
+            this.message = message;
+        }
+        /**
+         * @return the row
+         */
+        public long getRow() {
+            return row;
+        }
+        /**
+         * @return the message
+         */
+        public String getMessage() {
+            return message;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import java.util.concurrent.RejectedExecutionException;
+import javax.servlet.http.HttpServletResponse;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ExceptionHandler;
+import org.springframework.web.bind.annotation.ResponseStatus;
+import org.springframework.web.bind.annotation.RestControllerAdvice;
+
+/**
+ * Maps client errors to REST responses.
+ * @author ss
+ */
+@RestControllerAdvice
+public class RESTExceptionHandler {
+    /**
+     * Invalid request parameters (filters, order, cursor).
+     * @param e error.
+     * @return error response.
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public RESTResponse handleBadRequest(IllegalArgumentException e) {
+        RESTResponse response = new RESTResponse(false, e.getMessage());
+        response.setCode(HttpStatus.BAD_REQUEST.name());
+        return response;
+    }
+    /**
+     * Malformed request body.
+     * @param e error.
+     * @return error response.
+     */
+    @ExceptionHandler(JsonProcessingException.class)
+    @ResponseStatus(HttpStatus.BAD_REQUEST)
+    public RESTResponse handleMalformedBody(JsonProcessingException e) {
+        RESTResponse response = new RESTResponse(false, e.getOriginalMessage());
+        response.setCode(HttpStatus.BAD_REQUEST.name());
+        return response;
+    }
+    /**
+     * Concurrent modification (stale entity version).
+     * @param e error.
+     * @return error response.
+     */
+    @ExceptionHandler(OptimisticLockingFailureException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public RESTResponse handleConflict(OptimisticLockingFailureException e) {
+        RESTResponse response = new RESTResponse(false, "Entity was modified concurrently");
+        response.setCode(HttpStatus.CONFLICT.name());
+        return response;
+    }
+    /**
+     * Write rejected by a database constraint (not null, unique, foreign key, column length).
+     * @param e error.
+     * @return error response.
+     */
+    @ExceptionHandler(DataIntegrityViolationException.class)
+    @ResponseStatus(HttpStatus.CONFLICT)
+    public RESTResponse handleIntegrityViolation(DataIntegrityViolationException e) {
+        // the driver message contains SQL and values, it is not returned
+        RESTResponse response = new RESTResponse(false, "Entity violates a database constraint");
+        response.setCode(HttpStatus.CONFLICT.name());
+        return response;
+    }
+    /**
+     * Database work was not admitted (executor queue is full or the queue wait is too long).
+     * @param e error.
+     * @param httpResponse HTTP response.
+     * @return error response.
+     */
+    @ExceptionHandler(RejectedExecutionException.class)
+    @ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+    public RESTResponse handleOverload(RejectedExecutionException e, HttpServletResponse httpResponse) {
+        httpResponse.setHeader(HttpHeaders.RETRY_AFTER, "1");
+        RESTResponse response = new RESTResponse(false, e.getMessage());
+        response.setCode(HttpStatus.SERVICE_UNAVAILABLE.name());
+        return response;
+    }
+}
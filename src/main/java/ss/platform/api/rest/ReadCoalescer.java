@@ -0,0 +1,176 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.annotation.PostConstruct;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import ss.platform.api.dao.EntityChangeCounter;
+import ss.platform.api.datasource.ReadYourWritesTracker;
+
+/**
+ * Single-flight coalescing of identical concurrent reads.
+ * The first caller of a key submits the read to the {@link DatabaseExecutor}; callers of the same key that arrive
+ * while it is in flight share its result or error instead of taking their own connection.
+ * Keys include the entity change count taken before the read, so a caller that arrives after a committed write
+ * starts a new read and never gets a result read before the write. Clients inside their read-your-writes window
+ * are not coalesced, their reads must go to the primary. A flight older than
+ * <code>platform.read-coalescing.max-join-ms</code> is not joined any more, so a hung read does not collect callers.
+ * Results are shared between callers and must be treated as read-only.
+ * Meters: <code>platform.read.coalescing</code> (tag <code>result</code>: <code>submitted</code>,
+ * <code>joined</code>) and <code>platform.read.coalescing.in.flight</code>.
+ * @author ss
+ */
+@Component
+public class ReadCoalescer {
+    /** Database executor. */
+    @Autowired
+    private DatabaseExecutor databaseExecutor;
+    /** Entity change counter. */
+    @Autowired
+    private EntityChangeCounter entityChangeCounter;
+    /** Read-your-writes tracker (only with replica routing). */
+    @Autowired
+    private ObjectProvider<ReadYourWritesTracker> readYourWritesTracker;
+    /** Meter registry. */
+    @Autowired
+    private ObjectProvider<MeterRegistry> meterRegistry;
+    /** Coalescing enabled. */
+    @Value("${platform.read-coalescing.enabled:true}")
+    private boolean enabled;
+    /** Max age of a flight that can be joined, ms. */
+    @Value("${platform.read-coalescing.max-join-ms:1000}")
+    private long maxJoin;
+    /** Reads in flight by key. */
+    private final Map<List<Object>, Flight> flights = new ConcurrentHashMap<>();
+    /** Reads submitted to the database. */
+    private final AtomicLong submitted = new AtomicLong();
+    /** Calls served by a read of another caller. */
+    private final AtomicLong joined = new AtomicLong();
+    /**
+     * Register meters.
+     */
+    @PostConstruct
+    protected void init() {
+        meterRegistry.ifAvailable((registry) -> {
+            FunctionCounter.builder("platform.read.coalescing", submitted, AtomicLong::get)
+                    .description("Coalescable reads by outcome").tag("result", "submitted").register(registry);
+            FunctionCounter.builder("platform.read.coalescing", joined, AtomicLong::get)
+                    .description("Coalescable reads by outcome").tag("result", "joined").register(registry);
+            Gauge.builder("platform.read.coalescing.in.flight", flights, Map::size)
+                    .description("Reads in flight that can be joined").register(registry);
+        });
+    }
+    /**
+     * Build read key.
+     * Take the key before the read: the entity change count makes reads started before a write distinct from
+     * reads started after it.
+     * @param cl entity class.
+     * @param parts read arguments (operation, ID, normalized request).
+     * @return key.
+     */
+    public List<Object> key(Class<?> cl, Object... parts) {
+        List<Object> key = new ArrayList<>(parts.length + 2);
+        key.add(cl);
+        key.add(entityChangeCounter.get(cl));
+        key.addAll(Arrays.asList(parts));
+        return key;
+    }
+    /**
+     * Execute read or join an identical read in flight.
+     * @param <T> result type.
+     * @param key read key.
+     * @param task database read.
+     * @return result future of this caller (completing it does not affect other callers).
+     */
+    @SuppressWarnings("unchecked")
+    public <T> CompletableFuture<T> submit(List<Object> key, Callable<T> task) {
+        if (!enabled || isRecentWriter()) {
+            submitted.incrementAndGet();
+            return databaseExecutor.submit(task);
+        }
+        while (true) {
+            Flight flight = flights.get(key);
+            if (flight != null && System.nanoTime() - flight.startedAt <= TimeUnit.MILLISECONDS.toNanos(maxJoin)) {
+                joined.incrementAndGet();
+                return follow((CompletableFuture<T>) flight.result);
+            }
+            Flight own = new Flight();
+            if (flight == null ? flights.putIfAbsent(key, own) == null : flights.replace(key, flight, own)) {
+                submitted.incrementAndGet();
+                databaseExecutor.submit(task).whenComplete((result, error) -> {
+                    flights.remove(key, own);
+                    if (error == null) {
+                        own.result.complete(result);
+                    } else {
+                        own.result.completeExceptionally(error);
+                    }
+                });
+                return follow((CompletableFuture<T>) own.result);
+            }
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private boolean isRecentWriter() {
+        ReadYourWritesTracker tracker = readYourWritesTracker.getIfAvailable();
+        return tracker != null && tracker.isRecentWriter();
+    }
+    /**
+     * Own future of a caller, so a caller that cancels or times out does not complete the shared result.
+     */
+    private static <T> CompletableFuture<T> follow(CompletableFuture<T> shared) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        shared.whenComplete((result, error) -> {
+            if (error == null) {
+                future.complete(result);
+            } else {
+                future.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+    /**
+     * Read in flight.
+     */
+    private static final class Flight {
+        /** Start time, ns. */
+        private final long startedAt = System.nanoTime();
+        /** Shared result. */
+        private final CompletableFuture<Object> result = new CompletableFuture<>();
+    }
+}
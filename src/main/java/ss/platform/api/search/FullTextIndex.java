@@ -0,0 +1,467 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.search;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.PriorityQueue;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory inverted index of one entity type.
+ * Documents are entity IDs with weighted text fields. Terms live in a sorted dictionary, so a query term also
+ * matches every indexed term it is a prefix of. Ranking is BM25 over the boosted field term frequencies.
+ * All query terms must match (AND). Deleted documents are tombstoned; posting lists are compacted when half of
+ * their entries are dead and document numbers are reassigned when most of the documents are dead. Every document
+ * keeps its entity version, so an older version never replaces a newer one.
+ * @author ss
+ */
+public class FullTextIndex {
+    /** BM25 term frequency saturation. */
+    private static final float K1 = 1.2f;
+    /** BM25 length normalization. */
+    private static final float B = 0.75f;
+    /** Weight of a prefix match relative to an exact term match. */
+    private static final float PREFIX_WEIGHT = 0.5f;
+    /** Initial document capacity. */
+    private static final int INITIAL_CAPACITY = 1024;
+    // =========================================== FIELDS =============================================================
+    /** Lock: searches share it, updates are exclusive. */
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    /** Term dictionary. */
+    private final TreeMap<String, Postings> terms = new TreeMap<>();
+    /** Document numbers by entity ID. */
+    private final Map<Long, Integer> docs = new HashMap<>();
+    /** Live documents. */
+    private final BitSet live = new BitSet();
+    /** Entity ID by document number. */
+    private long[] docIds = new long[INITIAL_CAPACITY];
+    /** Entity version by document number. */
+    private long[] docVersions = new long[INITIAL_CAPACITY];
+    /** Weighted length by document number. */
+    private float[] docLengths = new float[INITIAL_CAPACITY];
+    /** Posting lists of a document, used to remove it. */
+    private Postings[][] docPostings = new Postings[INITIAL_CAPACITY][];
+    /** Next document number. */
+    private int maxDoc;
+    /** Live document count. */
+    private int liveDocs;
+    /** Total weighted length of live documents. */
+    private double totalLength;
+    /** Max dictionary terms a query term prefix expands to. */
+    private final int maxExpansions;
+    /** Reusable search buffers. */
+    private final BlockingQueue<Scratch> scratches = new ArrayBlockingQueue<>(
+            Runtime.getRuntime().availableProcessors());
+    // =========================================== ACTIONS ============================================================
+    /**
+     * Constructor.
+     * @param maxExpansions max dictionary terms a query term prefix expands to.
+     */
+    public FullTextIndex(int maxExpansions) {
+        this.maxExpansions = maxExpansions;
+    }
+    /**
+     * Split text to lower case terms (letters and digits).
+     * @param text text.
+     * @return terms.
+     */
+    public static List<String> tokenize(String text) {
+        List<String> tokens = new ArrayList<>();
+        if (text == null) {
+            return tokens;
+        }
+        int start = -1;
+        for (int i = 0; i <= text.length(); i++) {
+            boolean tokenChar = i < text.length() && Character.isLetterOrDigit(text.charAt(i));
+            if (tokenChar && start < 0) {
+                start = i;
+            } else if (!tokenChar && start >= 0) {
+                tokens.add(text.substring(start, i).toLowerCase());
+                start = -1;
+            }
+        }
+        return tokens;
+    }
+    /**
+     * Add or replace document.
+     * @param id entity ID.
+     * @param version entity version.
+     * @param fields field values.
+     * @param boosts field boosts.
+     * @return false if a newer version of the document is indexed (the index is not changed).
+     */
+    public boolean put(long id, long version, String[] fields, float[] boosts) {
+        Map<String, float[]> frequencies = new HashMap<>();
+        float length = 0;
+        for (int i = 0; i < fields.length; i++) {
+            for (String token : tokenize(fields[i])) {
+                frequencies.computeIfAbsent(token, (k) -> new float[1])[0] += boosts[i];
+                length += boosts[i];
+            }
+        }
+        lock.writeLock().lock();
+        try {
+            Integer current = docs.get(id);
+            if (current != null && docVersions[current] > version) {
+                return false;
+            }
+            removeDocument(id);
+            renumberIfSparse();
+            int doc = maxDoc++;
+            ensureCapacity(maxDoc);
+            Postings[] postings = new Postings[frequencies.size()];
+            int i = 0;
+            for (Map.Entry<String, float[]> entry : frequencies.entrySet()) {
+                Postings p = terms.computeIfAbsent(entry.getKey(), Postings::new);
+                p.add(doc, entry.getValue()[0]);
+                postings[i++] = p;
+            }
+            docIds[doc] = id;
+            docVersions[doc] = version;
+            docLengths[doc] = length;
+            docPostings[doc] = postings;
+            docs.put(id, doc);
+            live.set(doc);
+            liveDocs++;
+            totalLength += length;
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    /**
+     * Remove document.
+     * @param id entity ID.
+     */
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeDocument(id);
+            renumberIfSparse();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    /**
+     * Remove all documents.
+     */
+    public void clear() {
+        lock.writeLock().lock();
+        try {
+            terms.clear();
+            docs.clear();
+            live.clear();
+            docIds = new long[INITIAL_CAPACITY];
+            docVersions = new long[INITIAL_CAPACITY];
+            docLengths = new float[INITIAL_CAPACITY];
+            docPostings = new Postings[INITIAL_CAPACITY][];
+            maxDoc = 0;
+            liveDocs = 0;
+            totalLength = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+    /**
+     * @return number of documents.
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return liveDocs;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    /**
+     * Search documents.
+     * @param query query text.
+     * @param limit max returned IDs.
+     * @return hits, best first.
+     */
+    public SearchHits search(String query, int limit) {
+        List<String> tokens = tokenize(query);
+        if (tokens.isEmpty() || limit <= 0) {
+            return SearchHits.EMPTY;
+        }
+        lock.readLock().lock();
+        try {
+            if (liveDocs == 0) {
+                return SearchHits.EMPTY;
+            }
+            Scratch scratch = borrowScratch(maxDoc);
+            try {
+                return search(tokens, limit, scratch);
+            } finally {
+                scratch.reset();
+                scratches.offer(scratch);
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private SearchHits search(List<String> tokens, int limit, Scratch scratch) {
+        float avgLength = (float) Math.max(totalLength / liveDocs, 1);
+        int[] matched = scratch.matched;
+        float[] scores = scratch.scores;
+        for (int i = 0; i < tokens.size(); i++) {
+            String token = tokens.get(i);
+            boolean any = false;
+            Postings exact = terms.get(token);
+            if (exact != null) {
+                any |= score(exact, 1f, i, avgLength, scratch);
+            }
+            int expansions = 0;
+            NavigableMap<String, Postings> prefixed = terms.subMap(token, false, token + Character.MAX_VALUE, false);
+            for (Postings p : prefixed.values()) {
+                if (expansions++ >= maxExpansions) {
+                    break;
+                }
+                any |= score(p, PREFIX_WEIGHT, i, avgLength, scratch);
+            }
+            if (!any) {
+                return new SearchHits(new long[0], new float[0], 0);
+            }
+        }
+        // top documents matching every token
+        int total = 0;
+        PriorityQueue<Integer> top = new PriorityQueue<>(Math.min(limit, 1024) + 1,
+                (a, b) -> Float.compare(scores[a], scores[b]));
+        for (int j = 0; j < scratch.touchedSize; j++) {
+            int doc = scratch.touched[j];
+            if (matched[doc] == tokens.size()) {
+                total++;
+                if (top.size() < limit) {
+                    top.add(doc);
+                } else if (scores[doc] > scores[top.peek()]) {
+                    top.poll();
+                    top.add(doc);
+                }
+            }
+        }
+        long[] ids = new long[top.size()];
+        float[] topScores = new float[top.size()];
+        for (int j = ids.length - 1; j >= 0; j--) {
+            int doc = top.poll();
+            ids[j] = docIds[doc];
+            topScores[j] = scores[doc];
+        }
+        return new SearchHits(ids, topScores, total);
+    }
+    /**
+     * Add BM25 contribution of a posting list for the query token with the given position.
+     * @return true if any candidate document matched.
+     */
+    private boolean score(Postings p, float weight, int position, float avgLength, Scratch scratch) {
+        float idf = (float) Math.log(1 + (liveDocs - p.live + 0.5) / (p.live + 0.5));
+        int[] matched = scratch.matched;
+        boolean any = false;
+        for (int j = 0; j < p.size; j++) {
+            int doc = p.docs[j];
+            if (!live.get(doc)) {
+                continue;
+            }
+            if (matched[doc] == position) {
+                if (position == 0) {
+                    scratch.touch(doc);
+                }
+                matched[doc] = position + 1;
+            } else if (matched[doc] != position + 1) {
+                continue;
+            }
+            float tf = p.frequencies[j];
+            scratch.scores[doc] += weight * idf * tf * (K1 + 1)
+                    / (tf + K1 * (1 - B + B * docLengths[doc] / avgLength));
+            any = true;
+        }
+        return any;
+    }
+    private Scratch borrowScratch(int capacity) {
+        Scratch scratch = scratches.poll();
+        if (scratch == null || scratch.scores.length < capacity) {
+            scratch = new Scratch(Math.max(capacity, INITIAL_CAPACITY) * 5 / 4);
+        }
+        return scratch;
+    }
+    private void removeDocument(long id) {
+        Integer doc = docs.remove(id);
+        if (doc == null) {
+            return;
+        }
+        live.clear(doc);
+        liveDocs--;
+        totalLength -= docLengths[doc];
+        for (Postings p : docPostings[doc]) {
+            p.live--;
+            if (p.live == 0) {
+                terms.remove(p.term);
+            } else if (p.live * 2 < p.size) {
+                p.compact(live);
+            }
+        }
+        docPostings[doc] = null;
+    }
+    private void ensureCapacity(int capacity) {
+        if (capacity > docIds.length) {
+            int newCapacity = Math.max(capacity, docIds.length * 2);
+            docIds = Arrays.copyOf(docIds, newCapacity);
+            docVersions = Arrays.copyOf(docVersions, newCapacity);
+            docLengths = Arrays.copyOf(docLengths, newCapacity);
+            docPostings = Arrays.copyOf(docPostings, newCapacity);
+        }
+    }
+    /**
+     * Reassign document numbers of live documents when most numbers are dead, so they do not hold memory.
+     */
+    private void renumberIfSparse() {
+        if (maxDoc <= INITIAL_CAPACITY || maxDoc <= 2 * liveDocs) {
+            return;
+        }
+        int[] mapping = new int[maxDoc];
+        int next = 0;
+        for (int doc = live.nextSetBit(0); doc >= 0; doc = live.nextSetBit(doc + 1)) {
+            mapping[doc] = next;
+            docIds[next] = docIds[doc];
+            docVersions[next] = docVersions[doc];
+            docLengths[next] = docLengths[doc];
+            docPostings[next] = docPostings[doc];
+            docs.put(docIds[next], next);
+            next++;
+        }
+        for (Postings p : terms.values()) {
+            p.compact(live);
+            for (int j = 0; j < p.size; j++) {
+                p.docs[j] = mapping[p.docs[j]];
+            }
+        }
+        Arrays.fill(docPostings, next, maxDoc, null);
+        live.clear();
+        live.set(0, next);
+        maxDoc = next;
+    }
+    /**
+     * Posting list of a term.
+     */
+    private static class Postings {
+        /** Term. */
+        private final String term;
+        /** Document numbers (ascending). */
+        private int[] docs = new int[4];
+        /** Weighted term frequencies. */
+        private float[] frequencies = new float[4];
+        /** Entries. */
+        private int size;
+        /** Live entries. */
+        private int live;
+        /**
+         * Constructor.
+         * @param term term.
+         */
+        Postings(String term) {
+            this.term = term;
+        }
+        /**
+         * Append document.
+         * @param doc document number.
+         * @param frequency weighted term frequency.
+         */
+        void add(int doc, float frequency) {
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+        }
+        /**
+         * Drop dead documents.
+         * @param liveDocs live documents.
+         */
+        void compact(BitSet liveDocs) {
+            int n = 0;
+            for (int j = 0; j < size; j++) {
+                if (liveDocs.get(docs[j])) {
+                    docs[n] = docs[j];
+                    frequencies[n] = frequencies[j];
+                    n++;
+                }
+            }
+            size = n;
+            live = n;
+        }
+    }
+    /**
+     * Per-search buffers indexed by document number.
+     */
+    private static class Scratch {
+        /** Scores. */
+        private final float[] scores;
+        /** Number of matched query tokens. */
+        private final int[] matched;
+        /** Documents matched by the first token. */
+        private int[] touched = new int[256];
+        /** Touched count. */
+        private int touchedSize;
+        /**
+         * Constructor.
+         * @param capacity document capacity.
+         */
+        Scratch(int capacity) {
+            scores = new float[capacity];
+            matched = new int[capacity];
+        }
+        /**
+         * Remember document to reset.
+         * @param doc document number.
+         */
+        void touch(int doc) {
+            if (touchedSize == touched.length) {
+                touched = Arrays.copyOf(touched, touchedSize * 2);
+            }
+            touched[touchedSize++] = doc;
+        }
+        /**
+         * Reset touched documents.
+         */
+        void reset() {
+            for (int j = 0; j < touchedSize; j++) {
+                scores[touched[j]] = 0;
+                matched[touched[j]] = 0;
+            }
+            touchedSize = 0;
+        }
+    }
+}
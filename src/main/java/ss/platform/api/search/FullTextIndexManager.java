@@ -0,0 +1,260 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.search;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.Serializable;
+import java.lang.reflect.Field;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import javax.persistence.metamodel.EntityType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.util.ReflectionUtils;
+import ss.platform.api.dao.CoreDAO;
+import ss.platform.api.dao.DataModel;
+import ss.platform.api.dao.EntityChangeEvent;
+import ss.platform.api.dao.EntitySearchRequest;
+
+/**
+ * Full-text indexes of entities with {@link FullText} fields.
+ * Indexes are rebuilt from the database at startup (before the web server accepts requests) and updated
+ * incrementally after commit of every write made through {@link CoreDAO}. Changes of one entity are applied
+ * under a striped lock keyed by its ID and carry the entity version, so listeners of the same entity running on
+ * different threads never interleave and an older version never replaces a newer one.
+ * @author ss
+ */
+@Component
+public class FullTextIndexManager implements SmartInitializingSingleton {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(FullTextIndexManager.class);
+    /** Entity manager factory. */
+    @Autowired
+    private EntityManagerFactory emf;
+    /** Core DAO (lazy, it depends on this manager). */
+    @Autowired
+    private ObjectProvider<CoreDAO> coreDAO;
+    /** Max dictionary terms a query term prefix expands to. */
+    @Value("${platform.search.full-text.max-expansions:64}")
+    private int maxExpansions;
+    /** Indexed entities. */
+    private final Map<Class<?>, IndexedEntity> indexes = new ConcurrentHashMap<>();
+    /** Lock stripes. */
+    private final ReentrantLock[] stripes;
+    /**
+     * Constructor.
+     * @param stripes number of lock stripes (rounded up to a power of two).
+     */
+    public FullTextIndexManager(@Value("${platform.search.full-text.lock-stripes:64}") int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+    @Override
+    public void afterSingletonsInstantiated() {
+        for (EntityType<?> type : emf.getMetamodel().getEntities()) {
+            Class<?> cl = type.getJavaType();
+            if (cl == null || !DataModel.class.isAssignableFrom(cl)) {
+                continue;
+            }
+            List<Field> fields = new ArrayList<>();
+            List<Float> boosts = new ArrayList<>();
+            ReflectionUtils.doWithFields(cl, (field) -> {
+                ReflectionUtils.makeAccessible(field);
+                fields.add(field);
+                boosts.add(field.getAnnotation(FullText.class).boost());
+            }, (field) -> field.isAnnotationPresent(FullText.class) && field.getType() == String.class);
+            if (!fields.isEmpty()) {
+                indexes.put(cl, new IndexedEntity(new FullTextIndex(maxExpansions), fields, boosts));
+                rebuild(cl.asSubclass(DataModel.class));
+            }
+        }
+    }
+    /**
+     * Is entity indexed.
+     * @param cl entity class.
+     * @return true if entity has full-text fields.
+     */
+    public boolean isIndexed(Class<?> cl) {
+        return indexes.containsKey(cl);
+    }
+    /**
+     * Search entities.
+     * @param cl entity class.
+     * @param query query text.
+     * @param limit max returned IDs.
+     * @return hits, best first.
+     * @throws IllegalArgumentException if entity has no full-text fields.
+     */
+    public SearchHits search(Class<?> cl, String query, int limit) {
+        IndexedEntity indexed = indexes.get(cl);
+        if (indexed == null) {
+            throw new IllegalArgumentException("Full-text search is not supported for " + cl.getSimpleName());
+        }
+        return indexed.index.search(query, limit);
+    }
+    /**
+     * Rebuild entity index from the database.
+     * @param <T> entity type.
+     * @param cl entity class.
+     */
+    public <T extends DataModel> void rebuild(Class<T> cl) {
+        IndexedEntity indexed = indexes.get(cl);
+        if (indexed == null) {
+            return;
+        }
+        long start = System.currentTimeMillis();
+        indexed.index.clear();
+        try {
+            coreDAO.getObject().scrollEntities(cl, new EntitySearchRequest(), indexed::put);
+        } catch (Exception e) {
+            throw new IllegalStateException("Full-text index rebuild failed: " + cl.getName(), e);
+        }
+        LOG.info("Full-text index " + cl.getSimpleName() + ": " + indexed.index.size() + " documents, "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+    /**
+     * Apply committed entity changes.
+     * @param event entity change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(EntityChangeEvent.ORDER_INDEX)
+    public void onEntityChange(EntityChangeEvent event) {
+        IndexedEntity indexed = indexes.get(event.getEntityClass());
+        if (indexed == null) {
+            return;
+        }
+        if (event.getType() == EntityChangeEvent.ChangeType.DELETE) {
+            event.getIds().forEach((id) -> remove(indexed, ((Number) id).longValue()));
+        } else if (!event.getEntities().isEmpty()) {
+            event.getEntities().forEach((entity) -> put(indexed, entity));
+        } else {
+            // the write did not load the entities: read the committed rows, not the write's persistence context
+            EntityManager reader = emf.createEntityManager();
+            try {
+                for (Serializable id : event.getIds()) {
+                    ReentrantLock lock = stripe(((Number) id).longValue());
+                    lock.lock();
+                    try {
+                        DataModel entity = reader.find(event.getEntityClass(), id);
+                        if (entity == null) {
+                            remove(indexed, ((Number) id).longValue());
+                        } else {
+                            put(indexed, entity);
+                        }
+                    } finally {
+                        lock.unlock();
+                    }
+                }
+            } finally {
+                reader.close();
+            }
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private void put(IndexedEntity indexed, DataModel entity) {
+        ReentrantLock lock = stripe(entity.getId());
+        lock.lock();
+        try {
+            if (indexed.deleted.getIfPresent(entity.getId()) == null) {
+                indexed.put(entity);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    private void remove(IndexedEntity indexed, long id) {
+        ReentrantLock lock = stripe(id);
+        lock.lock();
+        try {
+            // a put of an earlier write may still be running on another thread
+            indexed.deleted.put(id, Boolean.TRUE);
+            indexed.index.remove(id);
+        } finally {
+            lock.unlock();
+        }
+    }
+    private ReentrantLock stripe(long id) {
+        int hash = Long.hashCode(id);
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+    /**
+     * Indexed entity.
+     */
+    private static class IndexedEntity {
+        /** Index. */
+        private final FullTextIndex index;
+        /** Indexed fields. */
+        private final Field[] fields;
+        /** Field boosts. */
+        private final float[] boosts;
+        /** Recently deleted IDs, so a late listener of an earlier write does not index them again. */
+        private final Cache<Long, Boolean> deleted = Caffeine.newBuilder()
+                .expireAfterWrite(Duration.ofMinutes(1)).build();
+        /**
+         * Constructor.
+         * @param index index.
+         * @param fields indexed fields.
+         * @param boosts field boosts.
+         */
+        IndexedEntity(FullTextIndex index, List<Field> fields, List<Float> boosts) {
+            this.index = index;
+            this.fields = fields.toArray(new Field[0]);
+            this.boosts = new float[boosts.size()];
+            for (int i = 0; i < this.boosts.length; i++) {
+                this.boosts[i] = boosts.get(i);
+            }
+        }
+        /**
+         * Index entity.
+         * @param entity entity.
+         */
+        void put(DataModel entity) {
+            String[] values = new String[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                values[i] = (String) ReflectionUtils.getField(fields[i], entity);
+            }
+            index.put(entity.getId(), entity.getVersion() == null ? 0 : entity.getVersion(), values, boosts);
+        }
+    }
+}
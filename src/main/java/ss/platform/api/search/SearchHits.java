@@ -0,0 +1,71 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.search;
+
+/**
+ * Full-text search hits, ranked by relevance.
+ * @author ss
+ */
+public class SearchHits {
+    /** Empty hits. */
+    static final SearchHits EMPTY = new SearchHits(new long[0], new float[0], 0);
+    // =========================================== FIELDS =============================================================
+    /** Entity IDs, best first. */
+    private final long[] ids;
+    /** Scores. */
+    private final float[] scores;
+    /** Total matched documents (may exceed the number of returned IDs). */
+    private final int total;
+    // =========================================== ACTIONS ============================================================
+    /**
+     * Constructor.
+     * @param ids entity IDs.
+     * @param scores scores.
+     * @param total total matched documents.
+     */
+    SearchHits(long[] ids, float[] scores, int total) {
+        this.ids = ids;
+        this.scores = scores;
+        this.total = total;
+    }
+    // =========================================== SET & GET ==========================================================
+    /**
+     * @return the ids
+     */
+    public long[] getIds() {
+        return ids;
+    }
+    /**
+     * @return the scores
+     */
+    public float[] getScores() {
+        return scores;
+    }
+    /**
+     * @return the total
+     */
+    public int getTotal() {
+        return total;
+    }
+}
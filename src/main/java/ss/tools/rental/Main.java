@@ -25,12 +25,14 @@ package ss.tools.rental;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.EnableAutoConfiguration;
+import org.springframework.context.annotation.ComponentScan;
 
 /**
  * Entry point.
  * @author alex
  */
 @EnableAutoConfiguration
+@ComponentScan({"ss.platform", "ss.tools.rental"})
 public class Main {
 
     /**
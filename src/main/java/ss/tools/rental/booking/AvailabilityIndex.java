@@ -0,0 +1,263 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.booking;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.io.Serializable;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import javax.persistence.EntityManager;
+import javax.persistence.PersistenceContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.SmartInitializingSingleton;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.event.TransactionalEventListener;
+import org.springframework.transaction.support.TransactionTemplate;
+import ss.platform.api.dao.CoreDAO;
+import ss.platform.api.dao.EntityChangeEvent;
+import ss.platform.api.dao.EntitySearchRequest;
+import ss.tools.rental.model.Rental;
+import ss.tools.rental.model.Tool;
+
+/**
+ * In-memory availability index: one {@link IntervalTree} of rentals per tool.
+ * Loaded from the database at startup and updated incrementally after commit of every rental and tool write
+ * made through {@link CoreDAO}. Queries read an immutable tree snapshot and never lock.
+ * @author alex
+ */
+@Component
+public class AvailabilityIndex implements SmartInitializingSingleton {
+    /** Logger. */
+    private static final Logger LOG = LoggerFactory.getLogger(AvailabilityIndex.class);
+    /** Core DAO. */
+    @Autowired
+    private CoreDAO coreDAO;
+    /** Entity manager. */
+    @PersistenceContext
+    private EntityManager em;
+    /** Transaction manager. */
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+    /** Rental trees by tool ID. */
+    private final Map<Long, ToolRentals> tools = new ConcurrentHashMap<>();
+    /** Indexed rentals by ID (to move or remove a rental on update / delete). */
+    private final Map<Long, Indexed> rentals = new ConcurrentHashMap<>();
+    /** Recently deleted rental IDs, so a late listener of an earlier write does not index them again. */
+    private final Cache<Long, Boolean> deleted = Caffeine.newBuilder()
+            .expireAfterWrite(Duration.ofMinutes(1)).build();
+    /** IDs of all tools. */
+    private final NavigableSet<Long> toolIds = new ConcurrentSkipListSet<>();
+    @Override
+    public void afterSingletonsInstantiated() {
+        long start = System.currentTimeMillis();
+        // read-write transaction: load from the primary database, replicas may lag
+        new TransactionTemplate(transactionManager).executeWithoutResult((status) -> {
+            try {
+                coreDAO.scrollEntities(Tool.class, new EntitySearchRequest(), (tool) -> toolIds.add(tool.getId()));
+                coreDAO.scrollEntities(Rental.class, new EntitySearchRequest(), this::put);
+            } catch (Exception e) {
+                throw new IllegalStateException("Availability index load failed", e);
+            }
+        });
+        LOG.info("Availability index: " + toolIds.size() + " tools, " + rentals.size() + " rentals, "
+                + (System.currentTimeMillis() - start) + " ms");
+    }
+    /**
+     * Is tool free for the whole period.
+     * @param toolId tool ID.
+     * @param from period start (inclusive).
+     * @param to period end (exclusive).
+     * @return true if no rental of the tool overlaps the period.
+     */
+    public boolean isAvailable(long toolId, LocalDateTime from, LocalDateTime to) {
+        ToolRentals toolRentals = tools.get(toolId);
+        return toolRentals == null || !toolRentals.tree.overlaps(millis(from), millis(to));
+    }
+    /**
+     * Find tools free for the whole period.
+     * @param candidates candidate tool IDs, null for all tools.
+     * @param from period start (inclusive).
+     * @param to period end (exclusive).
+     * @param limit max returned IDs.
+     * @return free tool IDs, in candidate order (ascending for all tools).
+     */
+    public List<Long> findAvailable(Collection<Long> candidates, LocalDateTime from, LocalDateTime to, int limit) {
+        long fromMillis = millis(from);
+        long toMillis = millis(to);
+        List<Long> available = new ArrayList<>();
+        for (Long toolId : candidates != null ? candidates : toolIds) {
+            if (available.size() >= limit) {
+                break;
+            }
+            ToolRentals toolRentals = tools.get(toolId);
+            if ((toolRentals == null || !toolRentals.tree.overlaps(fromMillis, toMillis))
+                    && (candidates == null || toolIds.contains(toolId))) {
+                available.add(toolId);
+            }
+        }
+        return available;
+    }
+    /**
+     * Find rentals of a tool overlapping the period.
+     * @param toolId tool ID.
+     * @param from period start (inclusive).
+     * @param to period end (exclusive).
+     * @return overlapping bookings, by start.
+     */
+    public List<Booking> findOverlapping(long toolId, LocalDateTime from, LocalDateTime to) {
+        List<Booking> bookings = new ArrayList<>();
+        ToolRentals toolRentals = tools.get(toolId);
+        if (toolRentals != null) {
+            toolRentals.tree.forEachOverlap(millis(from), millis(to),
+                    (start, end, id) -> bookings.add(new Booking(id, toolId, dateTime(start), dateTime(end))));
+        }
+        return bookings;
+    }
+    /**
+     * Apply committed rental and tool changes.
+     * @param event entity change event.
+     */
+    @TransactionalEventListener(fallbackExecution = true)
+    @Order(EntityChangeEvent.ORDER_INDEX)
+    public void onEntityChange(EntityChangeEvent event) {
+        if (event.getEntityClass() == Tool.class) {
+            event.getIds().forEach((id) -> {
+                if (event.getType() == EntityChangeEvent.ChangeType.DELETE) {
+                    toolIds.remove(((Number) id).longValue());
+                } else {
+                    toolIds.add(((Number) id).longValue());
+                }
+            });
+        } else if (event.getEntityClass() == Rental.class) {
+            if (event.getType() == EntityChangeEvent.ChangeType.DELETE) {
+                event.getIds().forEach((id) -> remove(((Number) id).longValue()));
+            } else if (!event.getEntities().isEmpty()) {
+                event.getEntities().forEach((rental) -> put((Rental) rental));
+            } else {
+                // the write did not load the entities
+                for (Serializable id : event.getIds()) {
+                    Rental rental = em.find(Rental.class, id);
+                    if (rental == null) {
+                        remove(((Number) id).longValue());
+                    } else {
+                        put(rental);
+                    }
+                }
+            }
+        }
+    }
+    /**
+     * @return number of indexed rentals.
+     */
+    public int size() {
+        return rentals.size();
+    }
+    // =========================================== PRIVATE ============================================================
+    /**
+     * Index or re-index a rental. The rental entry is updated under its map lock, so listeners of the same
+     * rental running on different threads never interleave, and an older version never replaces a newer one.
+     */
+    private void put(Rental rental) {
+        long version = rental.getVersion() == null ? 0 : rental.getVersion();
+        rentals.compute(rental.getId(), (id, indexed) -> {
+            if (deleted.getIfPresent(id) != null || (indexed != null && indexed.version > version)) {
+                return indexed;
+            }
+            if (indexed != null) {
+                unindex(indexed.booking);
+            }
+            if (rental.getToolId() == null || rental.getStart() == null || rental.getEnd() == null) {
+                return null;
+            }
+            Booking booking = new Booking(id, rental.getToolId(), rental.getStart(), rental.getEnd());
+            ToolRentals toolRentals = tools.computeIfAbsent(booking.getToolId(), (toolId) -> new ToolRentals());
+            synchronized (toolRentals) {
+                toolRentals.tree = toolRentals.tree.insert(millis(booking.getStart()), millis(booking.getEnd()),
+                        id);
+            }
+            return new Indexed(booking, version);
+        });
+    }
+    private void remove(long rentalId) {
+        // a put of an earlier write may still be running on another thread
+        deleted.put(rentalId, Boolean.TRUE);
+        rentals.computeIfPresent(rentalId, (id, indexed) -> {
+            unindex(indexed.booking);
+            return null;
+        });
+    }
+    private void unindex(Booking booking) {
+        ToolRentals toolRentals = tools.get(booking.getToolId());
+        if (toolRentals != null) {
+            synchronized (toolRentals) {
+                toolRentals.tree = toolRentals.tree.remove(millis(booking.getStart()), booking.getRentalId());
+            }
+        }
+    }
+    private static long millis(LocalDateTime dateTime) {
+        return dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+    private static LocalDateTime dateTime(long millis) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(millis), ZoneOffset.UTC);
+    }
+    /**
+     * Indexed rental.
+     */
+    private static class Indexed {
+        /** Indexed period. */
+        private final Booking booking;
+        /** Rental version. */
+        private final long version;
+        /**
+         * Constructor.
+         * @param booking indexed period.
+         * @param version rental version.
+         */
+        Indexed(Booking booking, long version) {
+            this.booking = booking;
+            this.version = version;
+        }
+    }
+    /**
+     * Rentals of one tool.
+     */
+    private static class ToolRentals {
+        /** Current tree, replaced on every write. */
+        private volatile IntervalTree tree = IntervalTree.EMPTY;
+    }
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.booking;
+
+import java.time.LocalDateTime;
+
+/**
+ * Indexed rental period of a tool.
+ * @author alex
+ */
+public class Booking {
+    /** Rental ID. */
+    private final Long rentalId;
+    /** Tool ID. */
+    private final Long toolId;
+    /** Start (inclusive). */
+    private final LocalDateTime start;
+    /** End (exclusive). */
+    private final LocalDateTime end;
+    /**
+     * Constructor.
+     * @param rentalId rental ID.
+     * @param toolId tool ID.
+     * @param start start (inclusive).
+     * @param end end (exclusive).
+     */
+    public Booking(Long rentalId, Long toolId, LocalDateTime start, LocalDateTime end) {
+        this.rentalId = rentalId;
+        this.toolId = toolId;
+        this.start = start;
+        this.end = end;
+    }
+    /**
+     * @return the rentalId
+     */
+    public Long getRentalId() {
+        return rentalId;
+    }
+    /**
+     * @return the toolId
+     */
+    public Long getToolId() {
+        return toolId;
+    }
+    /**
+     * @return the start
+     */
+    public LocalDateTime getStart() {
+        return start;
+    }
+    /**
+     * @return the end
+     */
+    public LocalDateTime getEnd() {
+        return end;
+    }
+}
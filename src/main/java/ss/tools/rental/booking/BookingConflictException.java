@@ -0,0 +1,52 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.booking;
+
+import org.springframework.http.HttpStatus;
+import org.springframework.web.server.ResponseStatusException;
+
+/**
+ * Tool is already rented in the requested period (HTTP 409).
+ * @author alex
+ */
+public class BookingConflictException extends ResponseStatusException {
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+    /** Tool ID. */
+    private final Long toolId;
+    /**
+     * Constructor.
+     * @param toolId tool ID.
+     */
+    public BookingConflictException(Long toolId) {
+        super(HttpStatus.CONFLICT, "Tool is already rented in this period: " + toolId);
+        this.toolId = toolId;
+    }
+    /**
+     * @return the toolId
+     */
+    public Long getToolId() {
+        return toolId;
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.booking;
+
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import ss.tools.rental.dao.RentalDAO;
+import ss.tools.rental.model.Rental;
+
+/**
+ * Booking service: check-then-insert of rentals under striped in-process locks keyed by tool ID.
+ * Only bookings of tools sharing a stripe wait for each other; the database is not locked. Bookings made by other
+ * nodes are caught by the optimistic tool version check of {@link RentalDAO#book(Rental)} and retried.
+ * @author alex
+ */
+@Component
+public class BookingService {
+    /** Rental DAO. */
+    @Autowired
+    private RentalDAO rentalDAO;
+    /** Availability index. */
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+    /** Max wait for a stripe lock, milliseconds. */
+    @Value("${rental.booking.lock-timeout-ms:5000}")
+    private long lockTimeoutMs;
+    /** Attempts on optimistic locking failures (concurrent bookings from other nodes). */
+    @Value("${rental.booking.max-attempts:3}")
+    private int maxAttempts;
+    /** Lock stripes. */
+    private final ReentrantLock[] stripes;
+    /**
+     * Constructor.
+     * @param stripes number of lock stripes (rounded up to a power of two).
+     */
+    public BookingService(@Value("${rental.booking.lock-stripes:256}") int stripes) {
+        int size = 1;
+        while (size < stripes) {
+            size <<= 1;
+        }
+        this.stripes = new ReentrantLock[size];
+        for (int i = 0; i < this.stripes.length; i++) {
+            this.stripes[i] = new ReentrantLock();
+        }
+    }
+    /**
+     * Book a tool.
+     * @param rental new rental (tool ID, start, end, customer).
+     * @return created rental.
+     * @throws IllegalArgumentException if rental is invalid or tool does not exist.
+     * @throws BookingConflictException if the tool is already rented in the period.
+     * @throws RejectedExecutionException if the tool lock was not acquired in time.
+     */
+    public Rental book(Rental rental) {
+        if (rental.getToolId() == null || rental.getStart() == null || rental.getEnd() == null
+                || rental.getCustomer() == null) {
+            throw new IllegalArgumentException("Tool, start, end and customer are required");
+        }
+        if (!rental.getStart().isBefore(rental.getEnd())) {
+            throw new IllegalArgumentException("Rental start must be before its end");
+        }
+        // fast rejection without locking, the index is updated after commit of every booking
+        if (!availabilityIndex.isAvailable(rental.getToolId(), rental.getStart(), rental.getEnd())) {
+            throw new BookingConflictException(rental.getToolId());
+        }
+        ReentrantLock lock = stripe(rental.getToolId());
+        try {
+            if (!lock.tryLock(lockTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new RejectedExecutionException("Tool is busy: " + rental.getToolId());
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RejectedExecutionException("Interrupted while waiting for tool: " + rental.getToolId());
+        }
+        try {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    return rentalDAO.book(rental);
+                } catch (OptimisticLockingFailureException e) {
+                    if (attempt >= maxAttempts) {
+                        throw e;
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private ReentrantLock stripe(Long toolId) {
+        int hash = toolId.hashCode();
+        return stripes[(hash ^ (hash >>> 16)) & (stripes.length - 1)];
+    }
+}
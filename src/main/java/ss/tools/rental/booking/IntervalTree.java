@@ -0,0 +1,274 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.booking;
+
+/**
+ * Immutable augmented interval tree (AVL tree ordered by interval start, every node keeps the max end of its
+ * subtree). Updates return a new tree sharing all untouched nodes, so readers never lock.
+ * Intervals are half-open: <code>[start, end)</code>.
+ * Overlap queries take O(log n + k) for k reported intervals.
+ * @author alex
+ */
+public final class IntervalTree {
+    /** Empty tree. */
+    public static final IntervalTree EMPTY = new IntervalTree(null);
+    /**
+     * Interval visitor.
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        /**
+         * Visit interval.
+         * @param start interval start.
+         * @param end interval end.
+         * @param id interval ID.
+         */
+        void visit(long start, long end, long id);
+    }
+    /** Root node. */
+    private final Node root;
+    /**
+     * Constructor.
+     * @param root root node.
+     */
+    private IntervalTree(Node root) {
+        this.root = root;
+    }
+    /**
+     * Add interval.
+     * @param start interval start.
+     * @param end interval end.
+     * @param id interval ID (unique within the tree).
+     * @return new tree.
+     */
+    public IntervalTree insert(long start, long end, long id) {
+        return new IntervalTree(insert(root, start, end, id));
+    }
+    /**
+     * Remove interval.
+     * @param start interval start.
+     * @param id interval ID.
+     * @return new tree (this tree if interval is absent).
+     */
+    public IntervalTree remove(long start, long id) {
+        Node updated = remove(root, start, id);
+        return updated == root ? this : new IntervalTree(updated);
+    }
+    /**
+     * Does any interval overlap <code>[from, to)</code>.
+     * @param from range start.
+     * @param to range end.
+     * @return true if an interval overlaps.
+     */
+    public boolean overlaps(long from, long to) {
+        Node node = root;
+        while (node != null && node.maxEnd > from) {
+            if (node.start < to && node.end > from) {
+                return true;
+            }
+            // left subtree can only overlap if its max end reaches the range, otherwise go right
+            if (node.left != null && node.left.maxEnd > from) {
+                node = node.left;
+            } else if (node.start < to) {
+                node = node.right;
+            } else {
+                return false;
+            }
+        }
+        return false;
+    }
+    /**
+     * Visit intervals overlapping <code>[from, to)</code> in start order.
+     * @param from range start.
+     * @param to range end.
+     * @param visitor visitor.
+     */
+    public void forEachOverlap(long from, long to, Visitor visitor) {
+        forEachOverlap(root, from, to, visitor);
+    }
+    /**
+     * @return number of intervals.
+     */
+    public int size() {
+        return root == null ? 0 : root.size;
+    }
+    /**
+     * Check node invariants: AVL balance, heights, sizes and max ends (for tests).
+     * @return true if every node is consistent.
+     */
+    boolean isValid() {
+        return isValid(root);
+    }
+    // =========================================== PRIVATE ============================================================
+    private static boolean isValid(Node node) {
+        if (node == null) {
+            return true;
+        }
+        long maxEnd = Math.max(node.end, Math.max(node.left == null ? Long.MIN_VALUE : node.left.maxEnd,
+                node.right == null ? Long.MIN_VALUE : node.right.maxEnd));
+        int size = (node.left == null ? 0 : node.left.size) + (node.right == null ? 0 : node.right.size) + 1;
+        return Math.abs(height(node.left) - height(node.right)) <= 1
+                && node.height == Math.max(height(node.left), height(node.right)) + 1
+                && node.size == size && node.maxEnd == maxEnd
+                && (node.left == null || compare(node.left.start, node.left.id, node) < 0)
+                && (node.right == null || compare(node.right.start, node.right.id, node) > 0)
+                && isValid(node.left) && isValid(node.right);
+    }
+    private static void forEachOverlap(Node node, long from, long to, Visitor visitor) {
+        if (node == null || node.maxEnd <= from) {
+            return;
+        }
+        forEachOverlap(node.left, from, to, visitor);
+        if (node.start < to) {
+            if (node.end > from) {
+                visitor.visit(node.start, node.end, node.id);
+            }
+            forEachOverlap(node.right, from, to, visitor);
+        }
+    }
+    private static int compare(long start, long id, Node node) {
+        int c = Long.compare(start, node.start);
+        return c != 0 ? c : Long.compare(id, node.id);
+    }
+    private static Node insert(Node node, long start, long end, long id) {
+        if (node == null) {
+            return new Node(start, end, id, null, null);
+        }
+        int c = compare(start, id, node);
+        if (c == 0) {
+            return new Node(start, end, id, node.left, node.right);
+        }
+        return c < 0 ? balance(node.with(insert(node.left, start, end, id), node.right))
+                : balance(node.with(node.left, insert(node.right, start, end, id)));
+    }
+    private static Node remove(Node node, long start, long id) {
+        if (node == null) {
+            return null;
+        }
+        int c = compare(start, id, node);
+        if (c < 0) {
+            Node left = remove(node.left, start, id);
+            return left == node.left ? node : balance(node.with(left, node.right));
+        }
+        if (c > 0) {
+            Node right = remove(node.right, start, id);
+            return right == node.right ? node : balance(node.with(node.left, right));
+        }
+        if (node.left == null) {
+            return node.right;
+        }
+        if (node.right == null) {
+            return node.left;
+        }
+        Node min = node.right;
+        while (min.left != null) {
+            min = min.left;
+        }
+        return balance(new Node(min.start, min.end, min.id, node.left, remove(node.right, min.start, min.id)));
+    }
+    private static Node balance(Node node) {
+        int diff = height(node.left) - height(node.right);
+        if (diff > 1) {
+            Node left = node.left;
+            if (height(left.left) < height(left.right)) {
+                left = rotateLeft(left);
+            }
+            return rotateRight(node.with(left, node.right));
+        }
+        if (diff < -1) {
+            Node right = node.right;
+            if (height(right.right) < height(right.left)) {
+                right = rotateRight(right);
+            }
+            return rotateLeft(node.with(node.left, right));
+        }
+        return node;
+    }
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        return left.with(left.left, node.with(left.right, node.right));
+    }
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        return right.with(node.with(node.left, right.left), right.right);
+    }
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+    /**
+     * Tree node.
+     */
+    private static final class Node {
+        /** Interval start. */
+        private final long start;
+        /** Interval end. */
+        private final long end;
+        /** Interval ID. */
+        private final long id;
+        /** Max end in the subtree. */
+        private final long maxEnd;
+        /** Subtree height. */
+        private final int height;
+        /** Subtree size. */
+        private final int size;
+        /** Left child. */
+        private final Node left;
+        /** Right child. */
+        private final Node right;
+        /**
+         * Constructor.
+         * @param start interval start.
+         * @param end interval end.
+         * @param id interval ID.
+         * @param left left child.
+         * @param right right child.
+         */
+        Node(long start, long end, long id, Node left, Node right) {
+            this.start = start;
+            this.end = end;
+            this.id = id;
+            this.left = left;
+            this.right = right;
+            long max = end;
+            if (left != null && left.maxEnd > max) {
+                max = left.maxEnd;
+            }
+            if (right != null && right.maxEnd > max) {
+                max = right.maxEnd;
+            }
+            this.maxEnd = max;
+            this.height = Math.max(height(left), height(right)) + 1;
+            this.size = (left == null ? 0 : left.size) + (right == null ? 0 : right.size) + 1;
+        }
+        /**
+         * Copy with other children.
+         * @param left left child.
+         * @param right right child.
+         * @return new node.
+         */
+        Node with(Node left, Node right) {
+            return new Node(start, end, id, left, right);
+        }
+    }
+}
@@ -0,0 +1,44 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.dao;
+
+import ss.tools.rental.model.Rental;
+
+/**
+ * Rental DAO.
+ * @author alex
+ */
+public interface RentalDAO {
+    /**
+     * Book a tool: check that no rental of the tool overlaps the period and insert the rental, in one transaction.
+     * The tool version is incremented on commit, so concurrent bookings of the same tool from other nodes fail
+     * with an optimistic locking error instead of both passing the overlap check.
+     * @param rental new rental.
+     * @return created rental.
+     * @throws IllegalArgumentException if tool does not exist.
+     * @throws ss.tools.rental.booking.BookingConflictException if the tool is already rented in the period.
+     * @throws org.springframework.dao.OptimisticLockingFailureException on a concurrent booking of the tool.
+     */
+    Rental book(Rental rental);
+}
@@ -0,0 +1,78 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.dao;
+
+import java.util.Collections;
+import javax.persistence.EntityManager;
+import javax.persistence.LockModeType;
+import javax.persistence.PersistenceContext;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.stereotype.Repository;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+import ss.platform.api.dao.EntityChangeEvent;
+import ss.tools.rental.booking.BookingConflictException;
+import ss.tools.rental.model.Rental;
+import ss.tools.rental.model.Tool;
+
+/**
+ * Rental DAO implementation.
+ * @author alex
+ */
+@Repository
+class RentalDAOImpl implements RentalDAO {
+    /** Entity manager. */
+    @PersistenceContext
+    private EntityManager em;
+    /** Event publisher. */
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    @Override
+    @Transactional(propagation = Propagation.REQUIRED, rollbackFor = Exception.class)
+    public Rental book(Rental rental) {
+        Tool tool = em.find(Tool.class, rental.getToolId(), LockModeType.OPTIMISTIC_FORCE_INCREMENT);
+        if (tool == null) {
+            throw new IllegalArgumentException("Unknown tool: " + rental.getToolId());
+        }
+        Long overlaps = em.createQuery("SELECT COUNT(r.id) FROM Rental r WHERE r.toolId = :toolId"
+                + " AND r.start < :end AND r.end > :start", Long.class)
+                .setParameter("toolId", rental.getToolId())
+                .setParameter("start", rental.getStart())
+                .setParameter("end", rental.getEnd())
+                .getSingleResult();
+        if (overlaps > 0) {
+            throw new BookingConflictException(rental.getToolId());
+        }
+        rental.setId(null);
+        rental.setVersion(null);
+        em.persist(rental);
+        eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.ChangeType.CREATE, Rental.class,
+                Collections.singletonList(rental.getId()), Collections.singletonList(rental)));
+        // tool version changes on commit, cached copies must be evicted
+        eventPublisher.publishEvent(new EntityChangeEvent(EntityChangeEvent.ChangeType.UPDATE, Tool.class,
+                Collections.singletonList(tool.getId()), Collections.emptyList()));
+        return rental;
+    }
+}
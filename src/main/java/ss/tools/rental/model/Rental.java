@@ -0,0 +1,127 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.model;
+
+import java.time.LocalDateTime;
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Index;
+import javax.persistence.Table;
+import ss.platform.api.dao.DataModel;
+import ss.platform.api.rest.ReadOnlyEntity;
+
+/**
+ * Tool rental (booking): the tool is rented by the customer from start (inclusive) to end (exclusive).
+ * Rentals are created by {@link ss.tools.rental.booking.BookingService} only, it checks overlapping rentals.
+ * @author alex
+ */
+@Entity
+@ReadOnlyEntity("book tools with POST /api/rental/bookings")
+@Table(name = "rentals", indexes = @Index(name = "idx_rentals_tool_period", columnList = "tool_id, start_time"))
+public class Rental extends DataModel {
+    /** Rented tool ID. */
+    @Column(name = "tool_id", nullable = false)
+    private Long toolId;
+    /** Rental start (inclusive). */
+    @Column(name = "start_time", nullable = false)
+    private LocalDateTime start;
+    /** Rental end (exclusive). */
+    @Column(name = "end_time", nullable = false)
+    private LocalDateTime end;
+    /** Customer. */
+    @Column(name = "customer", length = 255, nullable = false)
+    private String customer;
+    // ================================================================================================================
+    /**
+     * @return the toolId
+     */
+    public Long getToolId() {
+        return toolId;
+    }
+    /**
+     * @param toolId the toolId to set
+     */
+    public void setToolId(Long toolId) {
+        this.toolId = toolId;
+    }
+    /**
+     * @return the start
+     */
+    public LocalDateTime getStart() {
+        return start;
+    }
+    /**
+     * @param start the start to set
+     */
+    public void setStart(LocalDateTime start) {
+        this.start = start;
+    }
+    /**
+     * @return the end
+     */
+    public LocalDateTime getEnd() {
+        return end;
+    }
+    /**
+     * @param end the end to set
+     */
+    public void setEnd(LocalDateTime end) {
+        this.end = end;
+    }
+    /**
+     * @return the customer
+     */
+    public String getCustomer() {
+        return customer;
+    }
+    /**
+     * @param customer the customer to set
+     */
+    public void setCustomer(String customer) {
+        this.customer = customer;
+    }
+    // ================================================================================================================
+    @Override
+    public int hashCode() {
+        int hash = 0;
+        hash += (getId() != null ? getId().hashCode() : 0);
+        return hash;
+    }
+    @Override
+    public boolean equals(Object object) {
+        if (!(object instanceof Rental)) {
+            return false;
+        }
+        Rental other = (Rental) object;
+        if ((this.getId() == null && other.getId() != null)
+                || (this.getId() != null && !this.getId().equals(other.getId()))) {
+            return false;
+        }
+        return true;
+    }
+    @Override
+    public String toString() {
+        return "ss.tools.rental.model.Rental[ id=" + getId() + " ]";
+    }
+}
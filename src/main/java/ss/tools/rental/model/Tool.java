@@ -28,6 +28,7 @@ import javax.persistence.Entity;
 import javax.persistence.Lob;
 import javax.persistence.Table;
 import ss.platform.api.dao.DataModel;
+import ss.platform.api.search.FullText;
 
 /**
  * Tool.
@@ -37,9 +38,11 @@ import ss.platform.api.dao.DataModel;
 @Table(name = "tools")
 public class Tool extends DataModel {
     /** Tool name. */
+    @FullText(boost = 2f)
     @Column(name = "name", length = 255, nullable = false)
     private String name;
     /** Description. */
+    @FullText
     @Lob
     @Column(name = "description", length = 65535)
     private String description;
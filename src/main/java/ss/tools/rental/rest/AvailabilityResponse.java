@@ -0,0 +1,69 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.rest;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Availability search response.
+ * @author alex
+ */
+public class AvailabilityResponse {
+    /** Period start (inclusive). */
+    private final LocalDateTime from;
+    /** Period end (exclusive). */
+    private final LocalDateTime to;
+    /** IDs of tools free for the whole period. */
+    private final List<Long> available;
+    /**
+     * Constructor.
+     * @param from period start.
+     * @param to period end.
+     * @param available free tool IDs.
+     */
+    public AvailabilityResponse(LocalDateTime from, LocalDateTime to, List<Long> available) {
+        this.from = from;
+        this.to = to;
+        this.available = available;
+    }
+    /**
+     * @return the from
+     */
+    public LocalDateTime getFrom() {
+        return from;
+    }
+    /**
+     * @return the to
+     */
+    public LocalDateTime getTo() {
+        return to;
+    }
+    /**
+     * @return the available
+     */
+    public List<Long> getAvailable() {
+        return available;
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.rest;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.format.annotation.DateTimeFormat;
+import org.springframework.http.MediaType;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import ss.platform.api.rest.DatabaseExecutor;
+import ss.platform.api.search.FullTextIndexManager;
+import ss.platform.api.search.SearchHits;
+import ss.tools.rental.booking.AvailabilityIndex;
+import ss.tools.rental.booking.Booking;
+import ss.tools.rental.booking.BookingService;
+import ss.tools.rental.model.Rental;
+import ss.tools.rental.model.Tool;
+
+/**
+ * Rental REST controller: bookings, and availability search over the in-memory availability index
+ * (no database access). Rentals are read and deleted through the entity API (<code>/api/entity/rental</code>),
+ * which does not create or change them.
+ * @author alex
+ */
+@RestController
+@RequestMapping("/api/rental")
+public class RentalRESTController {
+    /** Availability index. */
+    @Autowired
+    private AvailabilityIndex availabilityIndex;
+    /** Full-text indexes. */
+    @Autowired
+    private FullTextIndexManager fullTextIndex;
+    /** Booking service. */
+    @Autowired
+    private BookingService bookingService;
+    /** Database executor. */
+    @Autowired
+    private DatabaseExecutor databaseExecutor;
+    /** Max free tools returned by one availability search. */
+    @Value("${rental.availability.max-results:1000}")
+    private int maxResults;
+    /**
+     * Find tools free for the whole period.
+     * @param from period start (inclusive), ISO date-time.
+     * @param to period end (exclusive), ISO date-time.
+     * @param toolIds candidate tool IDs (optional).
+     * @param query full-text query selecting candidate tools (optional), for example <code>drill</code>.
+     * @param limit max returned tools.
+     * @return free tools.
+     */
+    @RequestMapping(value = "/availability", method = RequestMethod.GET, produces = MediaType.APPLICATION_JSON_VALUE)
+    public AvailabilityResponse findAvailable(
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(value = "tool_id", required = false) List<Long> toolIds,
+            @RequestParam(value = "q", required = false) String query,
+            @RequestParam(value = "limit", defaultValue = "100") int limit) {
+        checkPeriod(from, to);
+        int max = Math.max(1, Math.min(limit, maxResults));
+        List<Long> candidates = toolIds;
+        if (query != null && !query.trim().isEmpty()) {
+            SearchHits hits = fullTextIndex.search(Tool.class, query, maxResults);
+            candidates = new ArrayList<>(hits.getIds().length);
+            for (long id : hits.getIds()) {
+                if (toolIds == null || toolIds.contains(id)) {
+                    candidates.add(id);
+                }
+            }
+        }
+        return new AvailabilityResponse(from, to, availabilityIndex.findAvailable(candidates, from, to, max));
+    }
+    /**
+     * Book a tool. The booking is rejected with 409 if the tool is already rented in the period.
+     * @param rental new rental (tool ID, start, end, customer).
+     * @return created rental.
+     */
+    @RequestMapping(value = "/bookings", method = RequestMethod.POST, consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public CompletableFuture<Rental> book(@RequestBody Rental rental) {
+        return databaseExecutor.submit(() -> bookingService.book(rental));
+    }
+    /**
+     * Find rentals of a tool overlapping the period.
+     * @param toolId tool ID.
+     * @param from period start (inclusive), ISO date-time.
+     * @param to period end (exclusive), ISO date-time.
+     * @return overlapping bookings, by start.
+     */
+    @RequestMapping(value = "/tools/{toolId}/bookings", method = RequestMethod.GET,
+            produces = MediaType.APPLICATION_JSON_VALUE)
+    public List<Booking> findBookings(@PathVariable("toolId") Long toolId,
+            @RequestParam("from") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam("to") @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to) {
+        checkPeriod(from, to);
+        return availabilityIndex.findOverlapping(toolId, from, to);
+    }
+    // =========================================== PRIVATE ============================================================
+    private static void checkPeriod(LocalDateTime from, LocalDateTime to) {
+        if (!from.isBefore(to)) {
+            throw new IllegalArgumentException("Period start must be before its end: " + from + " - " + to);
+        }
+    }
+}
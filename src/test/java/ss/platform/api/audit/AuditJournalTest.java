@@ -0,0 +1,217 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.audit;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import ss.platform.api.dao.EntityChangeEvent;
+
+/**
+ * Audit journal record format, recovery and segment roll.
+ * @author ss
+ */
+public class AuditJournalTest {
+    /** Segment size of the tests, bytes. */
+    private static final int SEGMENT = 1 << 16;
+    /** Journal directory. */
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+    /** Journal directory. */
+    private Path directory;
+    /**
+     * Create journal directory.
+     * @throws IOException error.
+     */
+    @Before
+    public void setUp() throws IOException {
+        directory = folder.newFolder("audit").toPath();
+    }
+    /**
+     * Header is length, CRC of sequence and payload, sequence; payload decodes back to the record.
+     * @throws IOException error.
+     */
+    @Test
+    public void recordFormat() throws IOException {
+        write(SEGMENT, 1, 2);
+        try (FileChannel channel = FileChannel.open(segments().get(0), StandardOpenOption.READ)) {
+            ByteBuffer segment = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            byte[] payload = record(1).encodePayload();
+            assertEquals(8 + payload.length, segment.getInt(0));
+            assertEquals(1L, segment.getLong(AuditRecord.HEADER));
+            CRC32 crc = new CRC32();
+            ByteBuffer body = segment.duplicate();
+            body.position(AuditRecord.HEADER).limit(AuditRecord.HEADER + 8 + payload.length);
+            crc.update(body);
+            assertEquals((int) crc.getValue(), segment.getInt(4));
+            int second = AuditRecord.HEADER + segment.getInt(0);
+            assertEquals(2L, segment.getLong(second + AuditRecord.HEADER));
+            // zero length ends the written data
+            assertEquals(0, segment.getInt(second + AuditRecord.HEADER + segment.getInt(second)));
+        }
+        List<AuditRecord> records = read(0);
+        assertEquals(2, records.size());
+        AuditRecord first = records.get(0);
+        assertEquals(1L, first.getSequence());
+        assertEquals(1000L, first.getTimestamp());
+        assertEquals(EntityChangeEvent.ChangeType.UPDATE, first.getType());
+        assertEquals("tool", first.getEntity());
+        assertEquals("client-1", first.getActor());
+        assertArrayEquals(new long[] {1, 101}, first.getIds());
+        assertNull(records.get(1).getActor());
+    }
+    /**
+     * A record with a bad CRC ends the segment: the reader stops before it, the journal overwrites it.
+     * @throws IOException error.
+     */
+    @Test
+    public void corruptedTailIsOverwritten() throws IOException {
+        write(SEGMENT, 1, 5);
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            int last = offsetOf(buffer, 5);
+            int payload = last + AuditRecord.HEADER + 8;
+            buffer.put(payload, (byte) (buffer.get(payload) ^ 0x55));
+            buffer.force();
+        }
+        assertSequences(read(0), 1, 4);
+        write(SEGMENT, 105, 106);
+        assertEquals(1, segments().size());
+        List<AuditRecord> records = read(0);
+        assertSequences(records, 1, 6);
+        assertEquals(105000L, records.get(4).getTimestamp());
+    }
+    /**
+     * A segment cut inside its last record (crash before the mapping was forced) is recovered up to the last
+     * complete record, appends continue with the next sequence in a new segment.
+     * @throws IOException error.
+     */
+    @Test
+    public void tornTailIsRecovered() throws IOException {
+        write(SEGMENT, 1, 5);
+        Path segment = segments().get(0);
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            int last = offsetOf(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()), 5);
+            channel.truncate(last + AuditRecord.HEADER + 10);
+        }
+        assertSequences(read(0), 1, 4);
+        AuditJournal journal = open(SEGMENT);
+        try {
+            assertEquals(4L, journal.getSequence());
+            journal.append(record(105));
+        } finally {
+            journal.close();
+        }
+        List<Path> segments = segments();
+        assertEquals(2, segments.size());
+        assertEquals(AuditJournalReader.segmentName(5), segments.get(1).getFileName().toString());
+        List<AuditRecord> records = read(0);
+        assertSequences(records, 1, 5);
+        assertEquals(105000L, records.get(4).getTimestamp());
+    }
+    /**
+     * Segments roll when full, are named after their first sequence, and are read across in order.
+     * @throws IOException error.
+     */
+    @Test
+    public void segmentsRoll() throws IOException {
+        int size = AuditRecord.HEADER + 8 + record(1).encodePayload().length;
+        write(size * 3, 1, 10);
+        List<Path> segments = segments();
+        assertEquals(4, segments.size());
+        for (int i = 0; i < segments.size(); i++) {
+            assertEquals(1 + i * 3, AuditJournalReader.firstSequence(segments.get(i)));
+        }
+        assertSequences(read(0), 1, 10);
+        assertSequences(read(7), 8, 10);
+        assertEquals(10L, new AuditJournalReader(directory).read(10, (record) -> { }));
+        // reopened journal continues the sequence
+        write(size * 3, 11, 11);
+        assertSequences(read(9), 10, 11);
+        assertEquals(4, segments().size());
+    }
+    // =========================================== PRIVATE ============================================================
+    private AuditJournal open(long segmentSize) throws IOException {
+        return new AuditJournal(directory, segmentSize, AuditJournal.FsyncPolicy.ALWAYS, 1000, 16, 10000);
+    }
+    /**
+     * Write records with timestamps from..to (seconds), odd ones with an actor.
+     */
+    private void write(long segmentSize, int from, int to) throws IOException {
+        AuditJournal journal = open(segmentSize);
+        try {
+            for (int i = from; i <= to; i++) {
+                journal.append(record(i));
+            }
+        } finally {
+            journal.close();
+        }
+    }
+    private static AuditRecord record(int i) {
+        return new AuditRecord(0, i * 1000L, EntityChangeEvent.ChangeType.UPDATE, "tool",
+                i % 2 == 1 ? "client-" + i : null, new long[] {i, 100 + i});
+    }
+    private List<AuditRecord> read(long afterSequence) throws IOException {
+        List<AuditRecord> records = new ArrayList<>();
+        new AuditJournalReader(directory).read(afterSequence, records::add);
+        return records;
+    }
+    private List<Path> segments() throws IOException {
+        return AuditJournalReader.segments(directory);
+    }
+    private static void assertSequences(List<AuditRecord> records, long from, long to) {
+        List<Long> expected = new ArrayList<>();
+        for (long i = from; i <= to; i++) {
+            expected.add(i);
+        }
+        List<Long> actual = new ArrayList<>();
+        records.forEach((record) -> actual.add(record.getSequence()));
+        assertEquals(expected, actual);
+    }
+    /**
+     * Offset of a record in a segment.
+     */
+    private static int offsetOf(ByteBuffer segment, long sequence) {
+        int offset = 0;
+        while (segment.getLong(offset + AuditRecord.HEADER) != sequence) {
+            offset += AuditRecord.HEADER + segment.getInt(offset);
+        }
+        return offset;
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Date;
+import org.junit.Test;
+
+/**
+ * Keyset cursor encoding and order value precision.
+ * @author ss
+ */
+public class SearchCursorTest {
+    /**
+     * Encoded cursor decodes to the same position.
+     */
+    @Test
+    public void roundTrip() {
+        SearchCursor cursor = SearchCursor.decode(new SearchCursor("desc", "name", 42L, "a|b").encode());
+        assertEquals(Long.valueOf(42), cursor.getLastId());
+        assertEquals("a|b", cursor.getLastValue());
+        cursor.verify(request("name", "desc"));
+        cursor = SearchCursor.decode(new SearchCursor(null, null, 7L, null).encode());
+        assertEquals(Long.valueOf(7), cursor.getLastId());
+        assertNull(cursor.getLastValue());
+        cursor.verify(request(null, null));
+    }
+    /**
+     * Timestamps keep nanoseconds, so rows within one millisecond are not skipped or repeated.
+     */
+    @Test
+    public void valuePrecision() {
+        Timestamp timestamp = Timestamp.valueOf("2020-12-01 10:00:00.123456789");
+        String cursor = new SearchCursor("asc", "created", 1L, AttributeValues.format(timestamp)).encode();
+        assertEquals(timestamp, AttributeValues.parse(SearchCursor.decode(cursor).getLastValue(), Date.class));
+        LocalDateTime dateTime = LocalDateTime.of(2020, 12, 1, 10, 0, 0, 123456789);
+        assertEquals(dateTime, AttributeValues.parse(AttributeValues.format(dateTime), LocalDateTime.class));
+        // cursors issued with epoch milliseconds
+        assertEquals(new Date(1606816800123L), AttributeValues.parse("1606816800123", Date.class));
+    }
+    /**
+     * Malformed or modified cursors are rejected.
+     */
+    @Test
+    public void reject() {
+        String[] cursors = {"not a cursor!", encode("2|asc|name|5|drill"), encode("1|asc|name"),
+            encode("1|asc|name|five|drill"), encode(""), "%%"};
+        for (String cursor : cursors) {
+            try {
+                SearchCursor.decode(cursor);
+                throw new AssertionError("Accepted: " + cursor);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        SearchCursor cursor = SearchCursor.decode(new SearchCursor("asc", "name", 5L, "drill").encode());
+        for (EntitySearchRequest request : new EntitySearchRequest[] {request("name", "desc"),
+            request("description", "asc"), request(null, null)}) {
+            try {
+                cursor.verify(request);
+                throw new AssertionError("Accepted for another order");
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private static String encode(String raw) {
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+    private static EntitySearchRequest request(String orderBy, String order) {
+        EntitySearchRequest request = new EntitySearchRequest();
+        request.setOrderBy(orderBy);
+        request.setOrder(order);
+        return request;
+    }
+}
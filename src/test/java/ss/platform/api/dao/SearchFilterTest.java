@@ -0,0 +1,100 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.Arrays;
+import java.util.Collections;
+import org.junit.Test;
+
+/**
+ * Search filter parsing.
+ * @author ss
+ */
+public class SearchFilterTest {
+    /**
+     * Every comparison operator, two character operators are not taken for their one character prefix.
+     */
+    @Test
+    public void operators() {
+        assertFilter("name", SearchFilter.Operator.EQ, "drill", "name=drill");
+        assertFilter("name", SearchFilter.Operator.NE, "drill", "name!=drill");
+        assertFilter("id", SearchFilter.Operator.GT, "10", "id>10");
+        assertFilter("id", SearchFilter.Operator.GE, "10", "id>=10");
+        assertFilter("id", SearchFilter.Operator.LT, "10", "id<10");
+        assertFilter("id", SearchFilter.Operator.LE, "10", "id<=10");
+        assertFilter("name", SearchFilter.Operator.LIKE, "dri", "name~dri");
+        assertFilter("tool_id", SearchFilter.Operator.EQ, "1", "tool_id=1");
+    }
+    /**
+     * The value is everything after the operator.
+     */
+    @Test
+    public void rawValue() {
+        assertFilter("name", SearchFilter.Operator.EQ, "a=b", "name=a=b");
+        assertFilter("name", SearchFilter.Operator.LIKE, "50% off", "name~50% off");
+        assertFilter("name", SearchFilter.Operator.EQ, "", "name=");
+        assertFilter("name", SearchFilter.Operator.EQ, "(", "name=(");
+    }
+    /**
+     * Parenthesized lists turn = and != into IN and NOT IN.
+     */
+    @Test
+    public void lists() {
+        SearchFilter in = SearchFilter.parse("id=(1, 2,3)");
+        assertEquals(SearchFilter.Operator.IN, in.getOperator());
+        assertEquals(Arrays.asList("1", "2", "3"), in.getValues());
+        assertEquals("id=(1,2,3)", in.toString());
+        assertEquals("id=()", in.shape());
+        SearchFilter notIn = SearchFilter.parse("id!=(4)");
+        assertEquals(SearchFilter.Operator.NOT_IN, notIn.getOperator());
+        assertEquals(Collections.singletonList("4"), notIn.getValues());
+        assertEquals("id!=(4)", notIn.toString());
+        // other operators take the parentheses literally
+        assertFilter("name", SearchFilter.Operator.LIKE, "(a,b)", "name~(a,b)");
+    }
+    /**
+     * Expressions without field or operator.
+     */
+    @Test
+    public void reject() {
+        for (String expression : new String[] {"", "=1", "~drill", "name", "name:drill", "name drill", "na-me=1"}) {
+            try {
+                SearchFilter.parse(expression);
+                throw new AssertionError("Accepted: " + expression);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private static void assertFilter(String field, SearchFilter.Operator operator, String value, String expression) {
+        SearchFilter filter = SearchFilter.parse(expression);
+        assertEquals(field, filter.getField());
+        assertEquals(operator, filter.getOperator());
+        assertEquals(Collections.singletonList(value), filter.getValues());
+        assertEquals(expression, filter.toString());
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.dao;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import javax.persistence.EntityManager;
+import javax.persistence.EntityManagerFactory;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.orm.jpa.LocalContainerEntityManagerFactoryBean;
+import org.springframework.orm.jpa.vendor.HibernateJpaVendorAdapter;
+import ss.tools.rental.model.Tool;
+
+/**
+ * Search plan filters and keyset predicate against an embedded in-memory database.
+ * @author ss
+ */
+public class SearchPlanTest {
+    /** Entity manager factory. */
+    private static LocalContainerEntityManagerFactoryBean factory;
+    /** Tool IDs by creation order. */
+    private static final List<Long> IDS = new ArrayList<>();
+    /** Entity manager. */
+    private EntityManager em;
+    /**
+     * Create database with tools.
+     */
+    @BeforeClass
+    public static void createDatabase() {
+        factory = new LocalContainerEntityManagerFactoryBean();
+        factory.setDataSource(new DriverManagerDataSource("jdbc:h2:mem:search-plan;DB_CLOSE_DELAY=-1"));
+        factory.setPackagesToScan("ss.tools.rental.model");
+        factory.setJpaVendorAdapter(new HibernateJpaVendorAdapter());
+        factory.setJpaPropertyMap(Collections.singletonMap("hibernate.hbm2ddl.auto", "create-drop"));
+        factory.afterPropertiesSet();
+        EntityManagerFactory emf = factory.getObject();
+        EntityManager em = emf.createEntityManager();
+        em.getTransaction().begin();
+        String[][] tools = {{"drill", "b"}, {"drill", null}, {"saw", "a"}, {"50% off", "c"}, {"a_b", null},
+            {"axb", "b"}, {"hammer", null}};
+        for (String[] values : tools) {
+            Tool tool = new Tool();
+            tool.setName(values[0]);
+            tool.setDescription(values[1]);
+            em.persist(tool);
+            IDS.add(tool.getId());
+        }
+        em.getTransaction().commit();
+        em.close();
+    }
+    /**
+     * Drop database.
+     */
+    @AfterClass
+    public static void dropDatabase() {
+        factory.destroy();
+    }
+    /**
+     * Open entity manager.
+     */
+    @Before
+    public void setUp() {
+        em = factory.getObject().createEntityManager();
+    }
+    /**
+     * Close entity manager.
+     */
+    @After
+    public void tearDown() {
+        em.close();
+    }
+    /**
+     * Filters select the same rows for data and count.
+     */
+    @Test
+    public void filters() {
+        assertSearch("name=drill", 1, 2);
+        assertSearch("name!=drill", 3, 4, 5, 6, 7);
+        assertSearch("id>" + IDS.get(5), 7);
+        assertSearch("id>=" + IDS.get(5), 6, 7);
+        assertSearch("id<" + IDS.get(1), 1);
+        assertSearch("id<=" + IDS.get(1), 1, 2);
+        assertSearch("name~ri", 1, 2);
+        assertSearch("id=(" + IDS.get(0) + "," + IDS.get(2) + ")", 1, 3);
+        assertSearch("id!=(" + IDS.get(0) + "," + IDS.get(2) + ")", 2, 4, 5, 6, 7);
+    }
+    /**
+     * LIKE wildcards of the value match literally.
+     */
+    @Test
+    public void likeEscaping() {
+        assertSearch("name~50%", 4);
+        assertSearch("name~a_b", 5);
+        assertSearch("name~%", 4);
+        assertSearch("name~_", 5);
+    }
+    /**
+     * Filters and fields that do not match the entity are rejected.
+     */
+    @Test
+    public void reject() {
+        for (String filter : new String[] {"foo=1", "id~1", "version~1"}) {
+            try {
+                new SearchPlan<>(em, Tool.class, request(null, null, filter), null);
+                throw new AssertionError("Accepted: " + filter);
+            } catch (IllegalArgumentException e) {
+                // expected
+            }
+        }
+        EntitySearchRequest request = request(null, null, "id=drill");
+        try {
+            new SearchPlan<>(em, Tool.class, request, null).list(em, request, null, 0, 10);
+            throw new AssertionError("Accepted: id=drill");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+        request = request(null, null);
+        request.setFields(Collections.singletonList("bogus"));
+        try {
+            new SearchPlan<>(em, Tool.class, request, null);
+            throw new AssertionError("Accepted: fields=bogus");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+    /**
+     * Walking the keyset cursor returns the rows of the offset query, also with duplicate and NULL order values.
+     */
+    @Test
+    public void keyset() {
+        assertEquals(ids(4, 5, 6, 1, 2, 7, 3), walk(null, "name", "asc"));
+        assertEquals(ids(3, 7, 2, 1, 6, 5, 4), walk(null, "name", "desc"));
+        assertEquals(ids(1, 2, 3, 4, 5, 6, 7), walk(null, null, null));
+        assertEquals(ids(7, 6, 5, 4, 3, 2, 1), walk(null, null, "desc"));
+        for (String order : new String[] {"asc", "desc"}) {
+            assertEquals(all(null, "description", order), walk(null, "description", order));
+            assertEquals(all(Collections.singletonList("name"), "description", order),
+                    walk(Collections.singletonList("name"), "description", order));
+        }
+    }
+    // =========================================== PRIVATE ============================================================
+    private static EntitySearchRequest request(String orderBy, String order, String... filters) {
+        EntitySearchRequest request = new EntitySearchRequest();
+        request.setOrderBy(orderBy);
+        request.setOrder(order);
+        for (String filter : filters) {
+            request.getFilters().add(SearchFilter.parse(filter));
+        }
+        return request;
+    }
+    /**
+     * Assert filtered tools.
+     * @param filter filter expression.
+     * @param tools expected tools (1-based creation order).
+     */
+    private void assertSearch(String filter, int... tools) {
+        EntitySearchRequest request = request(null, null, filter);
+        SearchPlan<Tool> plan = new SearchPlan<>(em, Tool.class, request, null);
+        assertEquals(filter, ids(tools), idsOf(plan.list(em, request, null, 0, 100)));
+        assertEquals(filter, Long.valueOf(tools.length), plan.createCountQuery(em, request).getSingleResult());
+    }
+    private List<Long> all(List<String> fields, String orderBy, String order) {
+        EntitySearchRequest request = request(orderBy, order);
+        request.setFields(fields);
+        return idsOf(new SearchPlan<>(em, Tool.class, request, null).list(em, request, null, 0, 100));
+    }
+    /**
+     * Read all rows by pages of two, every page after the cursor of the previous one.
+     */
+    private List<Long> walk(List<String> fields, String orderBy, String order) {
+        List<Long> ids = new ArrayList<>();
+        SearchCursor cursor = null;
+        while (true) {
+            EntitySearchRequest request = request(orderBy, order);
+            request.setFields(fields);
+            List<Object> rows = new SearchPlan<>(em, Tool.class, request, cursor).list(em, request, cursor,
+                    cursor == null ? 0 : null, 2);
+            ids.addAll(idsOf(rows));
+            if (rows.size() < 2) {
+                return ids;
+            }
+            Object last = rows.get(rows.size() - 1);
+            cursor = SearchCursor.decode(new SearchCursor(order, orderBy, (Long) SearchPlan.value(last, DataModel_.ID),
+                    orderBy == null ? null : AttributeValues.format(SearchPlan.value(last, orderBy))).encode());
+        }
+    }
+    private static List<Long> idsOf(List<Object> rows) {
+        List<Long> ids = new ArrayList<>();
+        rows.forEach((row) -> ids.add((Long) SearchPlan.value(row, DataModel_.ID)));
+        return ids;
+    }
+    private static List<Long> ids(int... tools) {
+        Long[] ids = new Long[tools.length];
+        for (int i = 0; i < tools.length; i++) {
+            ids[i] = IDS.get(tools[i] - 1);
+        }
+        return Arrays.asList(ids);
+    }
+}
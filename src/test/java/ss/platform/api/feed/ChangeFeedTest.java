@@ -0,0 +1,278 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.feed;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+import java.util.function.Consumer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import ss.platform.api.dao.EntityChangeEvent;
+import ss.tools.rental.model.Tool;
+
+/**
+ * Change feed delivery: slow subscribers, disconnects and resume.
+ * @author ss
+ */
+public class ChangeFeedTest {
+    /** Subscriber queue capacity of the tests. */
+    private static final int QUEUE = 4;
+    /** Max wait, ms. */
+    private static final long TIMEOUT = 5000;
+    /** Context. */
+    private AnnotationConfigApplicationContext context;
+    /** Feed. */
+    private ChangeFeed feed;
+    /** Meters. */
+    private MeterRegistry registry;
+    /**
+     * Start context.
+     */
+    @Before
+    public void setUp() {
+        Map<String, Object> properties = new HashMap<>();
+        properties.put("platform.change-feed.subscriber-queue", QUEUE);
+        properties.put("platform.change-feed.buffer-size", 64);
+        properties.put("platform.change-feed.sender-threads", 1);
+        properties.put("platform.change-feed.heartbeat-ms", 600000);
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+        context.registerBean(ObjectMapper.class);
+        context.registerBean(SimpleMeterRegistry.class);
+        context.registerBean(ChangeFeed.class);
+        context.refresh();
+        feed = context.getBean(ChangeFeed.class);
+        registry = context.getBean(MeterRegistry.class);
+    }
+    /**
+     * Stop context.
+     */
+    @After
+    public void tearDown() {
+        context.close();
+    }
+    /**
+     * Publishing does not wait for a slow subscriber; its full queue is replaced by one reset and the stream
+     * continues after it with increasing IDs.
+     * @throws Exception error.
+     */
+    @Test
+    public void slowSubscriberGetsReset() throws Exception {
+        Stream stream = new Stream(feed.subscribe(Tool.class, null));
+        stream.block();
+        publish(1);
+        assertTrue(stream.blocked.await(TIMEOUT, TimeUnit.MILLISECONDS));
+        for (long id = 2; id <= 2 + QUEUE * 2; id++) {
+            publish(id);
+        }
+        assertEquals(1, registry.get("platform.change.feed.overflows").functionCounter().count(), 0);
+        stream.release();
+        long last = 2 + QUEUE * 2;
+        await(() -> stream.events().size() == 2 + QUEUE);
+        List<String[]> events = stream.events();
+        assertEquals("create", events.get(0)[1]);
+        assertEquals("reset", events.get(1)[1]);
+        assertEquals(last - QUEUE, sequence(events.get(1)));
+        for (int i = 2; i < events.size(); i++) {
+            assertEquals("create", events.get(i)[1]);
+            assertEquals(sequence(events.get(i - 1)) + 1, sequence(events.get(i)));
+        }
+        assertTrue(events.get(events.size() - 1)[2].contains("[" + last + "]"));
+    }
+    /**
+     * A stream that fails to send is dropped.
+     * @throws Exception error.
+     */
+    @Test
+    public void failedSendUnsubscribes() throws Exception {
+        Stream stream = new Stream(feed.subscribe(Tool.class, null));
+        assertEquals(1, subscribers(), 0);
+        stream.fail = true;
+        publish(1);
+        await(() -> subscribers() == 0);
+        stream.fail = false;
+        publish(2);
+        Thread.sleep(100);
+        assertTrue(stream.events().isEmpty());
+    }
+    /**
+     * A stream closed by the container (client disconnect, timeout) is dropped.
+     * @throws Exception error.
+     */
+    @Test
+    public void closedStreamUnsubscribes() throws Exception {
+        Stream completed = new Stream(feed.subscribe(Tool.class, null));
+        Stream failed = new Stream(feed.subscribe(Tool.class, null));
+        assertEquals(2, subscribers(), 0);
+        completed.completion.run();
+        failed.error.accept(new IOException("Broken pipe"));
+        await(() -> subscribers() == 0);
+    }
+    /**
+     * A client resumes after its last event ID; an ID from another boot gets a reset.
+     * @throws Exception error.
+     */
+    @Test
+    public void resume() throws Exception {
+        Stream first = new Stream(feed.subscribe(Tool.class, null));
+        publish(1);
+        publish(2);
+        publish(3);
+        await(() -> first.events().size() == 3);
+        Stream resumed = new Stream(feed.subscribe(Tool.class, first.events().get(0)[0]));
+        await(() -> resumed.events().size() == 2);
+        assertEquals(2, sequence(resumed.events().get(0)));
+        assertEquals(3, sequence(resumed.events().get(1)));
+        Stream stale = new Stream(feed.subscribe(Tool.class, "0-1"));
+        await(() -> stale.events().size() == 1);
+        assertEquals("reset", stale.events().get(0)[1]);
+        assertEquals(3, sequence(stale.events().get(0)));
+    }
+    // =========================================== PRIVATE ============================================================
+    private void publish(long id) {
+        feed.onEntityChange(new EntityChangeEvent(EntityChangeEvent.ChangeType.CREATE, Tool.class,
+                Arrays.asList(id), new ArrayList<>()));
+    }
+    private double subscribers() {
+        return registry.get("platform.change.feed.subscribers").gauge().value();
+    }
+    private static long sequence(String[] event) {
+        return Long.parseLong(event[0].substring(event[0].indexOf('-') + 1));
+    }
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT;
+        while (!condition.getAsBoolean()) {
+            if (System.currentTimeMillis() > deadline) {
+                throw new AssertionError("Timed out");
+            }
+            Thread.sleep(10);
+        }
+    }
+    /**
+     * Client end of an event stream: stands in for the servlet response the emitter is bound to by Spring MVC.
+     */
+    private static class Stream {
+        /** Received text. */
+        private final StringBuilder text = new StringBuilder();
+        /** Sends fail with an I/O error. */
+        private volatile boolean fail;
+        /** Sends wait for release. */
+        private volatile CountDownLatch release = new CountDownLatch(0);
+        /** A send is waiting for release. */
+        private final CountDownLatch blocked = new CountDownLatch(1);
+        /** Completion callback of the emitter. */
+        private Runnable completion;
+        /** Error callback of the emitter. */
+        private Consumer<Throwable> error;
+        /**
+         * Bind emitter.
+         * @param emitter emitter.
+         * @throws Exception error.
+         */
+        @SuppressWarnings("unchecked")
+        Stream(SseEmitter emitter) throws Exception {
+            Class<?> handlerType = Class.forName(ResponseBodyEmitter.class.getName() + "$Handler");
+            Object handler = Proxy.newProxyInstance(handlerType.getClassLoader(), new Class<?>[] {handlerType},
+                    (proxy, method, args) -> {
+                        switch (method.getName()) {
+                            case "send":
+                                send(args[0]);
+                                break;
+                            case "onCompletion":
+                                completion = (Runnable) args[0];
+                                break;
+                            case "onError":
+                                error = (Consumer<Throwable>) args[0];
+                                break;
+                            default:
+                                break;
+                        }
+                        return null;
+                    });
+            Method initialize = ResponseBodyEmitter.class.getDeclaredMethod("initialize", handlerType);
+            initialize.setAccessible(true);
+            initialize.invoke(emitter, handler);
+        }
+        void block() {
+            release = new CountDownLatch(1);
+        }
+        void release() {
+            release.countDown();
+        }
+        /**
+         * @return events: ID, name, data.
+         */
+        synchronized List<String[]> events() {
+            List<String[]> events = new ArrayList<>();
+            for (String block : text.toString().split("\n\n")) {
+                String[] event = new String[3];
+                for (String line : block.split("\n")) {
+                    if (line.startsWith("id:")) {
+                        event[0] = line.substring(3);
+                    } else if (line.startsWith("event:")) {
+                        event[1] = line.substring(6);
+                    } else if (line.startsWith("data:")) {
+                        event[2] = line.substring(5);
+                    }
+                }
+                if (event[0] != null) {
+                    events.add(event);
+                }
+            }
+            return events;
+        }
+        private void send(Object data) throws IOException, InterruptedException {
+            if (fail) {
+                throw new IOException("Broken pipe");
+            }
+            if (release.getCount() > 0) {
+                blocked.countDown();
+                release.await();
+            }
+            synchronized (this) {
+                text.append(data);
+            }
+        }
+    }
+}
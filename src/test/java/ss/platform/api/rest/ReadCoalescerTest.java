@@ -0,0 +1,194 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.rest;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+import ss.platform.api.dao.EntityChangeCounter;
+import ss.platform.api.dao.EntityChangeEvent;
+import ss.tools.rental.model.Tool;
+
+/**
+ * Single-flight read coalescing: joining, flight age, errors and cancellation.
+ * @author ss
+ */
+public class ReadCoalescerTest {
+    /** Max join age of the tests, ms. */
+    private static final long MAX_JOIN = 200;
+    /** Context. */
+    private AnnotationConfigApplicationContext context;
+    /** Database executor, reads complete when the test completes them. */
+    private ManualExecutor executor;
+    /** Coalescer. */
+    private ReadCoalescer coalescer;
+    /**
+     * Start context.
+     */
+    @Before
+    public void setUp() {
+        executor = new ManualExecutor();
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test",
+                Collections.singletonMap("platform.read-coalescing.max-join-ms", MAX_JOIN)));
+        context.registerBean(DatabaseExecutor.class, () -> executor);
+        context.registerBean(EntityChangeCounter.class);
+        context.registerBean(ReadCoalescer.class);
+        context.refresh();
+        coalescer = context.getBean(ReadCoalescer.class);
+    }
+    /**
+     * Stop context.
+     */
+    @After
+    public void tearDown() {
+        context.close();
+    }
+    /**
+     * Callers of a key in flight share one read.
+     * @throws Exception error.
+     */
+    @Test
+    public void joinFlight() throws Exception {
+        List<Object> key = coalescer.key(Tool.class, "find", 1L);
+        CompletableFuture<Object> first = coalescer.submit(key, () -> "row");
+        CompletableFuture<Object> second = coalescer.submit(coalescer.key(Tool.class, "find", 1L), () -> "row");
+        coalescer.submit(coalescer.key(Tool.class, "find", 2L), () -> "other");
+        assertEquals(2, executor.reads.size());
+        Object row = new Object();
+        executor.reads.get(0).complete(row);
+        assertSame(row, first.get());
+        assertSame(row, second.get());
+        // the flight is over
+        coalescer.submit(key, () -> "row");
+        assertEquals(3, executor.reads.size());
+    }
+    /**
+     * A read started after a committed write does not join a read started before it.
+     */
+    @Test
+    public void writeStartsNewFlight() {
+        List<Object> before = coalescer.key(Tool.class, "find", 1L);
+        coalescer.submit(before, () -> "old");
+        context.getBean(EntityChangeCounter.class).onEntityChange(new EntityChangeEvent(
+                EntityChangeEvent.ChangeType.UPDATE, Tool.class, Collections.singletonList(1L),
+                Collections.emptyList()));
+        List<Object> after = coalescer.key(Tool.class, "find", 1L);
+        assertNotEquals(before, after);
+        coalescer.submit(after, () -> "new");
+        assertEquals(2, executor.reads.size());
+    }
+    /**
+     * A flight older than the max join age is replaced; its completion does not end the replacement.
+     * @throws Exception error.
+     */
+    @Test
+    public void maxJoinReplacesFlight() throws Exception {
+        List<Object> key = coalescer.key(Tool.class, "find", 1L);
+        CompletableFuture<Object> old = coalescer.submit(key, () -> "row");
+        Thread.sleep(MAX_JOIN + 50);
+        CompletableFuture<Object> replacement = coalescer.submit(key, () -> "row");
+        CompletableFuture<Object> follower = coalescer.submit(key, () -> "row");
+        assertEquals(2, executor.reads.size());
+        executor.reads.get(0).complete("old");
+        assertEquals("old", old.get());
+        assertFalse(replacement.isDone());
+        CompletableFuture<Object> late = coalescer.submit(key, () -> "row");
+        assertEquals(2, executor.reads.size());
+        executor.reads.get(1).complete("new");
+        assertEquals("new", replacement.get());
+        assertEquals("new", follower.get());
+        assertEquals("new", late.get());
+    }
+    /**
+     * A failed read fails every caller and ends the flight.
+     * @throws Exception error.
+     */
+    @Test
+    public void failurePropagates() throws Exception {
+        List<Object> key = coalescer.key(Tool.class, "find", 1L);
+        List<CompletableFuture<Object>> callers = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            callers.add(coalescer.submit(key, () -> "row"));
+        }
+        IllegalStateException error = new IllegalStateException("connection refused");
+        executor.reads.get(0).completeExceptionally(error);
+        for (CompletableFuture<Object> caller : callers) {
+            try {
+                caller.get();
+                throw new AssertionError("Read did not fail");
+            } catch (ExecutionException e) {
+                assertSame(error, e.getCause());
+            }
+        }
+        coalescer.submit(key, () -> "row");
+        assertEquals(2, executor.reads.size());
+    }
+    /**
+     * A caller that cancels does not complete the shared read of the others.
+     * @throws Exception error.
+     */
+    @Test
+    public void cancelledCallerDoesNotCompleteFlight() throws Exception {
+        List<Object> key = coalescer.key(Tool.class, "find", 1L);
+        CompletableFuture<Object> leader = coalescer.submit(key, () -> "row");
+        CompletableFuture<Object> follower = coalescer.submit(key, () -> "row");
+        assertTrue(follower.cancel(true));
+        assertTrue(leader.cancel(true));
+        assertFalse(executor.reads.get(0).isDone());
+        CompletableFuture<Object> late = coalescer.submit(key, () -> "row");
+        assertEquals(1, executor.reads.size());
+        executor.reads.get(0).complete("row");
+        assertEquals("row", late.get());
+        assertTrue(follower.isCancelled());
+    }
+    /**
+     * Database executor that only records reads; the test completes them.
+     */
+    private static class ManualExecutor extends DatabaseExecutor {
+        /** Submitted reads. */
+        private final List<CompletableFuture<Object>> reads = new ArrayList<>();
+        @Override
+        @SuppressWarnings("unchecked")
+        public synchronized <T> CompletableFuture<T> submit(Callable<T> task) {
+            CompletableFuture<Object> read = new CompletableFuture<>();
+            reads.add(read);
+            return (CompletableFuture<T>) read;
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 ss.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.platform.api.search;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Full-text index ranking, prefix expansion, removal and versions.
+ * @author ss
+ */
+public class FullTextIndexTest {
+    /** Boosts of one field. */
+    private static final float[] ONE_FIELD = {1f};
+    /** Index. */
+    private FullTextIndex index;
+    /**
+     * Empty index.
+     */
+    @Before
+    public void setUp() {
+        index = new FullTextIndex(64);
+    }
+    /**
+     * One term in one of two documents of average length: idf is ln(2), the term frequency part is 1.
+     */
+    @Test
+    public void bm25Score() {
+        put(1, "a b");
+        put(2, "c d");
+        SearchHits hits = index.search("a", 10);
+        assertArrayEquals(new long[] {1}, hits.getIds());
+        assertEquals(Math.log(2), hits.getScores()[0], 1e-6);
+        assertEquals(1, hits.getTotal());
+    }
+    /**
+     * Shorter documents and higher (boosted) term frequencies rank first.
+     */
+    @Test
+    public void bm25Ranking() {
+        put(1, "drill with a long description of the case and the bits");
+        put(2, "drill");
+        put(3, "saw");
+        assertArrayEquals(new long[] {2, 1}, index.search("drill", 10).getIds());
+        index.put(4, 0, new String[] {"x", "hammer"}, new float[] {2f, 1f});
+        index.put(5, 0, new String[] {"hammer", "x"}, new float[] {2f, 1f});
+        assertArrayEquals(new long[] {5, 4}, index.search("hammer", 10).getIds());
+    }
+    /**
+     * Every query term must match.
+     */
+    @Test
+    public void allTermsMatch() {
+        put(1, "red drill");
+        put(2, "blue drill");
+        assertArrayEquals(new long[] {1}, index.search("drill RED", 10).getIds());
+        assertEquals(0, index.search("red saw", 10).getTotal());
+    }
+    /**
+     * A query term matches the terms it is a prefix of, below an exact match.
+     */
+    @Test
+    public void prefixExpansion() {
+        put(1, "drill");
+        put(2, "drive");
+        put(3, "dr");
+        put(4, "hammer");
+        SearchHits hits = index.search("dr", 10);
+        assertEquals(3, hits.getTotal());
+        assertEquals(3, hits.getIds()[0]);
+        assertEquals(2, index.search("dri", 10).getTotal());
+        // the first dictionary term only
+        index = new FullTextIndex(1);
+        put(1, "drill");
+        put(2, "drive");
+        assertArrayEquals(new long[] {1}, index.search("dri", 10).getIds());
+    }
+    /**
+     * Limit keeps the best hits, total counts all of them.
+     */
+    @Test
+    public void limit() {
+        put(1, "drill drill drill");
+        put(2, "drill");
+        put(3, "drill drill");
+        SearchHits hits = index.search("drill", 2);
+        assertArrayEquals(new long[] {1, 3}, hits.getIds());
+        assertEquals(3, hits.getTotal());
+    }
+    /**
+     * Removed and replaced documents do not match, also after document numbers were reassigned.
+     */
+    @Test
+    public void removeAndRenumber() {
+        for (int i = 1; i <= 2000; i++) {
+            put(i, "common t" + i);
+        }
+        for (int i = 1; i <= 1500; i++) {
+            index.remove(i);
+        }
+        assertEquals(500, index.size());
+        assertEquals(500, index.search("common", 1000).getTotal());
+        assertEquals(0, index.search("t1000", 10).getTotal());
+        assertArrayEquals(new long[] {1800}, index.search("t1800", 10).getIds());
+        put(1800, "replaced");
+        assertEquals(0, index.search("t1800", 10).getTotal());
+        assertArrayEquals(new long[] {1800}, index.search("replaced", 10).getIds());
+        assertEquals(499, index.search("common", 1000).getTotal());
+        for (int i = 1501; i <= 2000; i++) {
+            index.remove(i);
+        }
+        assertEquals(0, index.size());
+        assertEquals(0, index.search("common", 10).getTotal());
+    }
+    /**
+     * An older version does not replace a newer one.
+     */
+    @Test
+    public void versions() {
+        assertTrue(index.put(1, 2, new String[] {"new"}, ONE_FIELD));
+        assertFalse(index.put(1, 1, new String[] {"old"}, ONE_FIELD));
+        assertEquals(0, index.search("old", 10).getTotal());
+        assertArrayEquals(new long[] {1}, index.search("new", 10).getIds());
+        assertTrue(index.put(1, 2, new String[] {"same"}, ONE_FIELD));
+        assertArrayEquals(new long[] {1}, index.search("same", 10).getIds());
+    }
+    // =========================================== PRIVATE ============================================================
+    private void put(long id, String text) {
+        index.put(id, 0, new String[] {text}, ONE_FIELD);
+    }
+}
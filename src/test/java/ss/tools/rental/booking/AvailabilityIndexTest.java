@@ -0,0 +1,137 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.booking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.time.LocalDateTime;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import org.junit.Before;
+import org.junit.Test;
+import ss.platform.api.dao.EntityChangeEvent;
+import ss.tools.rental.model.Rental;
+import ss.tools.rental.model.Tool;
+
+/**
+ * Availability index updates from committed changes.
+ * @author alex
+ */
+public class AvailabilityIndexTest {
+    /** Period start. */
+    private static final LocalDateTime FROM = LocalDateTime.of(2020, 12, 1, 10, 0);
+    /** Period end. */
+    private static final LocalDateTime TO = FROM.plusDays(2);
+    /** Index. */
+    private AvailabilityIndex index;
+    /**
+     * Index with tools 1, 2 and 3.
+     */
+    @Before
+    public void setUp() {
+        index = new AvailabilityIndex();
+        index.onEntityChange(new EntityChangeEvent(EntityChangeEvent.ChangeType.CREATE, Tool.class,
+                Arrays.asList(1L, 2L, 3L), Collections.emptyList()));
+    }
+    /**
+     * A rental moved to another tool frees the old tool.
+     */
+    @Test
+    public void rentalMovedBetweenTools() {
+        change(EntityChangeEvent.ChangeType.CREATE, rental(1L, 0L));
+        assertFalse(index.isAvailable(1, FROM, TO));
+        change(EntityChangeEvent.ChangeType.UPDATE, rental(2L, 1L));
+        assertTrue(index.isAvailable(1, FROM, TO));
+        assertFalse(index.isAvailable(2, FROM, TO));
+        assertTrue(index.findOverlapping(1, FROM, TO).isEmpty());
+        assertEquals(Arrays.asList(1L, 3L), index.findAvailable(null, FROM, TO, 10));
+        assertEquals(1, index.size());
+    }
+    /**
+     * A late listener of an earlier write does not undo a newer one.
+     */
+    @Test
+    public void olderVersionIsIgnored() {
+        change(EntityChangeEvent.ChangeType.UPDATE, rental(2L, 2L));
+        change(EntityChangeEvent.ChangeType.UPDATE, rental(1L, 1L));
+        assertTrue(index.isAvailable(1, FROM, TO));
+        assertFalse(index.isAvailable(2, FROM, TO));
+    }
+    /**
+     * A late listener of an earlier write does not index a deleted rental again.
+     */
+    @Test
+    public void deletedRentalIsNotIndexedAgain() {
+        change(EntityChangeEvent.ChangeType.CREATE, rental(1L, 0L));
+        index.onEntityChange(new EntityChangeEvent(EntityChangeEvent.ChangeType.DELETE, Rental.class,
+                Collections.singletonList(1L), Collections.emptyList()));
+        change(EntityChangeEvent.ChangeType.UPDATE, rental(1L, 1L));
+        assertTrue(index.isAvailable(1, FROM, TO));
+        assertEquals(0, index.size());
+    }
+    /**
+     * Concurrent listeners of one rental leave exactly one interval.
+     * @throws Exception error.
+     */
+    @Test
+    public void concurrentUpdatesLeaveOneInterval() throws Exception {
+        ExecutorService pool = Executors.newFixedThreadPool(8);
+        for (int i = 0; i < 8; i++) {
+            pool.execute(() -> {
+                for (int j = 0; j < 2000; j++) {
+                    change(EntityChangeEvent.ChangeType.UPDATE,
+                            rental(1L + ThreadLocalRandom.current().nextInt(3), 1L));
+                }
+            });
+        }
+        pool.shutdown();
+        assertTrue(pool.awaitTermination(1, TimeUnit.MINUTES));
+        int intervals = 0;
+        for (long toolId = 1; toolId <= 3; toolId++) {
+            intervals += index.findOverlapping(toolId, FROM, TO).size();
+        }
+        assertEquals(1, intervals);
+        assertEquals(1, index.size());
+    }
+    // =========================================== PRIVATE ============================================================
+    private void change(EntityChangeEvent.ChangeType type, Rental rental) {
+        index.onEntityChange(new EntityChangeEvent(type, Rental.class, Collections.singletonList(rental.getId()),
+                Collections.singletonList(rental)));
+    }
+    private static Rental rental(Long toolId, Long version) {
+        Rental rental = new Rental();
+        rental.setId(1L);
+        rental.setVersion(version);
+        rental.setToolId(toolId);
+        rental.setStart(FROM);
+        rental.setEnd(TO);
+        return rental;
+    }
+}
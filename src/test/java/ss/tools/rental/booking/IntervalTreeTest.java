@@ -0,0 +1,140 @@
+/*
+ * The MIT License
+ *
+ * Copyright 2020 alex.
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package ss.tools.rental.booking;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import org.junit.Test;
+
+/**
+ * Interval tree tests.
+ * @author alex
+ */
+public class IntervalTreeTest {
+    /**
+     * Random inserts and removes, every query compared with a brute-force scan.
+     */
+    @Test
+    public void randomOperationsMatchBruteForce() {
+        Random random = new Random(42);
+        IntervalTree tree = IntervalTree.EMPTY;
+        List<long[]> intervals = new ArrayList<>();
+        long nextId = 1;
+        for (int op = 0; op < 20000; op++) {
+            if (intervals.isEmpty() || random.nextInt(3) > 0) {
+                long start = random.nextInt(10000);
+                long[] interval = { start, start + 1 + random.nextInt(200), nextId++ };
+                tree = tree.insert(interval[0], interval[1], interval[2]);
+                intervals.add(interval);
+            } else {
+                long[] interval = intervals.remove(random.nextInt(intervals.size()));
+                tree = tree.remove(interval[0], interval[2]);
+            }
+            if (op % 100 == 0) {
+                assertTrue(tree.isValid());
+                assertEquals(intervals.size(), tree.size());
+                for (int q = 0; q < 20; q++) {
+                    long from = random.nextInt(10300) - 100;
+                    long to = from + 1 + random.nextInt(300);
+                    assertEquals(bruteForce(intervals, from, to), overlapping(tree, from, to));
+                    assertEquals(!bruteForce(intervals, from, to).isEmpty(), tree.overlaps(from, to));
+                }
+            }
+        }
+    }
+    /**
+     * Sorted inserts (the worst case of an unbalanced tree) keep the tree balanced, and so do removes.
+     */
+    @Test
+    public void staysBalanced() {
+        IntervalTree tree = IntervalTree.EMPTY;
+        for (int i = 0; i < 10000; i++) {
+            tree = tree.insert(i * 10, i * 10 + 5, i);
+        }
+        assertTrue(tree.isValid());
+        for (int i = 0; i < 10000; i += 2) {
+            tree = tree.remove(i * 10, i);
+        }
+        assertTrue(tree.isValid());
+        assertEquals(5000, tree.size());
+    }
+    /**
+     * Intervals are half-open: touching intervals do not overlap.
+     */
+    @Test
+    public void halfOpenBoundaries() {
+        IntervalTree tree = IntervalTree.EMPTY.insert(10, 20, 1);
+        assertFalse(tree.overlaps(20, 30));
+        assertFalse(tree.overlaps(0, 10));
+        assertTrue(tree.overlaps(19, 20));
+        assertTrue(tree.overlaps(0, 11));
+        assertTrue(tree.overlaps(12, 15));
+        assertTrue(tree.overlaps(0, 100));
+        tree = tree.insert(20, 30, 2);
+        assertEquals(1, overlapping(tree, 10, 20).size());
+        assertEquals(2, overlapping(tree, 19, 21).size());
+    }
+    /**
+     * Updates return new trees, earlier snapshots are unchanged.
+     */
+    @Test
+    public void updatesArePersistent() {
+        IntervalTree first = IntervalTree.EMPTY.insert(10, 20, 1);
+        IntervalTree second = first.insert(30, 40, 2);
+        IntervalTree third = second.remove(10, 1);
+        assertEquals(1, first.size());
+        assertEquals(2, second.size());
+        assertEquals(1, third.size());
+        assertTrue(second.overlaps(10, 20));
+        assertFalse(third.overlaps(10, 20));
+        assertSame(third, third.remove(10, 1));
+    }
+    // =========================================== PRIVATE ============================================================
+    private static List<Long> overlapping(IntervalTree tree, long from, long to) {
+        List<Long> ids = new ArrayList<>();
+        tree.forEachOverlap(from, to, (start, end, id) -> ids.add(id));
+        return ids;
+    }
+    private static List<Long> bruteForce(List<long[]> intervals, long from, long to) {
+        List<long[]> result = new ArrayList<>();
+        for (long[] interval : intervals) {
+            if (interval[0] < to && interval[1] > from) {
+                result.add(interval);
+            }
+        }
+        // start order, then ID
+        result.sort(Comparator.<long[]>comparingLong((interval) -> interval[0])
+                .thenComparingLong((interval) -> interval[2]));
+        List<Long> ids = new ArrayList<>();
+        result.forEach((interval) -> ids.add(interval[2]));
+        return ids;
+    }
+}